@@ -1,5 +1,7 @@
 import baseline.PassageBaseline;
 import experiments.Experiment7;
+import help.RunOptions;
+import lucene.Index;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -9,6 +11,11 @@ import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Project runner.
  * @author Shubham Chatterjee
@@ -37,8 +44,22 @@ public class ProjectMain {
 
 
         switch(command) {
+            case "index":
+                System.out.println("Building paragraph index.");
+                try {
+                    Index.main(Arrays.copyOfRange(args, 1, args.length));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                break;
+
             case "psg-baseline":
                 System.out.println("Making Passage baseline.");
+                // Optional flags: --sections for one query per section path, --threads N for the number of threads
+                RunOptions options = new RunOptions(args);
+                boolean useSections = options.useSections();
+                int numThreads = options.getNumThreads();
+                args = options.getArgs();
                 similarity = null;
                 analyzer = null;
 
@@ -95,9 +116,15 @@ public class ProjectMain {
                         System.out.println("Wrong choice of similarity! Exiting.");
                         System.exit(1);
                 }
-                outFile = "psg-baseline" + "-" + s1 + "-" + s2 + ".run";
+                outFile = "psg-baseline" + "-" + s1 + "-" + s2 + (useSections ? "-sections" : "") + ".run";
                 outputFilePath = outputDir + "/" + outFile;
-                new PassageBaseline(indexDir, outlinesFilePath, outputFilePath, analyzer, similarity);
+                new PassageBaseline(indexDir, outlinesFilePath, outputFilePath, analyzer, similarity, useSections,
+                        numThreads);
+                break;
+
+            case "psg-baseline-multi":
+                System.out.println("Making Passage baselines for many similarities.");
+                PassageBaseline.mainMulti(Arrays.copyOfRange(args, 1, args.length));
                 break;
 
             case "psg-exp-1":
@@ -112,7 +139,13 @@ public class ProjectMain {
                 supportPassageRunFilePath = args[1];
                 candidatePassageRunFilePath = args[2];
                 passageRunFilePath = args[3];
-                new experiments.Experiment2(supportPassageRunFilePath, candidatePassageRunFilePath, passageRunFilePath);
+                if (args.length > 4) {
+                    // Streaming mode: sum|max|mean|weighted [entityRunFile] [--threads N]
+                    experiments.Experiment2.main(Arrays.copyOfRange(args, 1, args.length));
+                } else {
+                    new experiments.Experiment2(supportPassageRunFilePath, candidatePassageRunFilePath,
+                            passageRunFilePath);
+                }
                 break;
 
             case "sal-exp-1":
@@ -172,6 +205,22 @@ public class ProjectMain {
 
             case "exp7":
                 System.out.println("Experiment-7");
+                // Optional flag: --candidates to search only the candidate paragraphs of every query
+                // Optional: --forward-index PATH|term-vectors to score the candidate paragraphs from their term
+                // frequencies
+                List<String> argList = new ArrayList<>(Arrays.asList(args));
+                boolean restrictToCandidates = argList.remove("--candidates");
+                String forwardIndexPath = null;
+                int f = argList.indexOf("--forward-index");
+                if (f >= 0) {
+                    forwardIndexPath = argList.remove(f + 1);
+                    argList.remove(f);
+                    if (!restrictToCandidates) {
+                        System.out.println("--forward-index needs --candidates! Exiting.");
+                        System.exit(1);
+                    }
+                }
+                args = argList.toArray(new String[0]);
                 similarity = null;
                 analyzer = null;
                 boolean omit, useFrequency;
@@ -260,10 +309,19 @@ public class ProjectMain {
                     outFile += "-" + "freq-false";
                 }
 
+                if (restrictToCandidates) {
+                    System.out.println("Searching candidate paragraphs only: Yes");
+                    outFile += "-" + "candidates";
+                }
+                if (forwardIndexPath != null) {
+                    System.out.println("Scoring candidate paragraphs with forward index: " + forwardIndexPath);
+                }
+
                 outFile += ".run";
 
                 new Experiment7(indexDir, mainDir, outputDir, dataDir, idFile, relFile, paraRunFile, entityRunFile, outFile,
-                        entityQrel, takeKEntities, omit, useFrequency, relType, analyzer, similarity);
+                        entityQrel, takeKEntities, omit, useFrequency, relType, analyzer, similarity,
+                        restrictToCandidates, forwardIndexPath);
 
 
             default: help();
@@ -276,9 +334,12 @@ public class ProjectMain {
         System.out.println("================================================================================");
 
         System.out.println("The following options are available:");
+        System.out.println("index: Builds the paragraph index. Add --term-vectors to store term vectors.");
         System.out.println("baseline : Produces the passage baseline run. Uses BM25.");
+        System.out.println("psg-baseline-multi: Produces passage baseline runs for many similarities in one pass.");
         System.out.println("psg-exp-1: Produces run for passage retrieval experiment-1.");
         System.out.println("psg-exp-2: Produces run for passage retrieval experiment-2.");
+        System.out.println("           Add sum|max|mean|weighted [entityRunFile] [--threads N] for the streaming mode.");
         System.out.println("sal-exp-1: Produces run for entity salience experiment-1.");
         System.out.println("sal-exp-2: Produces run for entity salience experiment-2.");
         System.out.println("sal-exp-3: Produces run for entity salience experiment-3.");
@@ -0,0 +1,277 @@
+package api;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact read-only key-value file of DBpedia abstracts, built from a DBpedia dump.
+ * Use it (with -Ddbpedia.abstracts=PATH) to get entity descriptions from local disk instead of the SPARQL endpoint.
+ *
+ * The store is made of two files:
+ * (1) PATH.data:  Records of (key length, key, value length, value), where key = IRI of the resource and
+ *                 value = abstract, both in UTF-8.
+ * (2) PATH.index: Number of records, followed by (64-bit hash of key, offset of the record in PATH.data)
+ *                 for every record, sorted by hash.
+ * The index is loaded in memory (16 bytes per resource). A lookup is a binary search in the index followed by a
+ * positional read of the data file, which is safe to do from many threads at once. The key of the record is compared
+ * with the requested key, so a hash collision never returns the wrong abstract.
+ *
+ * The dump is parsed with Jena RIOT in streaming mode, so it is never loaded in memory. Any RDF syntax known to RIOT
+ * may be used (e.g., long_abstracts_en.ttl, also gzipped).
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class AbstractStore implements Closeable {
+    private final static String ABSTRACT = "http://dbpedia.org/ontology/abstract";
+
+    private final FileChannel data;
+    private final long[] hashes;
+    private final long[] offsets;
+
+    private AbstractStore(FileChannel data, long[] hashes, long[] offsets) {
+        this.data = data;
+        this.hashes = hashes;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Open a store.
+     * @param path String Path of the store (without the ".data" / ".index" extension).
+     * @return AbstractStore
+     * @throws IOException If the store could not be read.
+     */
+
+    @NotNull
+    public static AbstractStore open(String path) throws IOException {
+        long[] hashes, offsets;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path + ".index")))) {
+            int n = in.readInt();
+            hashes = new long[n];
+            offsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                hashes[i] = in.readLong();
+                offsets[i] = in.readLong();
+            }
+        }
+        FileChannel data = FileChannel.open(new File(path + ".data").toPath(), StandardOpenOption.READ);
+        return new AbstractStore(data, hashes, offsets);
+    }
+
+    /**
+     * Get the abstract of a resource.
+     * @param iri String Full IRI of the resource.
+     * @return String The abstract, null if the resource is not in the store.
+     */
+
+    @Nullable
+    public String get(@NotNull String iri) {
+        byte[] key = iri.getBytes(StandardCharsets.UTF_8);
+        long h = hash(key);
+        int i = Arrays.binarySearch(hashes, h);
+        if (i < 0) {
+            return null;
+        }
+        // Go to the first record with this hash, then try all of them
+        while (i > 0 && hashes[i - 1] == h) {
+            i--;
+        }
+        try {
+            for (; i < hashes.length && hashes[i] == h; i++) {
+                String value = read(offsets[i], key);
+                if (value != null) {
+                    return value;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Number of resources in the store.
+     * @return Integer
+     */
+
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * Read the record at the offset and return its value if its key is the given key.
+     */
+
+    @Nullable
+    private String read(long offset, byte[] key) throws IOException {
+        ByteBuffer len = ByteBuffer.allocate(4);
+        readFully(len, offset);
+        int keyLength = len.getInt(0);
+        if (keyLength != key.length) {
+            return null;
+        }
+        ByteBuffer k = ByteBuffer.allocate(keyLength + 4);
+        readFully(k, offset + 4);
+        for (int j = 0; j < keyLength; j++) {
+            if (k.get(j) != key[j]) {
+                return null;
+            }
+        }
+        ByteBuffer value = ByteBuffer.allocate(k.getInt(keyLength));
+        readFully(value, offset + 8 + keyLength);
+        return new String(value.array(), StandardCharsets.UTF_8);
+    }
+
+    private void readFully(@NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = data.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("Unexpected end of data file at " + position);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+
+    /**
+     * 64-bit FNV-1a hash.
+     */
+
+    private static long hash(@NotNull byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Build a store from a DBpedia dump.
+     * Only the dbo:abstract triples with a literal in the given language are kept.
+     * @param dump String Path to the dump.
+     * @param path String Path of the store to build (without extension).
+     * @param lang String Language of the abstracts (e.g., "en").
+     * @throws IOException If the store could not be written.
+     */
+
+    public static void build(String dump, String path, String lang) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(path + ".data"), 1 << 16))) {
+
+            AbstractCollector collector = new AbstractCollector(out, lang);
+            RDFDataMgr.parse(collector, dump);
+            if (collector.error != null) {
+                throw collector.error;
+            }
+
+            // Sort the index by hash, carrying the offsets along. The sort is stable, so if a resource has more than
+            // one abstract the first one read stays first and is the one returned by get().
+            int n = collector.size;
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            long[] h = collector.hashes, o = collector.offsets;
+            Arrays.sort(order, (a, b) -> Long.compare(h[a], h[b]));
+
+            try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(path + ".index"), 1 << 16))) {
+                index.writeInt(n);
+                for (int i : order) {
+                    index.writeLong(h[i]);
+                    index.writeLong(o[i]);
+                }
+            }
+            System.out.println("Abstracts written: " + n);
+        }
+    }
+
+    /**
+     * Streams the triples of the dump and appends the abstracts to the data file.
+     */
+
+    private static class AbstractCollector extends StreamRDFBase {
+        private final DataOutputStream out;
+        private final String lang;
+        private long[] hashes = new long[1 << 20], offsets = new long[1 << 20];
+        private int size = 0;
+        private long position = 0;
+        private IOException error = null;
+
+        AbstractCollector(DataOutputStream out, String lang) {
+            this.out = out;
+            this.lang = lang;
+        }
+
+        @Override
+        public void triple(@NotNull Triple triple) {
+            if (error != null || !ABSTRACT.equals(triple.getPredicate().getURI())) {
+                return;
+            }
+            Node s = triple.getSubject(), o = triple.getObject();
+            if (!s.isURI() || !o.isLiteral() || !o.getLiteralLanguage().toLowerCase().startsWith(lang)) {
+                return;
+            }
+            byte[] key = s.getURI().getBytes(StandardCharsets.UTF_8);
+            byte[] value = o.getLiteralLexicalForm().getBytes(StandardCharsets.UTF_8);
+            try {
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(value.length);
+                out.write(value);
+            } catch (IOException e) {
+                error = e;
+                return;
+            }
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            hashes[size] = hash(key);
+            offsets[size] = position;
+            size++;
+            position += 8 + key.length + value.length;
+            if (size % 100000 == 0) {
+                System.out.println("Abstracts read: " + size);
+            }
+        }
+    }
+
+    /**
+     * Main method.
+     * Usage: AbstractStore build dump store [lang]
+     *        AbstractStore get store IRI
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) throws IOException {
+        String command = args[0];
+        if ("build".equals(command)) {
+            String lang = args.length > 3 ? args[3] : "en";
+            System.out.println("Building abstract store from: " + args[1]);
+            build(args[1], args[2], lang);
+            System.out.println("Store written at: " + args[2]);
+        } else if ("get".equals(command)) {
+            try (AbstractStore store = AbstractStore.open(args[1])) {
+                System.out.println(store.get(args[2]));
+            }
+        } else {
+            System.err.println("Usage: AbstractStore build dump store [lang] | get store IRI");
+        }
+    }
+}
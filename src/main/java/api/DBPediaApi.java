@@ -1,10 +1,14 @@
 package api;
 
-import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -13,17 +17,20 @@ import org.jsoup.nodes.Document;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.*;
 
 /**
  * Class to query DBPedia KB through DBpedia Spotlight.
+ * The abstracts of the annotated resources come from the DBpedia SPARQL endpoint, or from a local
+ * {@link AbstractStore} built from a DBpedia dump if -Ddbpedia.abstracts=PATH is given.
  * @author Shubham Chatterjee
  * @version 03/10/2020
  */
 public class DBPediaApi {
-    private final static String SPOTLIGHT_URL = "https://api.dbpedia-spotlight.org/en/annotate";
-    private final static String SPARQL_URL = "http://dbpedia.org/sparql";
+    private final static Resilience.Endpoint ENDPOINT = Resilience.endpoint(Services.DBPEDIA_SPOTLIGHT);
+    private final static Resilience.Endpoint SPARQL_ENDPOINT = Resilience.endpoint(Services.DBPEDIA_SPARQL);
+    private final static int SPARQL_BATCH_SIZE = 100;
+    private static AbstractStore store = null;
 
 
     /**
@@ -107,15 +114,19 @@ public class DBPediaApi {
         }
     }
 
+    /**
+     * Annotate the text with DBpedia Spotlight and get the abstract of every annotated resource.
+     * The abstracts of all resources are looked up at once (see getDBPediaAbstracts()).
+     * @param data String Text to annotate.
+     * @return List List of entities.
+     */
+
     @NotNull
     public static ArrayList<Entity> query(String data) {
         ArrayList<Entity> entities = new ArrayList<>();
         DecimalFormat df = new DecimalFormat("#.####");
-
-        String uri, surfaceForm, dbpediaEntity, description;
-        int support, offset;
-        ArrayList<String> types;
-        double similarityScore, percentageOfSecondRank;
+        List<JSONObject> resources = new ArrayList<>();
+        Set<String> uris = new LinkedHashSet<>();
 
         try {
             Document doc = getDocument(data);
@@ -123,46 +134,58 @@ public class DBPediaApi {
                 JSONObject json = new JSONObject(doc.text());
                 if (json.has("Resources")) {
                     JSONArray jsonArray = json.getJSONArray("Resources");
-
                     for (int i = 0; i < jsonArray.length(); i++) {
                         JSONObject jsonObject = jsonArray.getJSONObject(i);
+                        resources.add(jsonObject);
+                        if (jsonObject.has("@URI")) {
+                            uris.add(jsonObject.getString("@URI"));
+                        }
+                    }
+                }
+            }
 
-                        uri = jsonObject.has("@URI")
-                                ? jsonObject.getString("@URI")
-                                : "";
+            Map<String, String> abstracts = getDBPediaAbstracts(uris);
 
-                        dbpediaEntity = uri.substring(uri.lastIndexOf("/") + 1);
-                        description = getDBPediaAbstract(dbpediaEntity);
+            for (JSONObject jsonObject : resources) {
+                String uri, surfaceForm, dbpediaEntity, description;
+                int support, offset;
+                ArrayList<String> types;
+                double similarityScore, percentageOfSecondRank;
 
-                        support = jsonObject.has("@support")
-                                ? jsonObject.getInt("@support")
-                                : 0;
-                        String t = jsonObject.has("@types")
-                                ? jsonObject.getString("@types")
-                                : "";
-                        types = new ArrayList<>(Arrays.asList(t.split(",")));
+                uri = jsonObject.has("@URI")
+                        ? jsonObject.getString("@URI")
+                        : "";
 
-                        surfaceForm = jsonObject.has("@surfaceForm")
-                                ? jsonObject.getString("@surfaceForm")
-                                : "";
+                dbpediaEntity = uri.substring(uri.lastIndexOf("/") + 1);
+                description = abstracts.getOrDefault(uri, "");
 
-                        offset = jsonObject.has("@offset")
-                                ? jsonObject.getInt("@offset")
-                                : 0;
+                support = jsonObject.has("@support")
+                        ? jsonObject.getInt("@support")
+                        : 0;
+                String t = jsonObject.has("@types")
+                        ? jsonObject.getString("@types")
+                        : "";
+                types = new ArrayList<>(Arrays.asList(t.split(",")));
 
-                        similarityScore = jsonObject.has("@similarityScore")
-                                ? jsonObject.getDouble("@similarityScore")
-                                : 0.0d;
+                surfaceForm = jsonObject.has("@surfaceForm")
+                        ? jsonObject.getString("@surfaceForm")
+                        : "";
 
-                        percentageOfSecondRank = jsonObject.has("@percentageOfSecondRank")
-                                ? jsonObject.getDouble("@percentageOfSecondRank")
-                                : 0.0d;
+                offset = jsonObject.has("@offset")
+                        ? jsonObject.getInt("@offset")
+                        : 0;
 
-                        entities.add(new Entity(uri, surfaceForm, dbpediaEntity, description, support, offset, types,
-                                Double.parseDouble(df.format(similarityScore)),
-                                Double.parseDouble(df.format(percentageOfSecondRank))));
-                    }
-                }
+                similarityScore = jsonObject.has("@similarityScore")
+                        ? jsonObject.getDouble("@similarityScore")
+                        : 0.0d;
+
+                percentageOfSecondRank = jsonObject.has("@percentageOfSecondRank")
+                        ? jsonObject.getDouble("@percentageOfSecondRank")
+                        : 0.0d;
+
+                entities.add(new Entity(uri, surfaceForm, dbpediaEntity, description, support, offset, types,
+                        Double.parseDouble(df.format(similarityScore)),
+                        Double.parseDouble(df.format(percentageOfSecondRank))));
             }
         } catch (JSONException e) {
             e.printStackTrace();
@@ -171,21 +194,98 @@ public class DBPediaApi {
         return entities;
     }
 
-    private static String getDBPediaAbstract(String dbpediaEntity) {
-        String entity = "dbpedia:" + dbpediaEntity;
+    /**
+     * Get the English abstracts of DBpedia resources.
+     * If the system property "dbpedia.abstracts" points to an {@link AbstractStore}, the abstracts are read from it.
+     * Otherwise, the resources are looked up on the DBpedia SPARQL endpoint with one VALUES query per
+     * SPARQL_BATCH_SIZE resources, instead of one query per resource.
+     * @param uris Collection Full IRIs of the resources (e.g., "http://dbpedia.org/resource/Berlin").
+     * @return Map Map of (IRI, abstract). Resources without an abstract are absent.
+     * @throws Resilience.ServiceUnavailableException If the SPARQL endpoint could not be reached even after retrying.
+     */
 
-        ParameterizedSparqlString qs = new ParameterizedSparqlString( "" +
-                "prefix dbpedia: <http://dbpedia.org/resource/>\n" +
-                "prefix dbpedia-owl: <http://dbpedia.org/ontology/>\n" +
+    @NotNull
+    public static Map<String, String> getDBPediaAbstracts(@NotNull Collection<String> uris) {
+        Map<String, String> abstracts = new HashMap<>();
+        AbstractStore store = localStore();
+        if (store != null) {
+            for (String uri : uris) {
+                String a = store.get(uri);
+                if (a != null) {
+                    abstracts.put(uri, a);
+                }
+            }
+            return abstracts;
+        }
 
-                "select ?abstract where {\n" + entity + " "  +
-                "dbpedia-owl:abstract ?abstract\n" +
+        List<String> batch = new ArrayList<>();
+        for (String uri : uris) {
+            batch.add(uri);
+            if (batch.size() == SPARQL_BATCH_SIZE) {
+                abstracts.putAll(SPARQL_ENDPOINT.call(() -> queryAbstracts(batch)));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            abstracts.putAll(SPARQL_ENDPOINT.call(() -> queryAbstracts(batch)));
+        }
+        return abstracts;
+    }
+
+    /**
+     * Make one attempt at querying the SPARQL endpoint for the abstracts of a batch of resources.
+     * The query execution is closed when done, and the results are read before it is.
+     */
+
+    @NotNull
+    private static Map<String, String> queryAbstracts(@NotNull List<String> uris) throws IOException {
+        StringBuilder values = new StringBuilder();
+        for (String uri : uris) {
+            values.append(NodeFmtLib.str(NodeFactory.createURI(uri))).append(' ');
+        }
+        String qs = "" +
+                "prefix dbpedia-owl: <http://dbpedia.org/ontology/>\n" +
+                "select ?entity ?abstract where {\n" +
+                "values ?entity { " + values + "}\n" +
+                "?entity dbpedia-owl:abstract ?abstract\n" +
                 "filter(langMatches(lang(?abstract),\"en\"))" +
-                "}" );
-        QueryExecution exec = QueryExecutionFactory.sparqlService( SPARQL_URL, qs.asQuery() );
-        ResultSet results = exec.execSelect();
+                "}";
+
+        Map<String, String> abstracts = new HashMap<>();
+        try (QueryExecution exec = QueryExecutionFactory.sparqlService(Services.url(Services.DBPEDIA_SPARQL), qs)) {
+            ResultSet results = exec.execSelect();
+            while (results.hasNext()) {
+                QuerySolution solution = results.next();
+                abstracts.putIfAbsent(solution.getResource("entity").getURI(),
+                        solution.getLiteral("abstract").getLexicalForm());
+            }
+        } catch (QueryExceptionHTTP e) {
+            if (e.getResponseCode() > 0) {
+                throw new Resilience.HttpStatusException(e.getResponseCode(), 0);
+            }
+            throw new IOException(e);
+        }
+        return abstracts;
+    }
 
-        return results.next().get( "abstract" ).toString();
+    /**
+     * Open the local abstract store given by -Ddbpedia.abstracts (once), if any.
+     */
+
+    @Nullable
+    private static synchronized AbstractStore localStore() {
+        String path = System.getProperty("dbpedia.abstracts");
+        if (path == null) {
+            return null;
+        }
+        if (store == null) {
+            try {
+                store = AbstractStore.open(path);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open abstract store: " + path, e);
+            }
+        }
+        return store;
     }
 
     /**
@@ -195,17 +295,11 @@ public class DBPediaApi {
      */
 
     private static Document getDocument(String data) {
-        Document doc = null;
-        try {
-            doc = Jsoup.connect(SPOTLIGHT_URL)
-                    .data("text", data)
-                    .header("Accept", "application/json")
-                    .ignoreContentType(true)
-                    .get();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return doc;
+        return ENDPOINT.call(() -> Jsoup.connect(Services.url(Services.DBPEDIA_SPOTLIGHT))
+                .data("text", data)
+                .header("Accept", "application/json")
+                .ignoreContentType(true)
+                .get());
     }
 
     public static void main(String[] args) {
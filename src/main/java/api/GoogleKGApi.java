@@ -7,7 +7,6 @@ import org.json.JSONObject;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
-import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -17,8 +16,8 @@ import java.util.ArrayList;
  */
 
 public class GoogleKGApi {
-    private final static String URL = "https://kgsearch.googleapis.com/v1/entities:search";
     private final static String KEY = "XXXXXXX"; // INSERT KEY HERE
+    private final static Resilience.Endpoint ENDPOINT = Resilience.endpoint(Services.GOOGLE_KG);
 
     /**
      * Inner class to represent a Google Knowledge Graph entity.
@@ -129,19 +128,13 @@ public class GoogleKGApi {
      */
 
     private static Document getDocument(String data) {
-        Document doc = null;
-        try {
-            doc = Jsoup.connect(URL)
-                    .data("query", data)
-                    .data("limit", "10")
-                    .data("indent","true")
-                    .data("key",KEY)
-                    .ignoreContentType(true)
-                    .get();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return doc;
+        return ENDPOINT.call(() -> Jsoup.connect(Services.url(Services.GOOGLE_KG))
+                .data("query", data)
+                .data("limit", "10")
+                .data("indent","true")
+                .data("key",KEY)
+                .ignoreContentType(true)
+                .get());
     }
 
     public static void main(String[] args) {
@@ -1,62 +1,280 @@
 package api;
 
+import com.google.api.core.ApiFuture;
 import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.language.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class to query the Google Natural Language Processing API.
  * Wrapper over the Google client library.
+ * One instance holds a single LanguageServiceClient (and so a single gRPC channel) for its whole life. The client is
+ * thread-safe, so share one instance between threads and close it when done.
+ * Requests may be sent asynchronously; at most maxConcurrentRequests of them are in flight at any time.
+ * Short paragraphs may be packed into one request (see queryBatch()), and the entities are split back per paragraph
+ * using the mention offsets.
  *
  * @author Shubham Chatterjee
- * @version 03/22/2020
+ * @version 10/18/2026
  */
 
-public class GoogleNLPApi {
-    private LanguageServiceSettings languageServiceSettings;
-    private AnalyzeEntitiesResponse response;
+public class GoogleNLPApi implements AutoCloseable {
+    private final static String SEPARATOR = "\n\n";
+    private final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
 
-    public GoogleNLPApi(String keyFile) {
+    private final LanguageServiceClient client;
+    private final ManagedChannel channel;
+    private final Semaphore inFlight;
+
+    /**
+     * Constructor.
+     * @param keyFile String Path to the service account key file.
+     * @throws IOException If the key file could not be read or the client could not be created.
+     */
+
+    public GoogleNLPApi(String keyFile) throws IOException {
+        this(keyFile, DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * Constructor.
+     * @param keyFile String Path to the service account key file.
+     * @param maxConcurrentRequests Integer Maximum number of requests in flight.
+     * @throws IOException If the key file could not be read or the client could not be created.
+     */
+
+    public GoogleNLPApi(String keyFile, int maxConcurrentRequests) throws IOException {
         GoogleCredentials credentials;
-        try {
-            credentials = GoogleCredentials.fromStream(new FileInputStream(keyFile));
-            languageServiceSettings = LanguageServiceSettings
-                    .newBuilder()
-                    .setCredentialsProvider(FixedCredentialsProvider.create(credentials))
-                    .build();
-        } catch (IOException e) {
-            e.printStackTrace();
+        try (FileInputStream fis = new FileInputStream(keyFile)) {
+            credentials = GoogleCredentials.fromStream(fis);
         }
+        LanguageServiceSettings languageServiceSettings = LanguageServiceSettings
+                .newBuilder()
+                .setCredentialsProvider(FixedCredentialsProvider.create(credentials))
+                .build();
+        this.client = LanguageServiceClient.create(languageServiceSettings);
+        this.channel = null;
+        this.inFlight = new Semaphore(maxConcurrentRequests);
     }
 
+    private GoogleNLPApi(ManagedChannel channel, int maxConcurrentRequests) throws IOException {
+        LanguageServiceSettings languageServiceSettings = LanguageServiceSettings
+                .newBuilder()
+                .setTransportChannelProvider(FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .build();
+        this.client = LanguageServiceClient.create(languageServiceSettings);
+        this.channel = channel;
+        this.inFlight = new Semaphore(maxConcurrentRequests);
+    }
+
+    /**
+     * Create a client which talks plaintext gRPC to the given target, without credentials.
+     * Use this to test against a local gRPC stub of the Language service.
+     * @param target String Target of the channel (e.g., "localhost:8080").
+     * @param maxConcurrentRequests Integer Maximum number of requests in flight.
+     * @return GoogleNLPApi
+     * @throws IOException If the client could not be created.
+     */
+
+    @NotNull
+    public static GoogleNLPApi forEndpoint(String target, int maxConcurrentRequests) throws IOException {
+        ManagedChannel channel = ManagedChannelBuilder.forTarget(target).usePlaintext().build();
+        return new GoogleNLPApi(channel, maxConcurrentRequests);
+    }
+
+    /**
+     * Find the entities in the text.
+     * @param text String Text to analyze.
+     * @return List List of entities.
+     * @throws com.google.api.gax.rpc.ApiException If the request failed.
+     */
+
+    @NotNull
     public List<Entity> query(String text) {
-        List<Entity> entities = new ArrayList<>();
-        try (LanguageServiceClient language = LanguageServiceClient.create(languageServiceSettings)) {
-            Document doc = Document.newBuilder()
-                    .setContent(text)
-                    .setType(Document.Type.PLAIN_TEXT)
-                    .build();
-
-            AnalyzeEntitiesRequest request = AnalyzeEntitiesRequest.newBuilder()
-                    .setDocument(doc)
-                    .setEncodingType(EncodingType.UTF16)
-                    .build();
-
-            response = language.analyzeEntities(request);
-            getEntities(entities);
-        } catch (IOException e) {
-            e.printStackTrace();
+        try {
+            return queryAsync(text).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
         }
-        return entities;
     }
 
-    private void getEntities(List<Entity> entities) {
+    /**
+     * Find the entities in the text asynchronously.
+     * Blocks while maxConcurrentRequests requests are already in flight.
+     * @param text String Text to analyze.
+     * @return CompletableFuture Future list of entities.
+     */
+
+    @NotNull
+    public CompletableFuture<List<Entity>> queryAsync(String text) {
+        CompletableFuture<List<Entity>> result = new CompletableFuture<>();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return result;
+        }
+        ApiFuture<AnalyzeEntitiesResponse> future;
+        try {
+            future = client.analyzeEntitiesCallable().futureCall(request(text));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            result.completeExceptionally(e);
+            return result;
+        }
+        future.addListener(() -> {
+            inFlight.release();
+            try {
+                result.complete(getEntities(future.get()));
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (InterruptedException e) {
+                result.completeExceptionally(e);
+            }
+        }, Runnable::run);
+        return result;
+    }
+
+    /**
+     * Find the entities in many texts.
+     * Consecutive texts are packed into one request of at most maxPackChars characters (a text longer than that is
+     * sent on its own), and the requests are sent concurrently. The entities of a request are split back per text
+     * using the offsets of their mentions, which are rebased to the start of the text.
+     * NOTE: The salience of an entity is computed by Google for the whole request, so with packing it is the salience
+     * in the packed document and not in the text. Use maxPackChars = 0 to send every text on its own.
+     * @param texts List Texts to analyze.
+     * @param maxPackChars Integer Maximum number of characters in a packed request. Google bills every 1000 characters
+     *                     of a request as one unit, so 1000 packs short paragraphs without extra cost.
+     * @return List List of entities for every text, in the order of the texts.
+     * @throws com.google.api.gax.rpc.ApiException If a request failed.
+     */
+
+    @NotNull
+    public List<List<Entity>> queryBatch(@NotNull List<String> texts, int maxPackChars) {
+        List<List<Entity>> results = new ArrayList<>(texts.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        int i = 0;
+        while (i < texts.size()) {
+            // Pack texts [i, j) into one document
+            StringBuilder packed = new StringBuilder(texts.get(i));
+            List<Integer> starts = new ArrayList<>();
+            starts.add(0);
+            int j = i + 1;
+            while (j < texts.size()
+                    && packed.length() + SEPARATOR.length() + texts.get(j).length() <= maxPackChars) {
+                packed.append(SEPARATOR);
+                starts.add(packed.length());
+                packed.append(texts.get(j));
+                j++;
+            }
+            for (int k = i; k < j; k++) {
+                results.add(null);
+            }
+            int first = i;
+            futures.add(queryAsync(packed.toString()).thenAccept(entities -> {
+                List<List<Entity>> split = split(entities, starts);
+                for (int k = 0; k < split.size(); k++) {
+                    results.set(first + k, split.get(k));
+                }
+            }));
+            i = j;
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Split the entities of a packed document per text.
+     * An entity mentioned in several texts becomes one entity in each of them, with the mentions in that text.
+     * @param entities List Entities in the packed document.
+     * @param starts List Offset of the start of every text in the packed document.
+     * @return List List of entities for every text.
+     */
+
+    @NotNull
+    private static List<List<Entity>> split(@NotNull List<Entity> entities, @NotNull List<Integer> starts) {
+        List<List<Entity>> split = new ArrayList<>(starts.size());
+        for (int k = 0; k < starts.size(); k++) {
+            split.add(new ArrayList<>());
+        }
+        if (starts.size() == 1) {
+            split.get(0).addAll(entities);
+            return split;
+        }
+        for (Entity entity : entities) {
+            Map<Integer, List<EntityMention>> mentionsPerText = new TreeMap<>();
+            for (EntityMention mention : entity.getMentions()) {
+                int k = textOf(mention.getBeginOffset(), starts);
+                mentionsPerText.computeIfAbsent(k, x -> new ArrayList<>()).add(new EntityMention(
+                        mention.getBeginOffset() - starts.get(k), mention.getContent(), mention.getType()));
+            }
+            for (Map.Entry<Integer, List<EntityMention>> entry : mentionsPerText.entrySet()) {
+                split.get(entry.getKey()).add(new Entity(entity.getName(), entity.getSalience(), entity.getMetadata(),
+                        entry.getValue()));
+            }
+        }
+        return split;
+    }
+
+    /**
+     * Find the text an offset falls into: the last text starting at or before the offset.
+     */
+
+    private static int textOf(int offset, @NotNull List<Integer> starts) {
+        int k = Collections.binarySearch(starts, offset);
+        return k >= 0 ? k : Math.max(0, -k - 2);
+    }
+
+    @NotNull
+    private static AnalyzeEntitiesRequest request(String text) {
+        Document doc = Document.newBuilder()
+                .setContent(text)
+                .setType(Document.Type.PLAIN_TEXT)
+                .build();
+
+        // UTF16 offsets are Java String (char) offsets
+        return AnalyzeEntitiesRequest.newBuilder()
+                .setDocument(doc)
+                .setEncodingType(EncodingType.UTF16)
+                .build();
+    }
+
+    @NotNull
+    private static List<Entity> getEntities(@NotNull AnalyzeEntitiesResponse response) {
+        List<Entity> entities = new ArrayList<>();
         List<com.google.cloud.language.v1.Entity> entityList = response.getEntitiesList();
         for (com.google.cloud.language.v1.Entity entity : entityList) {
             String name = entity.getName();
@@ -70,6 +288,27 @@ public class GoogleNLPApi {
             }
             entities.add(new Entity(name, salience, metadata, mentionList));
         }
+        return entities;
+    }
+
+    /**
+     * Close the client (and the channel, if it was created by forEndpoint()).
+     */
+
+    @Override
+    public void close() {
+        client.close();
+        if (channel != null) {
+            channel.shutdown();
+            try {
+                if (!channel.awaitTermination(10, TimeUnit.SECONDS)) {
+                    channel.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                channel.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     /**
@@ -0,0 +1,668 @@
+package api;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Offline replacement for {@link WATApi.EntityLinker}.
+ * Links the mentions in a text to Wikipedia pages using anchor statistics only, so it needs no network and may be
+ * called from many threads at once.
+ *
+ * Method (in the spirit of TagMe/WAT):
+ * (1) Spotting: The text is split into tokens. Going left to right, the longest n-gram (up to MAX_NGRAM tokens) which
+ *     is a known surface form with link probability above a threshold is taken as a mention. The surface forms are
+ *     kept in a Lucene FST, which is walked one token at a time, so a lookup never builds a String.
+ * (2) Prior: The candidate entities of a mention are the pages the surface form links to, with their commonness
+ *     (the probability that the surface form links to the page).
+ * (3) Coherence: If a relatedness graph ({@link LocalRelatedness}) is given, every mention votes for the candidates of
+ *     the other mentions: vote(c) = average over the other mentions b of (1/|C(b)|) * sum of rel(c, c') * prior(c')
+ *     for c' in C(b). The candidate with the best vote wins; among candidates whose vote is close to the best one, the
+ *     one with the highest commonness is taken. Without a graph (or with a single mention), the candidate with the
+ *     highest commonness is taken.
+ * (4) Confidence: rho = (link probability + coherence) / 2, where coherence is the average Milne-Witten relatedness
+ *     of the entity with the entities of the other mentions. Without a graph, commonness is used for coherence.
+ *
+ * The dictionary is built from a TSV dump of the surface form statistics (the data exposed by
+ * WATApi.EntitySurfaceFormInformation), one surface form per line:
+ *      surface TAB id TAB link_prob TAB term_prob TAB doc_prob TAB idf TAB tf_idf TAB tf TAB df TAB candidates
+ * where candidates = wikiId:numLinks:probability;wikiId:numLinks:probability;...
+ * and a titles TSV (pageID TAB title) for the titles of the entities.
+ * The dictionary is made of two files: PATH.fst (surface form -> ordinal) and PATH.data (link probabilities,
+ * candidates and titles).
+ * Use with -Dwat.linker.dict=PATH (and optionally -Dwat.relatedness.graph=PATH) to make
+ * WATApi.EntityLinker.getAnnotations() link locally.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class LocalEntityLinker {
+    private final static int MAX_NGRAM = 6;
+    private final static int MAX_CANDIDATES = 10;        // Kept per surface form at build time
+    private final static int VOTING_CANDIDATES = 3;      // Used per mention for coherence
+    private final static double MIN_PRIOR = 0.02;        // Candidates below this commonness do not vote
+    private final static double VOTE_EPSILON = 0.3;      // Candidates within 30% of the best vote compete on prior
+    private final static double DEFAULT_MIN_LINK_PROBABILITY = 0.02;
+    private final static int MAGIC = 0x454c4431;         // "ELD1"
+
+    private final FST<Long> fst;
+    private final float[] linkProbability;
+    private final int[] candidateOffsets;
+    private final int[] candidateIds;
+    private final float[] candidatePriors;
+    private final int[] titleIds;
+    private final int[] titleOffsets;
+    private final byte[] titleData;
+    private final LocalRelatedness graph;
+    private final double minLinkProbability;
+
+    private LocalEntityLinker(FST<Long> fst, float[] linkProbability, int[] candidateOffsets, int[] candidateIds,
+                              float[] candidatePriors, int[] titleIds, int[] titleOffsets, byte[] titleData,
+                              LocalRelatedness graph, double minLinkProbability) {
+        this.fst = fst;
+        this.linkProbability = linkProbability;
+        this.candidateOffsets = candidateOffsets;
+        this.candidateIds = candidateIds;
+        this.candidatePriors = candidatePriors;
+        this.titleIds = titleIds;
+        this.titleOffsets = titleOffsets;
+        this.titleData = titleData;
+        this.graph = graph;
+        this.minLinkProbability = minLinkProbability;
+    }
+
+    /**
+     * Load a dictionary built with build().
+     * The minimum link probability of a mention may be set with -Dwat.linker.minLinkProbability (default 0.02).
+     * @param path String Path of the dictionary (without the ".fst" / ".data" extension).
+     * @param graph LocalRelatedness Relatedness graph used for coherence (may be null).
+     * @return LocalEntityLinker
+     * @throws IOException If the dictionary could not be read.
+     */
+
+    @NotNull
+    public static LocalEntityLinker open(String path, @Nullable LocalRelatedness graph) throws IOException {
+        FST<Long> fst = FST.read(Paths.get(path + ".fst"), PositiveIntOutputs.getSingleton());
+        double minLinkProbability = Double.parseDouble(System.getProperty("wat.linker.minLinkProbability",
+                Double.toString(DEFAULT_MIN_LINK_PROBABILITY)));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(path + ".data"), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an entity linker dictionary: " + path);
+            }
+            float[] linkProbability = readFloats(in);
+            int[] candidateOffsets = readInts(in);
+            int[] candidateIds = readInts(in);
+            float[] candidatePriors = readFloats(in);
+            int[] titleIds = readInts(in);
+            int[] titleOffsets = readInts(in);
+            byte[] titleData = new byte[in.readInt()];
+            in.readFully(titleData);
+            return new LocalEntityLinker(fst, linkProbability, candidateOffsets, candidateIds, candidatePriors,
+                    titleIds, titleOffsets, titleData, graph, minLinkProbability);
+        }
+    }
+
+    /**
+     * Annotate a text.
+     * Same contract as WATApi.EntityLinker.getAnnotations().
+     * @param text String The text to annotate.
+     * @param rho Double Minimum confidence of an annotation (0 to keep all).
+     * @return List List of annotations, in the order of the text.
+     */
+
+    @NotNull
+    public ArrayList<WATApi.Annotation> getAnnotations(@NotNull String text, double rho) {
+        List<Mention> mentions = spot(text);
+        disambiguate(mentions);
+
+        ArrayList<WATApi.Annotation> annotations = new ArrayList<>(mentions.size());
+        for (Mention m : mentions) {
+            if (m.rho >= rho) {
+                annotations.add(new WATApi.Annotation(m.entity, title(m.entity), m.start, m.end, m.rho));
+            }
+        }
+        return annotations;
+    }
+
+    /**
+     * A mention found in the text.
+     */
+
+    private static class Mention {
+        final int start, end;     // Character offsets
+        final int surface;        // Ordinal of the surface form
+        int entity;
+        double rho;
+
+        Mention(int start, int end, int surface) {
+            this.start = start;
+            this.end = end;
+            this.surface = surface;
+        }
+    }
+
+    /////////////////////////////////////////////// SPOTTING ///////////////////////////////////////////////
+
+    /**
+     * Find the mentions in a text: longest match of the token n-grams against the dictionary, left to right.
+     */
+
+    @NotNull
+    private List<Mention> spot(@NotNull String text) {
+        int[] bounds = tokenize(text);
+        int numTokens = bounds.length / 2;
+        List<Mention> mentions = new ArrayList<>();
+        FST.BytesReader reader = fst.getBytesReader();
+        FST.Arc<Long> arc = new FST.Arc<>();
+        // UTF-8 bytes of one code point
+        byte[] utf8 = new byte[4];
+
+        try {
+            int i = 0;
+            while (i < numTokens) {
+                int bestLength = 0, bestSurface = -1;
+                fst.getFirstArc(arc);
+                long output = 0;
+                for (int n = 0; n < MAX_NGRAM && i + n < numTokens; n++) {
+                    if (n > 0) {
+                        if (fst.findTargetArc(' ', arc, arc, reader) == null) {
+                            break;
+                        }
+                        output += arc.output;
+                    }
+                    int t = i + n;
+                    long next = follow(text, bounds[2 * t], bounds[2 * t + 1], arc, reader, utf8);
+                    if (next < 0) {
+                        break;
+                    }
+                    output += next;
+                    if (arc.isFinal()) {
+                        int surface = (int) (output + arc.nextFinalOutput);
+                        if (linkProbability[surface] >= minLinkProbability
+                                && candidateOffsets[surface + 1] > candidateOffsets[surface]) {
+                            bestLength = n + 1;
+                            bestSurface = surface;
+                        }
+                    }
+                }
+                if (bestSurface >= 0) {
+                    mentions.add(new Mention(bounds[2 * i], bounds[2 * (i + bestLength - 1) + 1], bestSurface));
+                    i += bestLength;
+                } else {
+                    i++;
+                }
+            }
+        } catch (IOException e) {
+            // The FST is on the heap, so this does not happen
+            e.printStackTrace();
+        }
+        return mentions;
+    }
+
+    /**
+     * Walk the FST along the (lower-cased, UTF-8) characters of a token.
+     * @param utf8 Array Scratch space of 4 bytes.
+     * @return Long Sum of the outputs along the way, -1 if the FST has no such path.
+     */
+
+    private long follow(@NotNull String text, int start, int end, FST.Arc<Long> arc, FST.BytesReader reader,
+                        @NotNull byte[] utf8) throws IOException {
+        long output = 0;
+        for (int k = start; k < end; ) {
+            int c = text.codePointAt(k);
+            k += Character.charCount(c);
+            int cp = Character.toLowerCase(c);
+            if (cp < 0x80) {
+                if (fst.findTargetArc(cp, arc, arc, reader) == null) {
+                    return -1;
+                }
+                output += arc.output;
+            } else {
+                int n = encode(cp, utf8);
+                for (int b = 0; b < n; b++) {
+                    if (fst.findTargetArc(utf8[b] & 0xFF, arc, arc, reader) == null) {
+                        return -1;
+                    }
+                    output += arc.output;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Encode a (non-ASCII) code point to UTF-8, as String.getBytes(UTF_8) does.
+     * @return Integer Number of bytes written to utf8.
+     */
+
+    private static int encode(int cp, @NotNull byte[] utf8) {
+        if (cp < 0x800) {
+            utf8[0] = (byte) (0xC0 | (cp >> 6));
+            utf8[1] = (byte) (0x80 | (cp & 0x3F));
+            return 2;
+        }
+        if (cp < 0x10000) {
+            if (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+                // An unpaired surrogate is encoded as '?'
+                utf8[0] = '?';
+                return 1;
+            }
+            utf8[0] = (byte) (0xE0 | (cp >> 12));
+            utf8[1] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            utf8[2] = (byte) (0x80 | (cp & 0x3F));
+            return 3;
+        }
+        utf8[0] = (byte) (0xF0 | (cp >> 18));
+        utf8[1] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        utf8[2] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        utf8[3] = (byte) (0x80 | (cp & 0x3F));
+        return 4;
+    }
+
+    /**
+     * Split a text into tokens (runs of letters and digits).
+     * @return Array Start and end offset of every token.
+     */
+
+    @NotNull
+    private static int[] tokenize(@NotNull String text) {
+        int[] bounds = new int[16];
+        int n = 0, i = 0, length = text.length();
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.codePointAt(i))) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            if (i >= length) {
+                break;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.codePointAt(i))) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            if (n + 2 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[n++] = start;
+            bounds[n++] = i;
+        }
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * Normalize a surface form the way the spotter sees it: lower-cased tokens separated by single spaces.
+     * @param surface String Surface form.
+     * @return String Normalized surface form (empty if it has no tokens).
+     */
+
+    @NotNull
+    public static String normalize(@NotNull String surface) {
+        int[] bounds = tokenize(surface);
+        StringBuilder sb = new StringBuilder(surface.length());
+        for (int t = 0; t < bounds.length; t += 2) {
+            if (t > 0) {
+                sb.append(' ');
+            }
+            // Lower-case one code point at a time, exactly as follow() does
+            for (int k = bounds[t]; k < bounds[t + 1]; k += Character.charCount(surface.codePointAt(k))) {
+                sb.appendCodePoint(Character.toLowerCase(surface.codePointAt(k)));
+            }
+        }
+        return sb.toString();
+    }
+
+    //////////////////////////////////////////// DISAMBIGUATION ////////////////////////////////////////////
+
+    /**
+     * Choose an entity for every mention and compute its confidence.
+     */
+
+    private void disambiguate(@NotNull List<Mention> mentions) {
+        int m = mentions.size();
+        if (graph == null || m < 2) {
+            for (Mention mention : mentions) {
+                int best = candidateOffsets[mention.surface];  // Candidates are sorted by prior
+                mention.entity = candidateIds[best];
+                mention.rho = (linkProbability[mention.surface] + candidatePriors[best]) / 2;
+            }
+            return;
+        }
+
+        // Voting candidates of every mention: the top candidates by prior, above the minimum prior
+        int[][] ids = new int[m][];
+        float[][] priors = new float[m][];
+        for (int a = 0; a < m; a++) {
+            int from = candidateOffsets[mentions.get(a).surface];
+            int to = candidateOffsets[mentions.get(a).surface + 1];
+            int k = 1;
+            while (k < VOTING_CANDIDATES && from + k < to && candidatePriors[from + k] >= MIN_PRIOR) {
+                k++;
+            }
+            ids[a] = Arrays.copyOfRange(candidateIds, from, from + k);
+            priors[a] = Arrays.copyOfRange(candidatePriors, from, from + k);
+        }
+
+        // Relatedness between the candidates of different mentions is needed in both passes, so compute it once
+        Map<Long, Double> relatedness = new HashMap<>();
+
+        for (int a = 0; a < m; a++) {
+            double[] votes = new double[ids[a].length];
+            double bestVote = 0.0d;
+            for (int i = 0; i < ids[a].length; i++) {
+                double vote = 0.0d;
+                for (int b = 0; b < m; b++) {
+                    if (b == a) {
+                        continue;
+                    }
+                    double v = 0.0d;
+                    for (int j = 0; j < ids[b].length; j++) {
+                        v += rel(relatedness, ids[a][i], ids[b][j]) * priors[b][j];
+                    }
+                    vote += v / ids[b].length;
+                }
+                votes[i] = vote / (m - 1);
+                bestVote = Math.max(bestVote, votes[i]);
+            }
+            // Among the candidates close to the best vote, take the most common one (candidates are sorted by prior)
+            int chosen = 0;
+            for (int i = 0; i < ids[a].length; i++) {
+                if (votes[i] >= bestVote * (1 - VOTE_EPSILON)) {
+                    chosen = i;
+                    break;
+                }
+            }
+            mentions.get(a).entity = ids[a][chosen];
+        }
+
+        for (int a = 0; a < m; a++) {
+            Mention mention = mentions.get(a);
+            double coherence = 0.0d;
+            for (int b = 0; b < m; b++) {
+                if (b != a) {
+                    coherence += rel(relatedness, mention.entity, mentions.get(b).entity);
+                }
+            }
+            mention.rho = (linkProbability[mention.surface] + coherence / (m - 1)) / 2;
+        }
+    }
+
+    private double rel(@NotNull Map<Long, Double> cache, int e1, int e2) {
+        if (e1 == e2) {
+            return 1.0d;
+        }
+        long key = e1 < e2 ? ((long) e1 << 32) | (e2 & 0xffffffffL) : ((long) e2 << 32) | (e1 & 0xffffffffL);
+        return cache.computeIfAbsent(key, k -> graph.relatedness("mw", e1, e2));
+    }
+
+    /**
+     * Get the title of an entity.
+     * @param id Integer Wikipedia page id.
+     * @return String Title, empty if unknown.
+     */
+
+    @NotNull
+    public String title(int id) {
+        int i = Arrays.binarySearch(titleIds, id);
+        if (i < 0) {
+            return "";
+        }
+        return new String(titleData, titleOffsets[i], titleOffsets[i + 1] - titleOffsets[i], StandardCharsets.UTF_8);
+    }
+
+    ////////////////////////////////////////////////// BUILD //////////////////////////////////////////////////
+
+    /**
+     * Build the dictionary.
+     * @param surfaceFormsFile String Path to the surface form TSV dump.
+     * @param titlesFile String Path to the titles TSV.
+     * @param path String Path of the dictionary to write (without extension).
+     * @param minLinkProbability Double Surface forms with a lower link probability are left out of the dictionary.
+     * @throws IOException If a file could not be read or written.
+     */
+
+    public static void build(String surfaceFormsFile, String titlesFile, String path, double minLinkProbability)
+            throws IOException {
+
+        class Entry {
+            final BytesRef surface;
+            final float linkProbability;
+            final int[] ids;
+            final float[] priors;
+
+            Entry(BytesRef surface, float linkProbability, int[] ids, float[] priors) {
+                this.surface = surface;
+                this.linkProbability = linkProbability;
+                this.ids = ids;
+                this.priors = priors;
+            }
+        }
+
+        Map<BytesRef, Entry> entries = new HashMap<>();
+        Set<Integer> entityIds = new HashSet<>();
+        int skipped = 0;
+
+        System.out.print("Reading surface forms...");
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(surfaceFormsFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < 10) {
+                    skipped++;
+                    continue;
+                }
+                String surface = normalize(fields[0]);
+                float lp;
+                try {
+                    lp = Float.parseFloat(fields[2]);
+                } catch (NumberFormatException e) {
+                    skipped++; // Header or bad line
+                    continue;
+                }
+                if (surface.isEmpty() || lp < minLinkProbability) {
+                    continue;
+                }
+                List<float[]> candidates = parseCandidates(fields[9]);
+                if (candidates.isEmpty()) {
+                    continue;
+                }
+                BytesRef key = new BytesRef(surface);
+                Entry old = entries.get(key);
+                // Two surface forms may normalize to the same key (e.g., "Paris" and "paris"): keep the more linked one
+                if (old == null || old.linkProbability < lp) {
+                    int k = Math.min(MAX_CANDIDATES, candidates.size());
+                    int[] ids = new int[k];
+                    float[] priors = new float[k];
+                    for (int i = 0; i < k; i++) {
+                        ids[i] = (int) candidates.get(i)[0];
+                        priors[i] = candidates.get(i)[1];
+                        entityIds.add(ids[i]);
+                    }
+                    entries.put(key, new Entry(key, lp, ids, priors));
+                }
+            }
+        }
+        System.out.println("[Done].");
+        System.out.println("Surface forms: " + entries.size() + " (bad lines: " + skipped + ")");
+
+        System.out.print("Reading titles...");
+        Map<Integer, String> titles = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(titlesFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int i = line.indexOf('\t');
+                if (i <= 0) {
+                    continue;
+                }
+                try {
+                    int id = Integer.parseInt(line.substring(0, i).trim());
+                    if (entityIds.contains(id)) {
+                        titles.put(id, LocalTitleResolver.normalize(line.substring(i + 1)));
+                    }
+                } catch (NumberFormatException e) {
+                    // Header or bad line
+                }
+            }
+        }
+        System.out.println("[Done].");
+
+        // The FST builder needs the keys in sorted (UTF-8 byte) order. The ordinal of a surface form is its rank.
+        System.out.print("Building dictionary...");
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        entries.clear();
+        sorted.sort((e1, e2) -> e1.surface.compareTo(e2.surface));
+
+        int n = sorted.size();
+        float[] linkProbability = new float[n];
+        int[] candidateOffsets = new int[n + 1];
+        int total = 0;
+        for (Entry e : sorted) {
+            total += e.ids.length;
+        }
+        int[] candidateIds = new int[total];
+        float[] candidatePriors = new float[total];
+
+        PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+        Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, outputs);
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        int c = 0;
+        for (int i = 0; i < n; i++) {
+            Entry e = sorted.get(i);
+            builder.add(Util.toIntsRef(e.surface, scratch), (long) i);
+            linkProbability[i] = e.linkProbability;
+            candidateOffsets[i] = c;
+            System.arraycopy(e.ids, 0, candidateIds, c, e.ids.length);
+            System.arraycopy(e.priors, 0, candidatePriors, c, e.priors.length);
+            c += e.ids.length;
+        }
+        candidateOffsets[n] = c;
+        FST<Long> fst = builder.finish();
+        fst.save(Paths.get(path + ".fst"));
+
+        int[] titleIds = new int[titles.size()];
+        int k = 0;
+        for (int id : titles.keySet()) {
+            titleIds[k++] = id;
+        }
+        Arrays.sort(titleIds);
+        int[] titleOffsets = new int[titleIds.length + 1];
+        ByteArrayOutputStream titleData = new ByteArrayOutputStream();
+        for (int i = 0; i < titleIds.length; i++) {
+            titleOffsets[i] = titleData.size();
+            byte[] b = titles.get(titleIds[i]).getBytes(StandardCharsets.UTF_8);
+            titleData.write(b, 0, b.length);
+        }
+        titleOffsets[titleIds.length] = titleData.size();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(path + ".data"), 1 << 16))) {
+            out.writeInt(MAGIC);
+            writeFloats(out, linkProbability);
+            writeInts(out, candidateOffsets);
+            writeInts(out, candidateIds);
+            writeFloats(out, candidatePriors);
+            writeInts(out, titleIds);
+            writeInts(out, titleOffsets);
+            out.writeInt(titleData.size());
+            titleData.writeTo(out);
+        }
+        System.out.println("[Done].");
+        System.out.println("Surface forms: " + n + ", candidates: " + total + ", titles: " + titleIds.length
+                + ", FST size: " + fst.ramBytesUsed() + " bytes");
+    }
+
+    /**
+     * Parse the candidates of a surface form (wikiId:numLinks:probability;...), sorted by probability.
+     * @return List List of (wikiId, probability).
+     */
+
+    @NotNull
+    private static List<float[]> parseCandidates(@NotNull String field) {
+        List<float[]> candidates = new ArrayList<>();
+        for (String candidate : field.split(";")) {
+            String[] parts = candidate.split(":");
+            if (parts.length != 3) {
+                continue;
+            }
+            try {
+                candidates.add(new float[]{Integer.parseInt(parts[0].trim()), Float.parseFloat(parts[2])});
+            } catch (NumberFormatException e) {
+                // Bad candidate
+            }
+        }
+        candidates.sort((c1, c2) -> Float.compare(c2[1], c1[1]));
+        return candidates;
+    }
+
+    @NotNull
+    private static int[] readInts(@NotNull DataInputStream in) throws IOException {
+        int[] a = new int[in.readInt()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.readInt();
+        }
+        return a;
+    }
+
+    @NotNull
+    private static float[] readFloats(@NotNull DataInputStream in) throws IOException {
+        float[] a = new float[in.readInt()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.readFloat();
+        }
+        return a;
+    }
+
+    private static void writeInts(@NotNull DataOutputStream out, @NotNull int[] a) throws IOException {
+        out.writeInt(a.length);
+        for (int v : a) {
+            out.writeInt(v);
+        }
+    }
+
+    private static void writeFloats(@NotNull DataOutputStream out, @NotNull float[] a) throws IOException {
+        out.writeInt(a.length);
+        for (float v : a) {
+            out.writeFloat(v);
+        }
+    }
+
+    /**
+     * Main method.
+     * Usage: LocalEntityLinker build surfaceForms.tsv titles.tsv dict [minLinkProbability]
+     *        LocalEntityLinker tag dict graph|- text
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) throws IOException {
+        if ("build".equals(args[0])) {
+            double minLinkProbability = args.length > 4 ? Double.parseDouble(args[4]) : 0.001;
+            build(args[1], args[2], args[3], minLinkProbability);
+            System.out.println("Dictionary written at: " + args[3]);
+        } else if ("tag".equals(args[0])) {
+            LocalRelatedness graph = "-".equals(args[2]) ? null : LocalRelatedness.open(args[2]);
+            LocalEntityLinker linker = LocalEntityLinker.open(args[1], graph);
+            long start = System.nanoTime();
+            ArrayList<WATApi.Annotation> annotations = linker.getAnnotations(args[3], 0.0d);
+            long end = System.nanoTime();
+            for (WATApi.Annotation a : annotations) {
+                System.out.println(a.getWikiId() + "\t" + a.getWikiTitle() + "\t" + a.getStart() + "\t" + a.getEnd()
+                        + "\t" + a.getRho());
+            }
+            System.out.println("Time: " + (end - start) / 1000 + " us");
+        } else {
+            System.err.println("Usage: LocalEntityLinker build surfaceForms titles dict [minLinkProbability] "
+                    + "| tag dict graph|- text");
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package api;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Offline replacement for {@link WATApi.EntityRelatedness}.
+ * Computes entity relatedness from the Wikipedia link graph stored in the page index (fields "Id" and "OutlinkIds").
+ *
+ * The graph is stored as in-link and out-link lists of every page. A list is the sorted list of the (dense) node
+ * numbers of the linked pages, delta-encoded with variable-length integers (VInt), so that it takes about one or two
+ * bytes per link. Relatedness needs the size of the intersection of two lists, which is computed with a merge of the
+ * two sorted lists, or with galloping (exponential) search when one list is much shorter than the other.
+ *
+ * Supported measures (In(a) = pages linking to a, Out(a) = pages linked from a, W = number of pages):
+ * (1) mw: Milne-Witten on in-links:
+ *         1 - (log(max(|In(a)|,|In(b)|)) - log(|In(a) & In(b)|)) / (log(W) - log(min(|In(a)|,|In(b)|)))
+ * (2) jaccard: |Out(a) & Out(b)| / |Out(a) | Out(b)|
+ * (3) conditionalprobability: P(b | a) = |In(a) & In(b)| / |In(a)|
+ * (4) pmi: log(|In(a) & In(b)| * W / (|In(a)| * |In(b)|))
+ * Other measures (lm, w2v, barabasialbert) need data which is not in the page index.
+ *
+ * Nodes are identified by Wikipedia page id, as in WAT. The ids of the pages in the page index are found with a
+ * {@link LocalTitleResolver} at build time.
+ * Use with -Dwat.relatedness.graph=PATH to make WATApi.EntityRelatedness.getRelatedness() use the local graph.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class LocalRelatedness {
+    private final static Set<String> MEASURES = new HashSet<>(Arrays.asList("mw", "jaccard",
+            "conditionalprobability", "pmi"));
+    private final static int MAGIC = 0x52454c31; // "REL1"
+
+    private final int numPages;       // W
+    private final int[] wikiIds;      // node -> Wikipedia page id (sorted)
+    private final int[] inDegree, outDegree;
+    private final int[] inOffsets, outOffsets;
+    private final byte[] inData, outData;
+    private final int[] titleOffsets;
+    private final byte[] titleData;
+
+    private final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[][]{new int[0], new int[0]});
+
+    private LocalRelatedness(int numPages, int[] wikiIds, int[] inDegree, int[] outDegree, int[] inOffsets,
+                             int[] outOffsets, byte[] inData, byte[] outData, int[] titleOffsets, byte[] titleData) {
+        this.numPages = numPages;
+        this.wikiIds = wikiIds;
+        this.inDegree = inDegree;
+        this.outDegree = outDegree;
+        this.inOffsets = inOffsets;
+        this.outOffsets = outOffsets;
+        this.inData = inData;
+        this.outData = outData;
+        this.titleOffsets = titleOffsets;
+        this.titleData = titleData;
+    }
+
+    /**
+     * Check if a relatedness measure can be computed locally.
+     * @param measure String Name of the measure (as in WAT).
+     * @return Boolean
+     */
+
+    public static boolean supports(String measure) {
+        return MEASURES.contains(measure);
+    }
+
+    /**
+     * Compute the relatedness between two pages.
+     * @param measure String One of: mw, jaccard, conditionalprobability, pmi.
+     * @param id1 Integer Wikipedia page id of the first page.
+     * @param id2 Integer Wikipedia page id of the second page.
+     * @return Double Relatedness. Zero if a page is not in the graph or the pages share no links.
+     * @throws IllegalArgumentException If the measure is not supported.
+     */
+
+    public double relatedness(@NotNull String measure, int id1, int id2) {
+        if (!supports(measure)) {
+            throw new IllegalArgumentException("Unsupported relatedness measure: " + measure);
+        }
+        int a = node(id1), b = node(id2);
+        if (a < 0 || b < 0) {
+            return 0.0d;
+        }
+        if (a == b) {
+            return 1.0d;
+        }
+
+        if ("jaccard".equals(measure)) {
+            int common = intersect(outData, outOffsets, outDegree, a, b);
+            int union = outDegree[a] + outDegree[b] - common;
+            return union == 0 ? 0.0d : (double) common / union;
+        }
+
+        int common = intersect(inData, inOffsets, inDegree, a, b);
+        if (common == 0) {
+            return 0.0d;
+        }
+        double sizeA = inDegree[a], sizeB = inDegree[b];
+        switch (measure) {
+            case "mw":
+                double mw = 1.0d - (Math.log(Math.max(sizeA, sizeB)) - Math.log(common))
+                        / (Math.log(numPages) - Math.log(Math.min(sizeA, sizeB)));
+                return Math.max(0.0d, Math.min(1.0d, mw));
+            case "conditionalprobability":
+                return common / sizeA;
+            default: // pmi
+                return Math.log(common * (double) numPages / (sizeA * sizeB));
+        }
+    }
+
+    /**
+     * Compute the relatedness between all pairs of the given pages, like the WAT relatedness service.
+     * @param measure String One of: mw, jaccard, conditionalprobability, pmi.
+     * @param ids Array Wikipedia page ids.
+     * @return List List of Pairs of entities with relatedness score.
+     */
+
+    @NotNull
+    public List<WATApi.EntityRelatedness.Pair> getRelatedness(String measure, @NotNull int... ids) {
+        List<WATApi.EntityRelatedness.Pair> pairs = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            for (int j = i + 1; j < ids.length; j++) {
+                pairs.add(new WATApi.EntityRelatedness.Pair(
+                        new WATApi.EntityRelatedness.Pair.Source(ids[i], title(ids[i])),
+                        new WATApi.EntityRelatedness.Pair.Destination(ids[j], title(ids[j])),
+                        relatedness(measure, ids[i], ids[j])));
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Get the title of a page.
+     * @param id Integer Wikipedia page id.
+     * @return String Title, empty if the page is not in the page index.
+     */
+
+    @NotNull
+    public String title(int id) {
+        int n = node(id);
+        if (n < 0) {
+            return "";
+        }
+        return new String(titleData, titleOffsets[n], titleOffsets[n + 1] - titleOffsets[n], StandardCharsets.UTF_8);
+    }
+
+    private int node(int wikiId) {
+        int n = Arrays.binarySearch(wikiIds, wikiId);
+        return n < 0 ? -1 : n;
+    }
+
+    /////////////////////////////////////////////// INTERSECTION ///////////////////////////////////////////////
+
+    /**
+     * Size of the intersection of the lists of two nodes.
+     */
+
+    private int intersect(byte[] data, int[] offsets, int[] degree, int a, int b) {
+        if (degree[a] == 0 || degree[b] == 0) {
+            return 0;
+        }
+        int[][] buffers = scratch.get();
+        int[] x = decode(data, offsets[a], degree[a], buffers, 0);
+        int[] y = decode(data, offsets[b], degree[b], buffers, 1);
+        return intersectionSize(x, degree[a], y, degree[b]);
+    }
+
+    /**
+     * Decode a delta-encoded VInt list into a (reused) scratch buffer.
+     */
+
+    @NotNull
+    private static int[] decode(byte[] data, int offset, int length, int[][] buffers, int which) {
+        int[] out = buffers[which];
+        if (out.length < length) {
+            out = new int[Math.max(length, out.length * 2)];
+            buffers[which] = out;
+        }
+        int pos = offset, value = 0;
+        for (int i = 0; i < length; i++) {
+            int b = data[pos++];
+            int delta = b & 0x7F;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = data[pos++];
+                delta |= (b & 0x7F) << shift;
+            }
+            value += delta;
+            out[i] = value;
+        }
+        return out;
+    }
+
+    /**
+     * Size of the intersection of two sorted lists without duplicates.
+     * Linear merge when the lists have similar sizes; galloping search of the longer list otherwise.
+     */
+
+    static int intersectionSize(int[] x, int xLength, int[] y, int yLength) {
+        if (xLength > yLength) {
+            return intersectionSize(y, yLength, x, xLength);
+        }
+        int count = 0;
+        if ((long) xLength * 32 < yLength) {
+            int lo = 0;
+            for (int i = 0; i < xLength && lo < yLength; i++) {
+                int v = x[i];
+                // Gallop to find a range [lo, hi] of y containing v, then binary search in it
+                int step = 1, hi = lo;
+                while (hi < yLength && y[hi] < v) {
+                    lo = hi + 1;
+                    hi += step;
+                    step <<= 1;
+                }
+                int p = Arrays.binarySearch(y, lo, Math.min(hi + 1, yLength), v);
+                if (p >= 0) {
+                    count++;
+                    lo = p + 1;
+                } else {
+                    lo = -p - 1;
+                }
+            }
+            return count;
+        }
+        int i = 0, j = 0;
+        while (i < xLength && j < yLength) {
+            int a = x[i], b = y[j];
+            if (a == b) {
+                count++;
+            }
+            // Branch-free advance: move the smaller side (both on a match)
+            i += (a <= b) ? 1 : 0;
+            j += (b <= a) ? 1 : 0;
+        }
+        return count;
+    }
+
+    ///////////////////////////////////////////////// STORAGE /////////////////////////////////////////////////
+
+    /**
+     * Load a graph built with build().
+     * @param path String Path to the graph file.
+     * @return LocalRelatedness
+     * @throws IOException If the file could not be read.
+     */
+
+    @NotNull
+    public static LocalRelatedness open(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a relatedness graph: " + path);
+            }
+            int numPages = in.readInt();
+            int[] wikiIds = readInts(in);
+            int[] inDegree = readInts(in), outDegree = readInts(in);
+            int[] inOffsets = readInts(in), outOffsets = readInts(in);
+            byte[] inData = readBytes(in), outData = readBytes(in);
+            int[] titleOffsets = readInts(in);
+            byte[] titleData = readBytes(in);
+            return new LocalRelatedness(numPages, wikiIds, inDegree, outDegree, inOffsets, outOffsets, inData, outData,
+                    titleOffsets, titleData);
+        }
+    }
+
+    private void save(String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(numPages);
+            writeInts(out, wikiIds);
+            writeInts(out, inDegree);
+            writeInts(out, outDegree);
+            writeInts(out, inOffsets);
+            writeInts(out, outOffsets);
+            writeBytes(out, inData);
+            writeBytes(out, outData);
+            writeInts(out, titleOffsets);
+            writeBytes(out, titleData);
+        }
+    }
+
+    @NotNull
+    private static int[] readInts(@NotNull DataInputStream in) throws IOException {
+        int[] a = new int[in.readInt()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.readInt();
+        }
+        return a;
+    }
+
+    @NotNull
+    private static byte[] readBytes(@NotNull DataInputStream in) throws IOException {
+        byte[] a = new byte[in.readInt()];
+        in.readFully(a);
+        return a;
+    }
+
+    private static void writeInts(@NotNull DataOutputStream out, @NotNull int[] a) throws IOException {
+        out.writeInt(a.length);
+        for (int v : a) {
+            out.writeInt(v);
+        }
+    }
+
+    private static void writeBytes(@NotNull DataOutputStream out, @NotNull byte[] a) throws IOException {
+        out.writeInt(a.length);
+        out.write(a);
+    }
+
+    ////////////////////////////////////////////////// BUILD //////////////////////////////////////////////////
+
+    /**
+     * Build the graph from the page index.
+     * @param pageIndexDir String Path to the page index (fields "Id" and "OutlinkIds").
+     * @param titleIndex String Path to the FST of a {@link LocalTitleResolver}.
+     * @param outputFile String Path to the graph file to write.
+     * @throws IOException If the index could not be read or the graph could not be written.
+     */
+
+    public static void build(String pageIndexDir, String titleIndex, String outputFile) throws IOException {
+        LocalTitleResolver resolver = LocalTitleResolver.open(titleIndex);
+        Map<Integer, int[]> outLinks = new HashMap<>();
+        Map<Integer, String> titles = new HashMap<>();
+        Map<String, Integer> resolved = new HashMap<>();
+        Set<String> fields = new HashSet<>(Arrays.asList("Id", "OutlinkIds"));
+        int numPages = 0, unresolved = 0;
+
+        System.out.print("Reading page index...");
+        try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(pageIndexDir)))) {
+            Bits liveDocs = MultiFields.getLiveDocs(reader);
+            for (int d = 0; d < reader.maxDoc(); d++) {
+                if (liveDocs != null && !liveDocs.get(d)) {
+                    continue;
+                }
+                Document doc = reader.document(d, fields);
+                String title = toTitle(doc.get("Id"));
+                int src = resolver.getId(title);
+                if (src < 0) {
+                    unresolved++;
+                    continue;
+                }
+                // W counts distinct page ids, not page documents
+                if (titles.putIfAbsent(src, LocalTitleResolver.normalize(title)) == null) {
+                    numPages++;
+                }
+
+                String outlinkIds = doc.get("OutlinkIds");
+                int[] out = new int[0];
+                if (outlinkIds != null && !outlinkIds.isEmpty()) {
+                    String[] targets = outlinkIds.split("\n");
+                    out = new int[targets.length];
+                    int n = 0;
+                    for (String target : targets) {
+                        Integer dst = resolved.computeIfAbsent(target, t -> resolver.getId(toTitle(t)));
+                        if (dst >= 0 && dst != src) {
+                            out[n++] = dst;
+                        }
+                    }
+                    out = sortedUnique(out, n);
+                }
+                // Two pages of the index may resolve to the same id (e.g., through a redirect)
+                int[] old = outLinks.get(src);
+                outLinks.put(src, old == null ? out : union(old, out));
+            }
+        }
+        resolved.clear();
+        System.out.println("[Done].");
+        System.out.println("Pages: " + numPages + " (unresolved: " + unresolved + ")");
+
+        // Number the nodes in the order of their Wikipedia page ids
+        System.out.print("Building graph...");
+        Set<Integer> nodeSet = new HashSet<>(outLinks.keySet());
+        for (int[] out : outLinks.values()) {
+            for (int dst : out) {
+                nodeSet.add(dst);
+            }
+        }
+        int[] wikiIds = new int[nodeSet.size()];
+        int k = 0;
+        for (int id : nodeSet) {
+            wikiIds[k++] = id;
+        }
+        nodeSet.clear();
+        Arrays.sort(wikiIds);
+        int n = wikiIds.length;
+
+        // Out-links as node numbers, and in-link counts
+        int[][] out = new int[n][];
+        int[] inDegree = new int[n], outDegree = new int[n];
+        for (Map.Entry<Integer, int[]> entry : outLinks.entrySet()) {
+            int src = Arrays.binarySearch(wikiIds, entry.getKey());
+            int[] dsts = entry.getValue();
+            for (int i = 0; i < dsts.length; i++) {
+                dsts[i] = Arrays.binarySearch(wikiIds, dsts[i]); // Same order, since wikiIds is sorted
+                inDegree[dsts[i]]++;
+            }
+            out[src] = dsts;
+            outDegree[src] = dsts.length;
+        }
+        outLinks.clear();
+
+        // Invert the out-links. Sources are visited in increasing order, so every in-link list comes out sorted.
+        int[][] in = new int[n][];
+        for (int i = 0; i < n; i++) {
+            in[i] = new int[inDegree[i]];
+        }
+        int[] fill = new int[n];
+        for (int src = 0; src < n; src++) {
+            if (out[src] != null) {
+                for (int dst : out[src]) {
+                    in[dst][fill[dst]++] = src;
+                }
+            }
+        }
+
+        int[] outOffsets = new int[n + 1], inOffsets = new int[n + 1];
+        byte[] outData = encode(out, outOffsets);
+        byte[] inData = encode(in, inOffsets);
+
+        ByteArrayOutputStream titleBytes = new ByteArrayOutputStream();
+        int[] titleOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            titleOffsets[i] = titleBytes.size();
+            String title = titles.get(wikiIds[i]);
+            if (title != null) {
+                byte[] b = title.getBytes(StandardCharsets.UTF_8);
+                titleBytes.write(b, 0, b.length);
+            }
+        }
+        titleOffsets[n] = titleBytes.size();
+        System.out.println("[Done].");
+
+        LocalRelatedness graph = new LocalRelatedness(numPages, wikiIds, inDegree, outDegree, inOffsets, outOffsets,
+                inData, outData, titleOffsets, titleBytes.toByteArray());
+        System.out.print("Writing graph...");
+        graph.save(outputFile);
+        System.out.println("[Done].");
+        System.out.println("Nodes: " + n + ", links: " + inData.length + " bytes (in), " + outData.length + " bytes (out)");
+    }
+
+    /**
+     * Delta-encode lists of sorted node numbers with VInts.
+     */
+
+    @NotNull
+    private static byte[] encode(@NotNull int[][] lists, @NotNull int[] offsets) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < lists.length; i++) {
+            offsets[i] = bytes.size();
+            if (lists[i] == null) {
+                continue;
+            }
+            int previous = 0;
+            for (int v : lists[i]) {
+                int delta = v - previous;
+                previous = v;
+                while ((delta & ~0x7F) != 0) {
+                    bytes.write((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                bytes.write(delta);
+            }
+        }
+        offsets[lists.length] = bytes.size();
+        return bytes.toByteArray();
+    }
+
+    @NotNull
+    private static int[] sortedUnique(@NotNull int[] a, int length) {
+        Arrays.sort(a, 0, length);
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (n == 0 || a[n - 1] != a[i]) {
+                a[n++] = a[i];
+            }
+        }
+        return Arrays.copyOf(a, n);
+    }
+
+    @NotNull
+    private static int[] union(@NotNull int[] a, @NotNull int[] b) {
+        int[] c = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        return sortedUnique(c, c.length);
+    }
+
+    /**
+     * Convert an entity id of the page index (e.g., "enwiki:Barack%20Obama") to a Wikipedia title.
+     * The id is percent-encoded UTF-8.
+     */
+
+    @NotNull
+    static String toTitle(@NotNull String entityId) {
+        String s = entityId.substring(entityId.indexOf(':') + 1);
+        if (s.indexOf('%') < 0) {
+            return s;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '%' && i + 2 < s.length() && isHex(s.charAt(i + 1)) && isHex(s.charAt(i + 2))) {
+                bytes.write(Integer.parseInt(s.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                byte[] b = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                bytes.write(b, 0, b.length);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    /**
+     * Main method.
+     * Usage: LocalRelatedness build pageIndexDir titleIndex output
+     *        LocalRelatedness get graph measure id1 id2
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) throws IOException {
+        if ("build".equals(args[0])) {
+            build(args[1], args[2], args[3]);
+            System.out.println("Graph written at: " + args[3]);
+        } else if ("get".equals(args[0])) {
+            LocalRelatedness graph = LocalRelatedness.open(args[1]);
+            System.out.println(graph.getRelatedness(args[2], Integer.parseInt(args[3]), Integer.parseInt(args[4])));
+        } else {
+            System.err.println("Usage: LocalRelatedness build pageIndexDir titleIndex output | get graph measure id1 id2");
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package api;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Offline replacement for {@link WATApi.EntitySurfaceFormInformation}.
+ * Read-only store of the statistics of the surface forms (link probability, tf-idf, candidate entities, ...),
+ * built from the same TSV dump as the {@link LocalEntityLinker}:
+ *      surface TAB id TAB link_prob TAB term_prob TAB doc_prob TAB idf TAB tf_idf TAB tf TAB df TAB candidates
+ * where candidates = wikiId:numLinks:probability;wikiId:numLinks:probability;...
+ *
+ * The store is made of two files:
+ * (1) PATH.fst:  Lucene FST mapping the normalized surface form (see LocalEntityLinker.normalize()) to the offset of
+ *                its record in PATH.data.
+ * (2) PATH.data: Packed records of (id, link_prob, term_prob, doc_prob, idf, tf_idf, tf, df, number of candidates,
+ *                (wikiId, numLinks, probability) for every candidate).
+ * The data file is memory-mapped (in chunks of 1 GB; a record never crosses a chunk), so the store opens instantly,
+ * uses the page cache instead of the heap, and may be read from many threads at once.
+ * Use with -Dwat.sf.index=PATH to make WATApi.EntitySurfaceFormInformation.getInformation() read the local store.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class LocalSurfaceForms implements Closeable {
+    private final static int CHUNK_BITS = 30;
+    private final static long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private final static int HEADER_SIZE = 4 + 5 * 8 + 4 + 4 + 4;
+    private final static int CANDIDATE_SIZE = 4 + 4 + 4;
+
+    private final FST<Long> fst;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+
+    private LocalSurfaceForms(FST<Long> fst, FileChannel channel, MappedByteBuffer[] chunks) {
+        this.fst = fst;
+        this.channel = channel;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Open a store.
+     * @param path String Path of the store (without the ".fst" / ".data" extension).
+     * @return LocalSurfaceForms
+     * @throws IOException If the store could not be read.
+     */
+
+    @NotNull
+    public static LocalSurfaceForms open(String path) throws IOException {
+        FST<Long> fst = FST.read(Paths.get(path + ".fst"), PositiveIntOutputs.getSingleton());
+        FileChannel channel = FileChannel.open(Paths.get(path + ".data"), StandardOpenOption.READ);
+        long size = channel.size();
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_BITS;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+        }
+        return new LocalSurfaceForms(fst, channel, chunks);
+    }
+
+    /**
+     * Get the statistics of a surface form.
+     * @param surface String Surface form (e.g., "obama").
+     * @return SurfaceForm The statistics, null if the surface form is not in the store.
+     */
+
+    @Nullable
+    public WATApi.EntitySurfaceFormInformation.SurfaceForm get(@NotNull String surface) {
+        Long offset;
+        try {
+            offset = Util.get(fst, new BytesRef(LocalEntityLinker.normalize(surface)));
+        } catch (IOException e) {
+            // The FST is on the heap, so this does not happen
+            e.printStackTrace();
+            return null;
+        }
+        return offset == null ? null : read(offset);
+    }
+
+    /**
+     * Get the statistics of many surface forms.
+     * @param surfaces Collection Surface forms.
+     * @return Map Map of (surface form, statistics) for the surface forms found in the store.
+     */
+
+    @NotNull
+    public Map<String, WATApi.EntitySurfaceFormInformation.SurfaceForm> get(@NotNull Collection<String> surfaces) {
+        Map<String, WATApi.EntitySurfaceFormInformation.SurfaceForm> result = new HashMap<>(surfaces.size() * 2);
+        for (String surface : surfaces) {
+            if (!result.containsKey(surface)) {
+                WATApi.EntitySurfaceFormInformation.SurfaceForm sf = get(surface);
+                if (sf != null) {
+                    result.put(surface, sf);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decode the record at the offset. Absolute reads only, so the buffers are shared by all threads.
+     */
+
+    @NotNull
+    private WATApi.EntitySurfaceFormInformation.SurfaceForm read(long offset) {
+        MappedByteBuffer b = chunks[(int) (offset >>> CHUNK_BITS)];
+        int p = (int) (offset & (CHUNK_SIZE - 1));
+        int id = b.getInt(p);
+        double linkProbability = b.getDouble(p + 4);
+        double termProbability = b.getDouble(p + 12);
+        double documentProbability = b.getDouble(p + 20);
+        double idf = b.getDouble(p + 28);
+        double tfIdf = b.getDouble(p + 36);
+        int tf = b.getInt(p + 44);
+        int df = b.getInt(p + 48);
+        int n = b.getInt(p + 52);
+        ArrayList<WATApi.EntitySurfaceFormInformation.SurfaceForm.LinkedEntity> linkedEntities = new ArrayList<>(n);
+        p += HEADER_SIZE;
+        for (int i = 0; i < n; i++, p += CANDIDATE_SIZE) {
+            linkedEntities.add(new WATApi.EntitySurfaceFormInformation.SurfaceForm.LinkedEntity(
+                    b.getInt(p), b.getInt(p + 4), b.getFloat(p + 8)));
+        }
+        return new WATApi.EntitySurfaceFormInformation.SurfaceForm(id, linkProbability, termProbability,
+                documentProbability, idf, tfIdf, tf, df, linkedEntities);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Build a store from a surface form dump.
+     * The records are written in the order of the dump; only the (surface form, offset) pairs are kept in memory and
+     * sorted for the FST. If two lines normalize to the same surface form, the one with the higher link probability
+     * is kept.
+     * @param dump String Path to the surface form TSV dump.
+     * @param path String Path of the store to build (without extension).
+     * @throws IOException If a file could not be read or written.
+     */
+
+    public static void build(String dump, String path) throws IOException {
+        Map<String, long[]> index = new HashMap<>(); // surface form -> (offset, link probability bits)
+        long position = 0;
+        int skipped = 0;
+
+        System.out.print("Writing records...");
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(dump), StandardCharsets.UTF_8));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     new FileOutputStream(path + ".data"), 1 << 16))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length < 10) {
+                    skipped++;
+                    continue;
+                }
+                String surface = LocalEntityLinker.normalize(fields[0]);
+                if (surface.isEmpty()) {
+                    skipped++;
+                    continue;
+                }
+                int id, tf, df;
+                double lp, tp, dp, idf, tfIdf;
+                try {
+                    id = Integer.parseInt(fields[1].trim());
+                    lp = Double.parseDouble(fields[2]);
+                    tp = Double.parseDouble(fields[3]);
+                    dp = Double.parseDouble(fields[4]);
+                    idf = Double.parseDouble(fields[5]);
+                    tfIdf = Double.parseDouble(fields[6]);
+                    tf = Integer.parseInt(fields[7].trim());
+                    df = Integer.parseInt(fields[8].trim());
+                } catch (NumberFormatException e) {
+                    skipped++; // Header or bad line
+                    continue;
+                }
+                long[] old = index.get(surface);
+                if (old != null && Double.longBitsToDouble(old[1]) >= lp) {
+                    continue;
+                }
+
+                List<String[]> candidates = new ArrayList<>();
+                for (String candidate : fields[9].split(";")) {
+                    String[] parts = candidate.split(":");
+                    if (parts.length == 3) {
+                        candidates.add(parts);
+                    }
+                }
+                int length = HEADER_SIZE + candidates.size() * CANDIDATE_SIZE;
+                // A record never crosses a chunk of the memory map
+                long room = CHUNK_SIZE - (position & (CHUNK_SIZE - 1));
+                if (length > room) {
+                    for (long i = 0; i < room; i++) {
+                        out.write(0);
+                    }
+                    position += room;
+                }
+
+                out.writeInt(id);
+                out.writeDouble(lp);
+                out.writeDouble(tp);
+                out.writeDouble(dp);
+                out.writeDouble(idf);
+                out.writeDouble(tfIdf);
+                out.writeInt(tf);
+                out.writeInt(df);
+                out.writeInt(candidates.size());
+                for (String[] parts : candidates) {
+                    int wikiId = 0, numLinks = 0;
+                    float probability = 0.0f;
+                    try {
+                        wikiId = Integer.parseInt(parts[0].trim());
+                        numLinks = Integer.parseInt(parts[1].trim());
+                        probability = Float.parseFloat(parts[2]);
+                    } catch (NumberFormatException e) {
+                        // Bad candidate: keep the slot so that the record length stays right
+                    }
+                    out.writeInt(wikiId);
+                    out.writeInt(numLinks);
+                    out.writeFloat(probability);
+                }
+                index.put(surface, new long[]{position, Double.doubleToLongBits(lp)});
+                position += length;
+            }
+        }
+        System.out.println("[Done].");
+        System.out.println("Surface forms: " + index.size() + " (bad lines: " + skipped + ")");
+
+        // The FST builder needs the keys in sorted (UTF-8 byte) order
+        System.out.print("Building FST...");
+        List<Map.Entry<BytesRef, Long>> entries = new ArrayList<>(index.size());
+        for (Map.Entry<String, long[]> entry : index.entrySet()) {
+            entries.add(new AbstractMap.SimpleEntry<>(new BytesRef(entry.getKey()), entry.getValue()[0]));
+        }
+        index.clear();
+        entries.sort(Map.Entry.comparingByKey());
+
+        Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        for (Map.Entry<BytesRef, Long> entry : entries) {
+            builder.add(Util.toIntsRef(entry.getKey(), scratch), entry.getValue());
+        }
+        FST<Long> fst = builder.finish();
+        fst.save(Paths.get(path + ".fst"));
+        System.out.println("[Done].");
+        System.out.println("Data size: " + position + " bytes, FST size: " + fst.ramBytesUsed() + " bytes");
+    }
+
+    /**
+     * Main method.
+     * Usage: LocalSurfaceForms build surfaceForms.tsv store
+     *        LocalSurfaceForms get store surfaceForm
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) throws IOException {
+        if ("build".equals(args[0])) {
+            build(args[1], args[2]);
+            System.out.println("Store written at: " + args[2]);
+        } else if ("get".equals(args[0])) {
+            try (LocalSurfaceForms store = LocalSurfaceForms.open(args[1])) {
+                long start = System.nanoTime();
+                WATApi.EntitySurfaceFormInformation.SurfaceForm sf = store.get(args[2]);
+                long end = System.nanoTime();
+                System.out.println(sf);
+                System.out.println("Time: " + (end - start) / 1000 + " us");
+            }
+        } else {
+            System.err.println("Usage: LocalSurfaceForms build surfaceForms store | get store surfaceForm");
+        }
+    }
+}
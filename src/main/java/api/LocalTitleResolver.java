@@ -0,0 +1,210 @@
+package api;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Offline replacement for {@link WATApi.TitleResolver}.
+ * Maps a Wikipedia page title to the Wikipedia page id using a Lucene FST (finite state transducer) built from a
+ * title dump and a redirect dump. Redirects are resolved at build time, so a redirect title maps to the id of the page
+ * it redirects to, as in WAT. A lookup takes microseconds and needs no network.
+ *
+ * Titles are normalized the way Wikipedia does it: spaces become underscores, leading and trailing underscores are
+ * removed, runs of underscores are collapsed, and the first letter is upper-cased.
+ *
+ * The dumps are TSV files (e.g., extracted from the "page" and "redirect" tables of a Wikipedia dump):
+ *      titles:    pageID TAB title
+ *      redirects: fromTitle TAB toTitle
+ * Use with -Dwat.title.index=PATH to make WATApi.TitleResolver.getId() resolve titles locally.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class LocalTitleResolver {
+    private final static int MAX_REDIRECT_HOPS = 10;
+
+    private final FST<Long> fst;
+
+    private LocalTitleResolver(FST<Long> fst) {
+        this.fst = fst;
+    }
+
+    /**
+     * Load a resolver built with build().
+     * @param path String Path to the FST.
+     * @return LocalTitleResolver
+     * @throws IOException If the FST could not be read.
+     */
+
+    @NotNull
+    public static LocalTitleResolver open(String path) throws IOException {
+        return new LocalTitleResolver(FST.read(Paths.get(path), PositiveIntOutputs.getSingleton()));
+    }
+
+    /**
+     * Get the Wikipedia page id of a title.
+     * Same contract as WATApi.TitleResolver.getId().
+     * @param title String Wikipedia page title (e.g., "Barack_Obama").
+     * @return Integer Page id, -1 if the title is unknown.
+     */
+
+    public int getId(String title) {
+        try {
+            Long id = Util.get(fst, new BytesRef(normalize(title)));
+            return id == null ? -1 : id.intValue();
+        } catch (IOException e) {
+            // The FST is on the heap, so this does not happen
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Normalize a Wikipedia page title.
+     * @param title String Title
+     * @return String Normalized title
+     */
+
+    @NotNull
+    public static String normalize(@NotNull String title) {
+        StringBuilder sb = new StringBuilder(title.length());
+        boolean underscore = false;
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if (c == ' ' || c == '_' || c == '\t') {
+                underscore = sb.length() > 0;
+            } else {
+                if (underscore) {
+                    sb.append('_');
+                    underscore = false;
+                }
+                sb.append(c);
+            }
+        }
+        if (sb.length() > 0) {
+            int first = sb.codePointAt(0);
+            int upper = Character.toUpperCase(first);
+            if (upper != first) {
+                sb.replace(0, Character.charCount(first), new String(Character.toChars(upper)));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Build the FST.
+     * @param titlesFile String Path to the titles TSV.
+     * @param redirectsFile String Path to the redirects TSV (may be null).
+     * @param outputFile String Path to the FST to write.
+     * @throws IOException If a file could not be read or written.
+     */
+
+    public static void build(String titlesFile, String redirectsFile, String outputFile) throws IOException {
+        Map<String, Long> titleToId = new HashMap<>();
+        Map<String, String> redirects = new HashMap<>();
+
+        System.out.print("Reading titles...");
+        readTSV(titlesFile, (f1, f2) -> {
+            try {
+                titleToId.put(normalize(f2), Long.parseLong(f1.trim()));
+            } catch (NumberFormatException e) {
+                // Header or bad line
+            }
+        });
+        System.out.println("[Done].");
+
+        if (redirectsFile != null) {
+            System.out.print("Reading redirects...");
+            readTSV(redirectsFile, (f1, f2) -> redirects.put(normalize(f1), normalize(f2)));
+            System.out.println("[Done].");
+        }
+
+        // Resolve every redirect to the page at the end of its chain
+        System.out.print("Resolving redirects...");
+        int unresolved = 0;
+        for (Map.Entry<String, String> redirect : redirects.entrySet()) {
+            String target = redirect.getValue();
+            for (int hop = 1; hop < MAX_REDIRECT_HOPS && redirects.containsKey(target); hop++) {
+                target = redirects.get(target);
+            }
+            Long id = titleToId.get(target);
+            if (id != null && !redirects.containsKey(target)) {
+                titleToId.put(redirect.getKey(), id);
+            } else {
+                unresolved++;
+            }
+        }
+        System.out.println("[Done].");
+        System.out.println("Redirects: " + redirects.size() + " (unresolved: " + unresolved + ")");
+
+        // The FST builder needs the keys in sorted (UTF-8 byte) order
+        System.out.print("Building FST...");
+        List<Map.Entry<BytesRef, Long>> entries = new ArrayList<>(titleToId.size());
+        for (Map.Entry<String, Long> entry : titleToId.entrySet()) {
+            entries.add(new AbstractMap.SimpleEntry<>(new BytesRef(entry.getKey()), entry.getValue()));
+        }
+        titleToId.clear();
+        redirects.clear();
+        entries.sort(Map.Entry.comparingByKey());
+
+        PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+        Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, outputs);
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        for (Map.Entry<BytesRef, Long> entry : entries) {
+            builder.add(Util.toIntsRef(entry.getKey(), scratch), entry.getValue());
+        }
+        FST<Long> fst = builder.finish();
+        fst.save(Paths.get(outputFile));
+        System.out.println("[Done].");
+        System.out.println("Titles: " + entries.size() + ", FST size: " + fst.ramBytesUsed() + " bytes");
+    }
+
+    private interface LineHandler {
+        void line(String f1, String f2);
+    }
+
+    private static void readTSV(String file, LineHandler handler) throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int i = line.indexOf('\t');
+                if (i > 0) {
+                    handler.line(line.substring(0, i), line.substring(i + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Main method.
+     * Usage: LocalTitleResolver build titles.tsv redirects.tsv output.fst
+     *        LocalTitleResolver get output.fst title
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) throws IOException {
+        if ("build".equals(args[0])) {
+            build(args[1], "-".equals(args[2]) ? null : args[2], args[3]);
+            System.out.println("FST written at: " + args[3]);
+        } else if ("get".equals(args[0])) {
+            LocalTitleResolver resolver = LocalTitleResolver.open(args[1]);
+            long start = System.nanoTime();
+            int id = resolver.getId(args[2]);
+            long end = System.nanoTime();
+            System.out.println("ID: " + id + "\t" + "Time: " + (end - start) / 1000 + " us");
+        } else {
+            System.err.println("Usage: LocalTitleResolver build titles redirects output | get fst title");
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side resilience layer for the remote annotators (SWAT, WAT, DBpedia, Google KG).
+ * Every remote call is routed through an {@link Endpoint}, which combines:
+ * (1) a token-bucket rate limiter,
+ * (2) bounded retries with exponential jittered backoff,
+ * (3) a circuit breaker with half-open probing, and
+ * (4) latency and error metrics.
+ *
+ * Endpoints are configured using system properties (NAME is the endpoint name, e.g., "swat" or "wat-tag"):
+ *      -Dapi.NAME.rate=R              Maximum requests per second (default = 0 = no limit)
+ *      -Dapi.NAME.burst=B             Size of the token bucket (default = max(1, R))
+ *      -Dapi.NAME.retries=N           Maximum number of retries after the first attempt (default = 4)
+ *      -Dapi.NAME.backoff=MS          Base backoff in milliseconds (default = 500)
+ *      -Dapi.NAME.maxBackoff=MS       Maximum backoff in milliseconds (default = 30000)
+ *      -Dapi.NAME.breaker.failures=F  Consecutive failures which open the circuit (default = 5)
+ *      -Dapi.NAME.breaker.open=MS     Time the circuit stays open before a probe is let through (default = 30000)
+ * Use -Dapi.metrics=true to print the metrics of all endpoints when the JVM exits.
+ *
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class Resilience {
+
+    private final static Map<String, Endpoint> ENDPOINTS = new ConcurrentHashMap<>();
+
+    static {
+        if (Boolean.getBoolean("api.metrics")) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Resilience::printMetrics));
+        }
+    }
+
+    /**
+     * Get the endpoint with the given name, creating it if it does not exist yet.
+     * @param name String Name of the endpoint.
+     * @return Endpoint
+     */
+
+    @NotNull
+    public static Endpoint endpoint(String name) {
+        return ENDPOINTS.computeIfAbsent(name, Endpoint::new);
+    }
+
+    /**
+     * Print the metrics of all endpoints to System.err.
+     */
+
+    public static void printMetrics() {
+        List<String> names = new ArrayList<>(ENDPOINTS.keySet());
+        names.sort(String::compareTo);
+        for (String name : names) {
+            System.err.println(ENDPOINTS.get(name).getMetrics());
+        }
+    }
+
+    /**
+     * A remote call which may be attempted more than once.
+     * @param <T> Type of the result
+     */
+
+    public interface Call<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Thrown when an endpoint could not be reached even after all retries, or when its circuit stays open.
+     * Unchecked, so that a failing annotator aborts a run instead of silently dropping passages from it.
+     */
+
+    public static class ServiceUnavailableException extends RuntimeException {
+        public ServiceUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Thrown by a call when the server answered with a HTTP error status.
+     * Status 429 (Too Many Requests) and 5xx are retried, all other statuses fail immediately.
+     */
+
+    public static class HttpStatusException extends IOException {
+        private final int status;
+        private final long retryAfterMillis;
+
+        public HttpStatusException(int status, long retryAfterMillis) {
+            super("Server returned HTTP status " + status);
+            this.status = status;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+
+        /**
+         * Parse the value of a "Retry-After" header given in seconds.
+         * @param header String Value of the header (may be null).
+         * @return Long Milliseconds to wait, 0 if the header is absent or not a number.
+         */
+
+        public static long parseRetryAfter(String header) {
+            if (header == null) {
+                return 0;
+            }
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Token-bucket rate limiter.
+     * Tokens are refilled continuously at the given rate. A caller that finds the bucket empty reserves a token
+     * ahead of time and sleeps until it becomes available, so concurrent callers are served in order.
+     */
+
+    public static class TokenBucket {
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        /**
+         * Constructor.
+         * @param rate Double Tokens per second. A rate of zero or less disables the limiter.
+         * @param capacity Double Maximum number of tokens in the bucket (burst size).
+         */
+
+        public TokenBucket(double rate, double capacity) {
+            this.rate = rate;
+            this.capacity = Math.max(1.0d, capacity);
+            this.tokens = this.capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        /**
+         * Take one token, waiting if necessary.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+
+        public void acquire() throws InterruptedException {
+            if (rate <= 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1e9);
+                lastRefill = now;
+                tokens -= 1.0d;
+                waitNanos = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+
+    /**
+     * Circuit breaker.
+     * CLOSED: calls go through. After a number of consecutive failures the circuit OPENs.
+     * OPEN: calls are rejected until the open interval has elapsed, then the circuit becomes HALF_OPEN.
+     * HALF_OPEN: a single probe call is let through. If it succeeds the circuit CLOSEs, otherwise it OPENs again.
+     */
+
+    public static class CircuitBreaker {
+        public enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final int failureThreshold;
+        private final long openMillis;
+        private State state = State.CLOSED;
+        private int consecutiveFailures = 0;
+        private long openedAt = 0;
+        private boolean probeInFlight = false;
+
+        public CircuitBreaker(int failureThreshold, long openMillis) {
+            this.failureThreshold = Math.max(1, failureThreshold);
+            this.openMillis = openMillis;
+        }
+
+        /**
+         * Ask for permission to make a call.
+         * @return Long 0 if the call may proceed, otherwise the number of milliseconds after which to ask again.
+         */
+
+        public synchronized long tryAcquire() {
+            long now = System.currentTimeMillis();
+            switch (state) {
+                case OPEN:
+                    long remaining = openedAt + openMillis - now;
+                    if (remaining > 0) {
+                        return remaining;
+                    }
+                    state = State.HALF_OPEN;
+                    probeInFlight = true;
+                    return 0;
+                case HALF_OPEN:
+                    if (probeInFlight) {
+                        return Math.max(1, openMillis / 10);
+                    }
+                    probeInFlight = true;
+                    return 0;
+                default:
+                    return 0;
+            }
+        }
+
+        public synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            probeInFlight = false;
+            state = State.CLOSED;
+        }
+
+        public synchronized void onFailure() {
+            consecutiveFailures++;
+            probeInFlight = false;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+            }
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+    }
+
+    /**
+     * Latency and error metrics of an endpoint.
+     */
+
+    public static class Metrics {
+        private final String name;
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalLatencyNanos = new LongAdder();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        Metrics(String name) {
+            this.name = name;
+        }
+
+        void recordAttempt(long latencyNanos, boolean success) {
+            attempts.increment();
+            if (success) {
+                successes.increment();
+            } else {
+                failures.increment();
+            }
+            totalLatencyNanos.add(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        }
+
+        public long getAttempts() {
+            return attempts.sum();
+        }
+
+        public long getSuccesses() {
+            return successes.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public double getMeanLatencyMillis() {
+            long n = attempts.sum();
+            return n == 0 ? 0.0d : totalLatencyNanos.sum() / 1e6 / n;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Endpoint{name='%s', attempts=%d, successes=%d, failures=%d, retries=%d, " +
+                            "rejected=%d, meanLatency=%.1fms, maxLatency=%.1fms}",
+                    name, getAttempts(), getSuccesses(), getFailures(), getRetries(), getRejected(),
+                    getMeanLatencyMillis(), getMaxLatencyMillis());
+        }
+    }
+
+    /**
+     * A named remote endpoint.
+     */
+
+    public static class Endpoint {
+        private final String name;
+        private final TokenBucket limiter;
+        private final CircuitBreaker breaker;
+        private final Metrics metrics;
+        private final int maxRetries;
+        private final long baseBackoffMillis;
+        private final long maxBackoffMillis;
+
+        Endpoint(String name) {
+            this.name = name;
+            String prefix = "api." + name + ".";
+            double rate = Double.parseDouble(System.getProperty(prefix + "rate", "0"));
+            double burst = Double.parseDouble(System.getProperty(prefix + "burst", Double.toString(Math.max(1, rate))));
+            this.limiter = new TokenBucket(rate, burst);
+            this.breaker = new CircuitBreaker(Integer.getInteger(prefix + "breaker.failures", 5),
+                    Long.getLong(prefix + "breaker.open", 30000L));
+            this.maxRetries = Integer.getInteger(prefix + "retries", 4);
+            this.baseBackoffMillis = Long.getLong(prefix + "backoff", 500L);
+            this.maxBackoffMillis = Long.getLong(prefix + "maxBackoff", 30000L);
+            this.metrics = new Metrics(name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Metrics getMetrics() {
+            return metrics;
+        }
+
+        public CircuitBreaker getBreaker() {
+            return breaker;
+        }
+
+        /**
+         * Make a call through this endpoint.
+         * @param call Call The remote call. It is attempted at most (1 + retries) times.
+         * @param <T> Type of the result.
+         * @return The result of the first successful attempt.
+         * @throws ServiceUnavailableException If all attempts failed, or a non-retryable error occurred.
+         */
+
+        public <T> T call(@NotNull Call<T> call) {
+            IOException lastError = null;
+
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                if (attempt > 0) {
+                    metrics.retries.increment();
+                }
+                try {
+                    long wait = breaker.tryAcquire();
+                    if (wait > 0) {
+                        // Circuit is open: do not hit the server, wait for the next probe window instead.
+                        metrics.rejected.increment();
+                        lastError = new IOException("Circuit open for endpoint " + name);
+                        sleep(Math.max(wait, backoff(attempt)));
+                        continue;
+                    }
+                    limiter.acquire();
+
+                    long start = System.nanoTime();
+                    try {
+                        T result = call.call();
+                        metrics.recordAttempt(System.nanoTime() - start, true);
+                        breaker.onSuccess();
+                        return result;
+                    } catch (IOException e) {
+                        metrics.recordAttempt(System.nanoTime() - start, false);
+                        lastError = e;
+                        if (!isRetryable(e)) {
+                            // The server is up but rejected the request: do not count it against the circuit.
+                            breaker.onSuccess();
+                            break;
+                        }
+                        breaker.onFailure();
+                        if (attempt < maxRetries) {
+                            sleep(Math.max(retryAfter(e), backoff(attempt)));
+                        }
+                    } catch (RuntimeException e) {
+                        // E.g., a response which does not parse. Not retried, but it must end a half-open probe,
+                        // or the circuit would never close again.
+                        metrics.recordAttempt(System.nanoTime() - start, false);
+                        breaker.onFailure();
+                        throw e;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ServiceUnavailableException("Interrupted while calling endpoint " + name, e);
+                }
+            }
+            throw new ServiceUnavailableException("Endpoint " + name + " unavailable: " +
+                    (lastError == null ? "unknown error" : lastError.getMessage()), lastError);
+        }
+
+        /**
+         * Exponential backoff with full jitter: a random delay in [0, min(maxBackoff, base * 2^attempt)].
+         * @param attempt Integer Number of the attempt (0-based).
+         * @return Long Delay in milliseconds.
+         */
+
+        private long backoff(int attempt) {
+            long cap = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+            return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+        }
+
+        private static long retryAfter(IOException e) {
+            return e instanceof HttpStatusException ? ((HttpStatusException) e).getRetryAfterMillis() : 0;
+        }
+
+        private static boolean isRetryable(IOException e) {
+            int status = -1;
+            if (e instanceof HttpStatusException) {
+                status = ((HttpStatusException) e).getStatus();
+            } else if (e instanceof org.jsoup.HttpStatusException) {
+                status = ((org.jsoup.HttpStatusException) e).getStatusCode();
+            }
+            // Network errors (timeouts, refused connections, truncated responses) are always retried
+            return status < 0 || status == 429 || status >= 500;
+        }
+
+        private static void sleep(long millis) throws InterruptedException {
+            if (millis > 0) {
+                Thread.sleep(millis);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Streaming decoder for the JSON responses of the annotation services.
+ * The response is read token by token from the stream; no String copy of the response and no JSON tree is built.
+ * Only the wanted fields of the objects in one top-level array (e.g., "annotations") are kept. They are copied into
+ * a reusable {@link Row}, which is handed to a {@link RowHandler} at the end of every object. The primitive values
+ * at the top level of the response (e.g., "status") are kept as well.
+ * Fields of objects nested in the array elements are named by their path, e.g., "src_title.wiki_id".
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class ResponseDecoder implements ContentHandler {
+
+    /**
+     * Called once for every object in the array.
+     */
+
+    public interface RowHandler {
+        void row(Row row);
+    }
+
+    /**
+     * The wanted fields of one object in the array.
+     * The Row is reused for the next object, so copy the values out of it in the handler.
+     */
+
+    public static class Row {
+        private final Object[] values;
+
+        private Row(int size) {
+            values = new Object[size];
+        }
+
+        private void clear() {
+            Arrays.fill(values, null);
+        }
+
+        public boolean has(int field) {
+            return values[field] != null;
+        }
+
+        public int getInt(int field, int defaultValue) {
+            Object o = values[field];
+            if (o instanceof Number) {
+                return ((Number) o).intValue();
+            }
+            if (o instanceof String) {
+                try {
+                    return Integer.parseInt((String) o);
+                } catch (NumberFormatException e) {
+                    return defaultValue;
+                }
+            }
+            return defaultValue;
+        }
+
+        public double getDouble(int field, double defaultValue) {
+            Object o = values[field];
+            if (o instanceof Number) {
+                return ((Number) o).doubleValue();
+            }
+            if (o instanceof String) {
+                try {
+                    return Double.parseDouble((String) o);
+                } catch (NumberFormatException e) {
+                    return defaultValue;
+                }
+            }
+            return defaultValue;
+        }
+
+        public String getString(int field, String defaultValue) {
+            Object o = values[field];
+            return o == null ? defaultValue : o.toString();
+        }
+    }
+
+    private final String arrayKey;
+    private final Map<String, Integer> fieldIndex = new HashMap<>();
+    private final RowHandler handler;
+    private final Row row;
+    private final Map<String, Object> top = new HashMap<>();
+
+    // Parser state
+    private final Deque<String> keys = new ArrayDeque<>();
+    private int depth = 0, rowKeyBase = 0, nestedArrays = 0;
+    private boolean inArray = false, inRow = false, sawObject = false;
+
+    /**
+     * Constructor.
+     * @param arrayKey String Name of the top-level array whose objects are decoded (null to keep only the top level).
+     * @param fields Array Names (paths) of the wanted fields. The index of a name is its index in the Row.
+     * @param handler RowHandler Called for every object in the array (may be null if arrayKey is null).
+     */
+
+    public ResponseDecoder(@Nullable String arrayKey, @NotNull String[] fields, @Nullable RowHandler handler) {
+        this.arrayKey = arrayKey;
+        this.handler = handler;
+        this.row = new Row(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            fieldIndex.put(fields[i], i);
+        }
+    }
+
+    /**
+     * Decode a response.
+     * The RowHandler is called while the response is read, so on a retry it sees the rows of the new attempt again.
+     * @param in Reader Stream to read the response from. It is not closed.
+     * @throws IOException If the stream could not be read, or does not contain a JSON object.
+     */
+
+    public void decode(@NotNull Reader in) throws IOException {
+        // The decoder may be reused when a request is retried, so forget what an earlier attempt has read.
+        top.clear();
+        keys.clear();
+        depth = 0;
+        inArray = inRow = sawObject = false;
+        try {
+            new JSONParser().parse(in, this);
+        } catch (ParseException e) {
+            throw new IOException("Malformed response: " + e);
+        }
+        if (!sawObject) {
+            throw new IOException("Server returned no result.");
+        }
+    }
+
+    /**
+     * Get a primitive value from the top level of the response.
+     * @param key String Name of the field.
+     * @return Object String, Long, Double or Boolean; null if the field is absent.
+     */
+
+    @Nullable
+    public Object getTop(String key) {
+        return top.get(key);
+    }
+
+    ///////////////////////////////////////// ContentHandler /////////////////////////////////////////
+
+    @Override
+    public void startJSON() {
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+        depth++;
+        if (depth == 1) {
+            sawObject = true;
+        } else if (inArray && !inRow && depth == 3) {
+            inRow = true;
+            row.clear();
+            rowKeyBase = keys.size();
+            nestedArrays = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endObject() {
+        if (inRow && depth == 3) {
+            inRow = false;
+            if (handler != null) {
+                handler.row(row);
+            }
+        }
+        depth--;
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+        // Inside a row, keys are pushed as paths relative to the row ("src_title.wiki_id").
+        if (inRow && keys.size() > rowKeyBase) {
+            keys.push(keys.peek() + "." + key);
+        } else {
+            keys.push(key);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        keys.pop();
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        depth++;
+        if (depth == 2 && arrayKey != null && arrayKey.equals(keys.peek())) {
+            inArray = true;
+        } else if (inRow) {
+            nestedArrays++;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        if (inRow) {
+            nestedArrays--;
+        } else if (inArray && depth == 2) {
+            inArray = false;
+        }
+        depth--;
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+        if (inRow) {
+            if (nestedArrays == 0 && keys.size() > rowKeyBase) {
+                Integer i = fieldIndex.get(keys.peek());
+                if (i != null) {
+                    row.values[i] = value;
+                }
+            }
+        } else if (depth == 1 && !keys.isEmpty()) {
+            top.put(keys.peek(), value);
+        }
+        return true;
+    }
+}
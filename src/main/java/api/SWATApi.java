@@ -13,6 +13,7 @@ import java.net.*;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -25,22 +26,95 @@ import java.util.Scanner;
  */
 
 public class SWATApi {
-    private final static String URL = "https://swat.d4science.org/salience";
     private final static String TOKEN = "xxxxxx"; // INSERT YOUR KEY HERE
 
+    private final static Resilience.Endpoint ENDPOINT = Resilience.endpoint(Services.SWAT);
+
+    private final static String[] FIELDS = {"wiki_id", "wiki_title", "start", "end", "salience_score", "salience_class"};
+    private final static int WIKI_ID = 0, WIKI_TITLE = 1, START = 2, END = 3, SALIENCE_SCORE = 4, SALIENCE_CLASS = 5;
+
+    /**
+     * Inner class to represent an annotation.
+     */
+
+    public static class Annotation {
+        private final int wikiId, start, end;
+        private final String wikiTitle;
+        private final double salienceScore;
+        private final boolean salient;
+
+        /**
+         * Constructor.
+         * @param wikiId Integer Wikipedia ID of the page the entity links to.
+         * @param wikiTitle String Wikipedia page title of the page the entity links to.
+         * @param start Integer Character offset (included)
+         * @param end Integer Character offset (not included)
+         * @param salienceScore Double Salience score of the entity.
+         * @param salient Boolean True if SWAT classified the entity as salient (salience_class = 1).
+         */
+
+        Annotation(int wikiId, String wikiTitle, int start, int end, double salienceScore, boolean salient) {
+            this.wikiId = wikiId;
+            this.wikiTitle = wikiTitle;
+            this.start = start;
+            this.end = end;
+            this.salienceScore = salienceScore;
+            this.salient = salient;
+        }
+
+        public int getWikiId() {
+            return wikiId;
+        }
+
+        public String getWikiTitle() {
+            return wikiTitle;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public double getSalienceScore() {
+            return salienceScore;
+        }
+
+        public boolean isSalient() {
+            return salient;
+        }
+
+        @Override
+        public String toString() {
+            return "Annotation{" +
+                    "wikiId=" + wikiId +
+                    ", wikiTitle='" + wikiTitle + '\'' +
+                    ", start=" + start +
+                    ", end=" + end +
+                    ", salienceScore=" + salienceScore +
+                    ", salient=" + salient +
+                    '}';
+        }
+    }
+
     /**
      * Get the salient entities in the text with their scores.
      * @param text String Text to annotate.
      * @return Map where Key = EntityID and Value = Saliency Score if any salient entities are found, null otherwise.
+     * @throws Resilience.ServiceUnavailableException If SWAT could not be reached, or did not return status "ok",
+     * even after retrying.
      */
 
     @Nullable
     public static Map<String, Double>   getSalientEntities(String text) {
         Map<String, Double> salientEntities = new HashMap<>();
-        URL u = getURL();
-        assert u != null;
-        URLConnection connection = setUpConnection(u);
-        doTask(connection, text, salientEntities);
+        for (Annotation annotation : getAnnotations(text)) {
+            if (annotation.isSalient()) {
+                salientEntities.put(annotation.getWikiTitle().toLowerCase(), annotation.getSalienceScore());
+            }
+        }
         if (salientEntities.size() != 0) {
             return salientEntities;
         } else {
@@ -48,55 +122,69 @@ public class SWATApi {
         }
     }
 
+    /**
+     * Get all the annotations (salient as well as non-salient) in the text.
+     * The response is decoded as it is read from the connection, see {@link ResponseDecoder}.
+     * @param text String Text to annotate.
+     * @return List of annotations.
+     * @throws Resilience.ServiceUnavailableException If SWAT could not be reached, or did not return status "ok",
+     * even after retrying.
+     */
+
+    @NotNull
+    public static List<Annotation> getAnnotations(String text) {
+        String jsonInputString = "{\"content\": " + JSONObject.quote(text) + "}";
+        return ENDPOINT.call(() -> post(jsonInputString));
+    }
+
     /**
      * Get all the annotations as returned by SWAT.
      * @param text The text to annotate.
      * @return List of all annotations
+     * @throws Resilience.ServiceUnavailableException If SWAT could not be reached even after retrying.
+     * @deprecated Every annotation is returned as a JSON string which has to be parsed again. Use getAnnotations().
      */
+    @Deprecated
     @NotNull
     public static ArrayList<String> getAllEntities(String text) {
         ArrayList<String> annotationList = new ArrayList<>();
-        URL u = getURL();
-        URLConnection connection = setUpConnection(u);
-        doTask(connection, text, annotationList);
+        try {
+            for (Annotation annotation : getAnnotations(text)) {
+                JSONObject jsonObject = new JSONObject();
+                jsonObject.put("wiki_id", annotation.getWikiId());
+                jsonObject.put("wiki_title", annotation.getWikiTitle());
+                jsonObject.put("start", annotation.getStart());
+                jsonObject.put("end", annotation.getEnd());
+                jsonObject.put("salience_score", annotation.getSalienceScore());
+                jsonObject.put("salience_class", annotation.isSalient() ? 1.0 : 0.0);
+                annotationList.add(jsonObject.toString());
+            }
+        } catch (JSONException e) {
+            System.err.println("ERROR: JSONException");
+            e.printStackTrace();
+        }
         return annotationList;
     }
 
     /**
-     * Do the actual work.
-     * @param connection URLConnection
-     * @param text String
-     * @param annotationList List
+     * Make one attempt at posting the text to SWAT.
+     * @param jsonInputString The text in JSON format.
+     * @return List The annotations decoded from the response.
+     * @throws IOException If the connection failed, the server returned an error status or an empty response.
      */
-    private static void doTask(URLConnection connection,
-                               String text,
-                               ArrayList<String> annotationList) {
-        String jsonInputString = "{\"content\": \"" + text + "\"}";
-        write(jsonInputString, connection);
-        String res = read(connection);
-
-        if (res.isEmpty()) {
-            System.err.println("Server returned no result.");
-            return;
-        }
-
+    @NotNull
+    private static List<Annotation> post(@NotNull String jsonInputString) throws IOException {
+        HttpURLConnection connection = setUpConnection(getURL());
         try {
-            JSONObject response = new JSONObject(res);
-            String status = response.getString("status");
-            if ("ok".equals(status)) {
-                JSONArray jsonArray = response.getJSONArray("annotations");
-                for (int i = 0; i < jsonArray.length(); i++) {
-                    // Get each annotation
-                    Object ob = jsonArray.get(i);
-                    // Convert to JSON
-                    JSONObject o = (JSONObject)ob;
-                    // Add to list as string
-                    annotationList.add(o.toString());
-                }
+            write(jsonInputString, connection);
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new Resilience.HttpStatusException(status,
+                        Resilience.HttpStatusException.parseRetryAfter(connection.getHeaderField("Retry-After")));
             }
-        } catch (JSONException e) {
-            System.err.println("ERROR: JSONException");
-            e.printStackTrace();
+            return read(connection);
+        } finally {
+            connection.disconnect();
         }
     }
 
@@ -105,46 +193,30 @@ public class SWATApi {
      * This method adds the parameter "gcube-token" to the URL.
      * @return URL
      */
-    @Nullable
-    private static URL getURL() {
-        URIBuilder ub = null;
+    @NotNull
+    private static URL getURL() throws MalformedURLException {
         try {
-            ub = new URIBuilder(URL);
+            URIBuilder ub = new URIBuilder(Services.url(Services.SWAT));
+            ub.addParameter("gcube-token", TOKEN);
+            return new URL(ub.toString());
         } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-        assert ub != null;
-        ub.addParameter("gcube-token", TOKEN);
-        String url_new = ub.toString();
-        try {
-            return new URL (url_new);
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
+            throw new MalformedURLException(e.getMessage());
         }
-        return null;
     }
 
     /**
      * Setup the connection to the SWAT API.
      * @param url URL to connect to.
-     * @return URLConnection
+     * @return HttpURLConnection
      */
     @NotNull
-    private static URLConnection setUpConnection(@NotNull URL url) {
-        HttpURLConnection con = null;
-        try {
-            con = (HttpURLConnection)url.openConnection();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            assert con != null;
-            con.setRequestMethod("POST");
-        } catch (ProtocolException e) {
-            e.printStackTrace();
-        }
+    private static HttpURLConnection setUpConnection(@NotNull URL url) throws IOException {
+        HttpURLConnection con = (HttpURLConnection)url.openConnection();
+        con.setRequestMethod("POST");
         con.setRequestProperty("Content-Type", "application/json; utf-8");
         con.setRequestProperty("Accept", "application/json");
+        con.setConnectTimeout(30000);
+        con.setReadTimeout(120000);
         con.setDoOutput(true);
         return con;
     }
@@ -155,87 +227,39 @@ public class SWATApi {
      * @param connection URLConnection
      */
     private static void write(@NotNull String jsonInputString,
-                              @NotNull URLConnection connection) {
+                              @NotNull URLConnection connection) throws IOException {
         try(OutputStream os = connection.getOutputStream()) {
             byte[] input = jsonInputString.getBytes(StandardCharsets.UTF_8);
             os.write(input, 0, input.length);
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
     /**
      * Read the response from the server.
      * @param connection URLConnection
-     * @return String The response read
+     * @return List The annotations.
+     * @throws IOException If the response could not be read, or SWAT did not return status "ok" (so that the text is
+     * not mistaken for one without annotations).
      */
     @NotNull
-    private static String read(@NotNull URLConnection connection) {
-
-        InputStream inputStream;
-        try {
-            inputStream = connection.getInputStream();
-        } catch (IOException e) {
-            System.err.println("ERROR: IOException");
-            System.err.println("Input Stream not available.");
-            return "";
+    private static List<Annotation> read(@NotNull URLConnection connection) throws IOException {
+        List<Annotation> annotations = new ArrayList<>();
+        ResponseDecoder decoder = new ResponseDecoder("annotations", FIELDS, row ->
+                annotations.add(new Annotation(
+                        row.getInt(WIKI_ID, 0),
+                        row.getString(WIKI_TITLE, ""),
+                        row.getInt(START, 0),
+                        row.getInt(END, 0),
+                        row.getDouble(SALIENCE_SCORE, 0.0d),
+                        row.getDouble(SALIENCE_CLASS, 0.0d) == 1.0)));
+        try (Reader in = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+            decoder.decode(in);
         }
-
-        try {
-            if (inputStream.available() == 0) {
-                System.err.println("InputStream available but no data to read.");
-                return "";
-            }
-        } catch (IOException e) {
-            System.err.println("ERROR: IOException");
-            System.err.println("InputStream available but no data to read.");
-            return "";
-        }
-
-
-        StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
-            }
-        } catch (IOException e) {
-            System.err.println("ERROR: IOException while reading from InputStream");
-            e.printStackTrace();
-        }
-        return response.toString();
-    }
-
-    /**
-     * Do the actual work.
-     * @param connection URLConnection
-     */
-    private static void doTask(URLConnection connection,
-                               String text,
-                               Map<String, Double> salientEntities) {
-        String jsonInputString = "{\"content\": \"" + text + "\"}";
-
-        write(jsonInputString, connection);
-        String res = read(connection);
-
-        if (res.isEmpty()) {
-            System.err.println("Server returned no result.");
-            return;
-        }
-
-        try {
-            JSONObject response = new JSONObject(res);
-            String status = response.getString("status");
-            if ("ok".equals(status)) {
-                JSONArray jsonObjects = response.getJSONArray("annotations");
-                getSalientEntities(jsonObjects, salientEntities);
-            }
-        } catch (JSONException e) {
-            System.err.println("ERROR: JSONException");
-            e.printStackTrace();
-
+        Object status = decoder.getTop("status");
+        if (!"ok".equals(status)) {
+            throw new IOException("SWAT returned status: " + status);
         }
+        return annotations;
     }
 
     /**
@@ -281,33 +305,13 @@ public class SWATApi {
      * @param args command line arguments
      */
 
-    public static void main(String[] args) throws IOException, ClassNotFoundException, JSONException {
+    public static void main(String[] args) {
 
         Scanner sc = new Scanner(System.in);
         System.out.println("Enter text to annotate: ");
         String text = sc.nextLine();
-        System.out.println("Enter file to store: ");
-        String file = sc.nextLine();
-        ArrayList<String> list = SWATApi.getAllEntities(text);
-        System.out.println("Writing....");
-        ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(new File(file)));
-        oos.writeObject(list);
-        oos.flush();
-        oos.close();
-        System.out.println("done");
-
-        System.out.println("reading file: " + file);
-        ArrayList<String> listInFile;
-        ObjectInputStream ois = new ObjectInputStream(new FileInputStream(new File(file)));
-        listInFile = (ArrayList<String>) ois.readObject();
-        for (String s : listInFile) {
-            JSONObject jsonObject = new JSONObject(s);
-            //System.out.println(jsonObject);
-            System.out.println(jsonObject.getString("wiki_title"));
-
+        for (Annotation annotation : SWATApi.getAnnotations(text)) {
+            System.out.println(annotation);
         }
-        // System.out.println(list);
-
     }
 }
-
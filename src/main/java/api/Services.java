@@ -0,0 +1,83 @@
+package api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the remote services used by the API classes.
+ * Every service has a short name (the same name is used for its {@link Resilience} endpoint) and an upstream URL.
+ * If the system property "api.stub" is set to the base URL of a {@link StubServer} (e.g., -Dapi.stub=http://localhost:8765),
+ * all requests are sent to BASE/NAME instead, so that the pipeline can run without the live services.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class Services {
+    public final static String SWAT = "swat";
+    public final static String WAT_TAG = "wat-tag";
+    public final static String WAT_RELATEDNESS = "wat-relatedness";
+    public final static String WAT_TITLE = "wat-title";
+    public final static String WAT_SF = "wat-sf";
+    public final static String DBPEDIA_SPOTLIGHT = "dbpedia-spotlight";
+    public final static String DBPEDIA_SPARQL = "dbpedia-sparql";
+    public final static String GOOGLE_KG = "google-kg";
+
+    private final static Map<String, String> UPSTREAM = new LinkedHashMap<>();
+
+    static {
+        UPSTREAM.put(SWAT, "https://swat.d4science.org/salience");
+        UPSTREAM.put(WAT_TAG, "https://wat.d4science.org/wat/tag/tag");
+        UPSTREAM.put(WAT_RELATEDNESS, "https://wat.d4science.org/wat/relatedness/graph");
+        UPSTREAM.put(WAT_TITLE, "https://wat.d4science.org/wat/title");
+        UPSTREAM.put(WAT_SF, "https://wat.d4science.org/wat/sf/sf");
+        UPSTREAM.put(DBPEDIA_SPOTLIGHT, "https://api.dbpedia-spotlight.org/en/annotate");
+        UPSTREAM.put(DBPEDIA_SPARQL, "http://dbpedia.org/sparql");
+        UPSTREAM.put(GOOGLE_KG, "https://kgsearch.googleapis.com/v1/entities:search");
+    }
+
+    /**
+     * Get the URL to which requests for a service should be sent.
+     * This is the upstream URL, unless a stub server is configured with -Dapi.stub.
+     * @param name String Name of the service.
+     * @return String URL
+     */
+
+    @NotNull
+    public static String url(String name) {
+        String stub = System.getProperty("api.stub");
+        if (stub != null && !stub.isEmpty()) {
+            return (stub.endsWith("/") ? stub : stub + "/") + name;
+        }
+        return upstream(name);
+    }
+
+    /**
+     * Get the upstream (real) URL of a service.
+     * @param name String Name of the service.
+     * @return String URL
+     * @throws IllegalArgumentException If there is no service with the given name.
+     */
+
+    @NotNull
+    public static String upstream(String name) {
+        String url = UPSTREAM.get(name);
+        if (url == null) {
+            throw new IllegalArgumentException("Unknown service: " + name);
+        }
+        return url;
+    }
+
+    /**
+     * Get the names of all services.
+     * @return Set
+     */
+
+    @NotNull
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(UPSTREAM.keySet());
+    }
+}
@@ -0,0 +1,684 @@
+package api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Local stand-in for the remote services listed in {@link Services}.
+ * Start the server and run the pipeline with -Dapi.stub=http://localhost:PORT to use it instead of the live services.
+ *
+ * The server works in one of three modes:
+ * (1) record: Forward every request to the upstream service and append the response to an archive.
+ * (2) replay: Answer every request from the archive. Requests not found in the archive get a 404.
+ * (3) fake:   Answer every request with deterministic, synthetic annotations computed from the input text.
+ *             Needs no archive and no network, so throughput tests of the whole pipeline can run on a build box.
+ *
+ * The archive is a GZIP file of records (key, status, content type, body). The key of a request is made from the
+ * service name, the HTTP method, the sorted query parameters and the request body. Access tokens ("gcube-token" and
+ * "key") are left out of the key, so an archive recorded with one token can be replayed with any token.
+ *
+ * A latency (in milliseconds) may be added to every response to simulate the network.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class StubServer {
+    public enum Mode { RECORD, REPLAY, FAKE }
+
+    private final static Set<String> SECRET_PARAMS = new HashSet<>(Arrays.asList("gcube-token", "key"));
+    private final static Pattern IRI = Pattern.compile("<([^>]*)>");
+    private final static Pattern VALUES = Pattern.compile("values\\s*\\?\\w+\\s*\\{", Pattern.CASE_INSENSITIVE);
+    private final static Pattern CAPITALIZED = Pattern.compile("\\p{Lu}[\\p{L}\\p{N}]*(?:\\s+\\p{Lu}[\\p{L}\\p{N}]*)*");
+
+    private final Mode mode;
+    private final int port;
+    private final long latency, jitter;
+    private final Map<String, Record> archive = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+    private DataOutputStream archiveOut = null;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * A recorded response.
+     */
+
+    private static class Record {
+        final int status;
+        final String contentType;
+        final byte[] body;
+
+        Record(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param mode Mode Mode of the server.
+     * @param port Integer Port to listen on (0 = any free port).
+     * @param archiveFile String Path to the archive (ignored in fake mode).
+     * @param latency Long Latency in milliseconds added to every response.
+     * @param jitter Long Random extra latency in milliseconds (uniform in [0, jitter]).
+     */
+
+    public StubServer(Mode mode, int port, @Nullable String archiveFile, long latency, long jitter) {
+        this.mode = mode;
+        this.port = port;
+        this.latency = latency;
+        this.jitter = jitter;
+
+        if (mode != Mode.FAKE) {
+            if (archiveFile == null) {
+                throw new IllegalArgumentException("Mode " + mode + " needs an archive.");
+            }
+            File file = new File(archiveFile);
+            boolean clean = true;
+            if (file.exists()) {
+                System.out.print("Reading archive...");
+                clean = readArchive(file);
+                System.out.println("[Done].");
+                System.out.println("Responses in archive: " + archive.size());
+            }
+            if (mode == Mode.RECORD) {
+                try {
+                    if (!clean) {
+                        // A member without a trailer (e.g., from a killed session) would hide every member after it
+                        System.err.println("WARNING: Rewriting the archive from the records read.");
+                        rewriteArchive(file);
+                    }
+                    // Every run appends a new GZIP member to the archive. GZIPInputStream reads them all.
+                    archiveOut = new DataOutputStream(new BufferedOutputStream(
+                            new GZIPOutputStream(new FileOutputStream(file, true), true)));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Start the server.
+     * @return Integer The port the server is listening on.
+     * @throws IOException If the server could not be started.
+     */
+
+    public int start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        for (String name : Services.names()) {
+            server.createContext("/" + name, exchange -> handle(name, exchange));
+        }
+        // The handlers sleep to simulate latency, so do not serialize them.
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop the server and close the archive.
+     */
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+        synchronized (this) {
+            if (archiveOut != null) {
+                try {
+                    archiveOut.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                archiveOut = null;
+            }
+        }
+        System.err.println("StubServer{mode=" + mode + ", hits=" + hits.sum() + ", misses=" + misses.sum() + "}");
+    }
+
+    /**
+     * Handle one request.
+     * @param service String Name of the service.
+     * @param exchange HttpExchange
+     */
+
+    private void handle(String service, @NotNull HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = readAll(exchange.getRequestBody());
+            String query = exchange.getRequestURI().getRawQuery();
+            String key = key(service, exchange.getRequestMethod(), query, body);
+            Record record;
+
+            switch (mode) {
+                case REPLAY:
+                    record = archive.get(key);
+                    if (record == null) {
+                        misses.increment();
+                        record = new Record(404, "text/plain", ("Not in archive: " + key).getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        hits.increment();
+                    }
+                    break;
+                case RECORD:
+                    record = archive.get(key);
+                    if (record == null) {
+                        misses.increment();
+                        record = forward(service, exchange, query, body);
+                        if (record.status / 100 == 2) {
+                            archive.put(key, record);
+                            writeRecord(key, record);
+                        }
+                    } else {
+                        hits.increment();
+                    }
+                    break;
+                default:
+                    hits.increment();
+                    record = fake(service, params(query, body, exchange.getRequestHeaders()), body);
+            }
+
+            sleep();
+            exchange.getResponseHeaders().set("Content-Type", record.contentType);
+            exchange.sendResponseHeaders(record.status, record.body.length == 0 ? -1 : record.body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(record.body);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            byte[] msg = String.valueOf(e).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(500, msg.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(msg);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sleep for the configured latency.
+     */
+
+    private void sleep() throws InterruptedException {
+        long ms = latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        if (ms > 0) {
+            TimeUnit.MILLISECONDS.sleep(ms);
+        }
+    }
+
+    /////////////////////////////////////////////// RECORD / REPLAY ///////////////////////////////////////////////
+
+    /**
+     * Make the archive key for a request.
+     * Query parameters are sorted and access tokens are removed.
+     */
+
+    @NotNull
+    private static String key(String service, String method, @Nullable String rawQuery, byte[] body) {
+        List<String> params = new ArrayList<>();
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            for (String param : rawQuery.split("&")) {
+                int i = param.indexOf('=');
+                String name = decode(i < 0 ? param : param.substring(0, i));
+                if (!SECRET_PARAMS.contains(name)) {
+                    params.add(param);
+                }
+            }
+        }
+        Collections.sort(params);
+        return service + " " + method + " " + String.join("&", params) + " " + new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forward a request to the upstream service.
+     */
+
+    @NotNull
+    private static Record forward(String service,
+                                  @NotNull HttpExchange exchange,
+                                  @Nullable String rawQuery,
+                                  byte[] body) throws IOException {
+        String url = Services.upstream(service) + (rawQuery == null ? "" : "?" + rawQuery);
+        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            con.setRequestMethod(exchange.getRequestMethod());
+            con.setConnectTimeout(30000);
+            con.setReadTimeout(120000);
+            for (String header : new String[]{"Content-Type", "Accept"}) {
+                String value = exchange.getRequestHeaders().getFirst(header);
+                if (value != null) {
+                    con.setRequestProperty(header, value);
+                }
+            }
+            if (body.length > 0) {
+                con.setDoOutput(true);
+                try (OutputStream os = con.getOutputStream()) {
+                    os.write(body);
+                }
+            }
+            int status = con.getResponseCode();
+            InputStream is = status / 100 == 2 ? con.getInputStream() : con.getErrorStream();
+            byte[] response = is == null ? new byte[0] : readAll(is);
+            String contentType = con.getContentType() == null ? "application/json" : con.getContentType();
+            return new Record(status, contentType, response);
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    /**
+     * Read the records of the archive.
+     * @param file File Archive.
+     * @return Boolean True if the whole archive was read; false if it is truncated or corrupt, in which case the
+     * records before the damage are kept.
+     */
+
+    private boolean readArchive(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            while (true) {
+                String key;
+                try {
+                    key = new String(readBytes(in), StandardCharsets.UTF_8);
+                } catch (EOFException e) {
+                    break;
+                }
+                int status = in.readInt();
+                String contentType = new String(readBytes(in), StandardCharsets.UTF_8);
+                byte[] body = readBytes(in);
+                archive.put(key, new Record(status, contentType, body));
+            }
+        } catch (EOFException e) {
+            System.err.println("WARNING: Archive is truncated. Using the complete records only.");
+            return false;
+        } catch (ZipException e) {
+            System.err.println("WARNING: Archive is corrupt (" + e.getMessage() + "). Using the records before it.");
+            return false;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Replace the archive with a single GZIP member holding the records read from it.
+     * The records are written to a temporary file first, so the old archive survives a failure.
+     * @param file File Archive.
+     */
+
+    private void rewriteArchive(@NotNull File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(tmp))))) {
+            for (Map.Entry<String, Record> entry : archive.entrySet()) {
+                writeRecord(out, entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized void writeRecord(@NotNull String key, @NotNull Record record) throws IOException {
+        if (archiveOut == null) {
+            return;
+        }
+        writeRecord(archiveOut, key, record);
+        // Sync flush, so that an interrupted recording session keeps what it has recorded.
+        archiveOut.flush();
+    }
+
+    private static void writeRecord(@NotNull DataOutputStream out,
+                                    @NotNull String key,
+                                    @NotNull Record record) throws IOException {
+        writeBytes(out, key.getBytes(StandardCharsets.UTF_8));
+        out.writeInt(record.status);
+        writeBytes(out, record.contentType.getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, record.body);
+    }
+
+    private static void writeBytes(@NotNull DataOutputStream out, @NotNull byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    private static byte[] readBytes(@NotNull DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    @NotNull
+    private static byte[] readAll(@NotNull InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) != -1) {
+            bos.write(buffer, 0, n);
+        }
+        return bos.toByteArray();
+    }
+
+    ////////////////////////////////////////////////////// FAKE //////////////////////////////////////////////////////
+
+    /**
+     * Get the parameters of a request, from the query string and from a form-encoded body.
+     */
+
+    @NotNull
+    private static Map<String, List<String>> params(@Nullable String rawQuery, byte[] body, @NotNull Headers headers) {
+        Map<String, List<String>> params = new HashMap<>();
+        addParams(rawQuery, params);
+        String contentType = headers.getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            addParams(new String(body, StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void addParams(@Nullable String s, Map<String, List<String>> params) {
+        if (s == null || s.isEmpty()) {
+            return;
+        }
+        for (String param : s.split("&")) {
+            int i = param.indexOf('=');
+            String name = decode(i < 0 ? param : param.substring(0, i));
+            String value = i < 0 ? "" : decode(param.substring(i + 1));
+            params.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+    }
+
+    @NotNull
+    private static String param(@NotNull Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? "" : values.get(0);
+    }
+
+    @NotNull
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return s;
+        }
+    }
+
+    /**
+     * Synthesize a response.
+     * The "entities" in a text are its runs of capitalized words. Their ids and scores are computed from their titles,
+     * so the same input always gets the same response.
+     */
+
+    @NotNull
+    private static Record fake(@NotNull String service,
+                               @NotNull Map<String, List<String>> params,
+                               byte[] body) throws JSONException {
+        JSONObject json = new JSONObject();
+        switch (service) {
+            case Services.SWAT: {
+                String text = new String(body, StandardCharsets.UTF_8);
+                try {
+                    text = new JSONObject(text).getString("content");
+                } catch (JSONException e) {
+                    // Not valid JSON, annotate the raw body.
+                }
+                JSONArray annotations = new JSONArray();
+                for (Mention m : mentions(text)) {
+                    JSONObject a = new JSONObject();
+                    a.put("wiki_id", m.id);
+                    a.put("wiki_title", m.title);
+                    a.put("spot", m.spot);
+                    a.put("start", m.start);
+                    a.put("end", m.end);
+                    a.put("salience_class", m.score >= 0.5 ? 1.0 : 0.0);
+                    a.put("salience_score", m.score);
+                    annotations.put(a);
+                }
+                json.put("status", "ok");
+                json.put("annotations", annotations);
+                break;
+            }
+            case Services.WAT_TAG: {
+                JSONArray annotations = new JSONArray();
+                for (Mention m : mentions(param(params, "text"))) {
+                    JSONObject a = new JSONObject();
+                    a.put("id", m.id);
+                    a.put("title", m.title);
+                    a.put("spot", m.spot);
+                    a.put("start", m.start);
+                    a.put("end", m.end);
+                    a.put("rho", m.score);
+                    annotations.put(a);
+                }
+                json.put("annotations", annotations);
+                break;
+            }
+            case Services.WAT_RELATEDNESS: {
+                List<String> ids = params.getOrDefault("ids", Collections.emptyList());
+                JSONArray pairs = new JSONArray();
+                for (int i = 0; i < ids.size(); i++) {
+                    for (int j = i + 1; j < ids.size(); j++) {
+                        JSONObject pair = new JSONObject();
+                        pair.put("src_title", title(ids.get(i)));
+                        pair.put("dst_title", title(ids.get(j)));
+                        pair.put("relatedness", unit(ids.get(i) + " " + ids.get(j)));
+                        pairs.put(pair);
+                    }
+                }
+                json.put("pairs", pairs);
+                break;
+            }
+            case Services.WAT_TITLE:
+                json.put("wiki_id", id(param(params, "title").replace(' ', '_')));
+                break;
+            case Services.WAT_SF: {
+                String sf = param(params, "text");
+                JSONArray entities = new JSONArray();
+                int n = 1 + (int) (unit(sf) * 3);
+                for (int i = 0; i < n; i++) {
+                    JSONObject entity = new JSONObject();
+                    entity.put("wiki_id", id(sf.replace(' ', '_') + (i == 0 ? "" : "_(" + i + ")")));
+                    entity.put("num_links", (n - i) * 10);
+                    entity.put("probability", 1.0d / (1 << (i + 1)));
+                    entities.put(entity);
+                }
+                json.put("id", id(sf));
+                json.put("link_probability", unit(sf + "#lp"));
+                json.put("term_probability", unit(sf + "#tp"));
+                json.put("document_probability", unit(sf + "#dp"));
+                json.put("idf", 1 + unit(sf + "#idf") * 10);
+                json.put("tf_idf", unit(sf + "#tfidf") * 10);
+                json.put("tf", 1 + id(sf) % 100);
+                json.put("df", 1 + id(sf) % 50);
+                json.put("entities", entities);
+                break;
+            }
+            case Services.DBPEDIA_SPOTLIGHT: {
+                JSONArray resources = new JSONArray();
+                for (Mention m : mentions(param(params, "text"))) {
+                    JSONObject r = new JSONObject();
+                    r.put("@URI", "http://dbpedia.org/resource/" + m.title);
+                    r.put("@support", Integer.toString(1 + m.id % 1000));
+                    r.put("@types", "");
+                    r.put("@surfaceForm", m.spot);
+                    r.put("@offset", Integer.toString(m.start));
+                    r.put("@similarityScore", Double.toString(m.score));
+                    r.put("@percentageOfSecondRank", Double.toString(1 - m.score));
+                    resources.put(r);
+                }
+                json.put("Resources", resources);
+                break;
+            }
+            case Services.DBPEDIA_SPARQL: {
+                // One binding of (?entity, ?abstract) for every IRI in the VALUES clause of the query.
+                String query = param(params, "query");
+                JSONArray bindings = new JSONArray();
+                Matcher values = VALUES.matcher(query);
+                if (values.find()) {
+                    // IRIs between the VALUES clause and its closing brace
+                    int close = query.indexOf('}', values.end());
+                    Matcher iri = IRI.matcher(query).region(values.end(), close < 0 ? query.length() : close);
+                    while (iri.find()) {
+                        JSONObject entity = new JSONObject();
+                        entity.put("type", "uri");
+                        entity.put("value", iri.group(1));
+                        JSONObject value = new JSONObject();
+                        value.put("type", "literal");
+                        value.put("xml:lang", "en");
+                        value.put("value", "Synthetic abstract of " + iri.group(1) + ".");
+                        JSONObject binding = new JSONObject();
+                        binding.put("entity", entity);
+                        binding.put("abstract", value);
+                        bindings.put(binding);
+                    }
+                }
+                json.put("head", new JSONObject().put("vars", new JSONArray().put("entity").put("abstract")));
+                json.put("results", new JSONObject().put("bindings", bindings));
+                return new Record(200, "application/sparql-results+json",
+                        json.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            case Services.GOOGLE_KG: {
+                String q = param(params, "query");
+                JSONObject result = new JSONObject();
+                result.put("name", q);
+                result.put("@type", new JSONArray().put("Thing"));
+                result.put("description", "Synthetic entity");
+                result.put("detailedDescription", new JSONObject().put("articleBody", "Synthetic description of " + q + "."));
+                JSONObject item = new JSONObject();
+                item.put("resultScore", 1 + id(q) % 1000);
+                item.put("result", result);
+                json.put("itemListElement", new JSONArray().put(item));
+                break;
+            }
+            default:
+                return new Record(404, "text/plain", ("Unknown service: " + service).getBytes(StandardCharsets.UTF_8));
+        }
+        return new Record(200, "application/json", json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A synthetic entity mention.
+     */
+
+    private static class Mention {
+        final String spot, title;
+        final int id, start, end;
+        final double score;
+
+        Mention(String spot, int start, int end) {
+            this.spot = spot;
+            this.title = spot.replaceAll("\\s+", "_");
+            this.id = id(title);
+            this.start = start;
+            this.end = end;
+            this.score = unit(title);
+        }
+    }
+
+    @NotNull
+    private static List<Mention> mentions(@NotNull String text) {
+        List<Mention> mentions = new ArrayList<>();
+        Matcher m = CAPITALIZED.matcher(text);
+        while (m.find()) {
+            mentions.add(new Mention(m.group(), m.start(), m.end()));
+        }
+        return mentions;
+    }
+
+    @NotNull
+    private static JSONObject title(@NotNull String id) throws JSONException {
+        JSONObject title = new JSONObject();
+        int wikiId;
+        try {
+            wikiId = Integer.parseInt(id.trim());
+        } catch (NumberFormatException e) {
+            wikiId = 0;
+        }
+        title.put("wiki_id", wikiId);
+        title.put("wiki_title", "Entity_" + wikiId);
+        return title;
+    }
+
+    /**
+     * Deterministic positive id of a title.
+     */
+
+    private static int id(@NotNull String title) {
+        return 1 + (int) ((mix(title) >>> 33) % 50_000_000);
+    }
+
+    /**
+     * Deterministic number in [0, 1) for a string.
+     */
+
+    private static double unit(@NotNull String s) {
+        return (mix(s) >>> 11) * 0x1.0p-53;
+    }
+
+    private static long mix(@NotNull String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+    /**
+     * Main method.
+     * Usage: StubServer record|replay|fake port [archive] [latencyMs] [jitterMs]
+     * The server runs until the JVM is stopped.
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: StubServer record|replay|fake port [archive] [latencyMs] [jitterMs]");
+            System.exit(1);
+        }
+        Mode mode = Mode.valueOf(args[0].toUpperCase());
+        int port = Integer.parseInt(args[1]);
+        String archive = args.length > 2 && !"-".equals(args[2]) ? args[2] : null;
+        long latency = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        long jitter = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        StubServer server = new StubServer(mode, port, archive, latency, jitter);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        int p = server.start();
+        System.out.println("StubServer (" + mode.toString().toLowerCase() + ") listening on port " + p);
+        System.out.println("Run the pipeline with: -Dapi.stub=http://localhost:" + p);
+    }
+}
@@ -2,19 +2,22 @@ package api;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class uses the WAT Entity Linking System to annotate text with entities.
+ * All requests go through the rate-limited, retrying endpoints of {@link Resilience}.
  * @author Shubham Chatterjee
  * @version 3/8/2020
  */
@@ -42,7 +45,7 @@ public class WATApi {
          * @param rho Double Annotation accuracy
          */
 
-        private Annotation(int wikiId, String wikiTitle, int start, int end, double rho) {
+        Annotation(int wikiId, String wikiTitle, int start, int end, double rho) {
             this.wikiId = wikiId;
             this.wikiTitle = wikiTitle;
             this.start = start;
@@ -82,7 +85,11 @@ public class WATApi {
 
 
     public static class EntityLinker {
-        private final static String URL = "https://wat.d4science.org/wat/tag/tag ";
+        private final static Resilience.Endpoint ENDPOINT = Resilience.endpoint(Services.WAT_TAG);
+        private final static String[] FIELDS = {"id", "title", "start", "end", "rho"};
+        private final static int ID = 0, TITLE = 1, START = 2, END = 3, RHO = 4;
+
+        private static LocalEntityLinker local = null;
 
         /**
          * Method to return the annotations in the text.
@@ -93,42 +100,40 @@ public class WATApi {
         @NotNull
         private static ArrayList<Annotation> getAnnotations(String data) {
             ArrayList<Annotation> annotations = new ArrayList<>();
-            Document doc;
-
-            try {
-
-                doc = getDocument(data);
-
-                if (doc.text() != null) {
-                    JSONObject json = new JSONObject(doc.text());
-                    if (json.has("annotations")) {
-                        JSONArray jsonArray = json.getJSONArray("annotations");
-                        for (int i = 0; i < jsonArray.length(); i++) {
-
-                            JSONObject jsonObject = jsonArray.getJSONObject(i);
-
-                            String wikiTitle = jsonObject.getString("title");
-                            int wikiId = jsonObject.getInt("id");
-                            int start = jsonObject.getInt("start");
-                            int end = jsonObject.getInt("end");
-                            double rho = jsonObject.getDouble("rho");
-
-                            annotations.add(new Annotation(wikiId, wikiTitle, start, end, rho));
-
-                        }
-                    } else {
-                        System.err.println("ERROR: WAT could not find any annotations.");
-                    }
-                }
-            } catch (JSONException e) {
-                System.err.print("ERROR: JSONException");
+            ResponseDecoder decoder = new ResponseDecoder("annotations", FIELDS, row ->
+                    annotations.add(new Annotation(
+                            row.getInt(ID, 0),
+                            row.getString(TITLE, ""),
+                            row.getInt(START, 0),
+                            row.getInt(END, 0),
+                            row.getDouble(RHO, 0.0d))));
+
+            ENDPOINT.call(() -> {
+                annotations.clear();
+                read(getConnection(data), decoder);
                 return annotations;
+            });
+            if (annotations.isEmpty()) {
+                System.err.println("ERROR: WAT could not find any annotations.");
             }
             return annotations;
         }
 
+        /**
+         * Method to return the annotations in the text with at least the given confidence.
+         * If -Dwat.linker.dict=PATH is given, the text is annotated with the {@link LocalEntityLinker} at PATH
+         * instead of WAT (using the graph given by -Dwat.relatedness.graph for coherence, if any).
+         * @param data String The text to annotate.
+         * @param rho Double Minimum confidence (0 to keep all annotations).
+         * @return List List of annotations.
+         */
+
         @NotNull
         public static ArrayList<Annotation> getAnnotations(String data, double rho) {
+            LocalEntityLinker linker = localLinker();
+            if (linker != null) {
+                return linker.getAnnotations(data, rho);
+            }
             ArrayList<Annotation> allAnnotations = getAnnotations(data);
 
             if (rho == 0.0d) {
@@ -145,27 +150,38 @@ public class WATApi {
         }
 
         /**
-         * Helper method to connect to the URL.
+         * Load the local linker given by -Dwat.linker.dict (once), if any.
+         */
+
+        private static synchronized LocalEntityLinker localLinker() {
+            String path = System.getProperty("wat.linker.dict");
+            if (path == null) {
+                return null;
+            }
+            if (local == null) {
+                try {
+                    local = LocalEntityLinker.open(path, EntityRelatedness.localGraph());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not open entity linker dictionary: " + path, e);
+                }
+            }
+            return local;
+        }
+
+        /**
+         * Helper method to set up the connection to the URL.
          * @param data String The text to annotate.
-         * @return Document Jsoup document
+         * @return Connection Jsoup connection
          */
 
-        private static Document getDocument(String data) {
-            Document doc = null;
-            try {
-                doc = Jsoup.connect(URL)
-                        .data("lang", "en")
-                        .data("gcube-token", TOKEN)
-                        .data("text", data)
-                        .data("tokenizer", "nlp4j")
-                        .data("debug", "9")
-                        .data("method", "spotter:includeUserHint=true:includeNamedEntity=true:includeNounPhrase=true,prior:k=50,filter-valid,centroid:rescore=true,topk:k=5,voting:relatedness=lm,ranker:model=0046.model,confidence:model=pruner-wiki.linear")
-                        .ignoreContentType(true)
-                        .get();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return doc;
+        private static Connection getConnection(String data) {
+            return Jsoup.connect(Services.url(Services.WAT_TAG))
+                    .data("lang", "en")
+                    .data("gcube-token", TOKEN)
+                    .data("text", data)
+                    .data("tokenizer", "nlp4j")
+                    .data("debug", "9")
+                    .data("method", "spotter:includeUserHint=true:includeNamedEntity=true:includeNounPhrase=true,prior:k=50,filter-valid,centroid:rescore=true,topk:k=5,voting:relatedness=lm,ranker:model=0046.model,confidence:model=pruner-wiki.linear");
         }
     }
 
@@ -174,7 +190,12 @@ public class WATApi {
      */
 
     public static class  EntityRelatedness {
-        private final static String URL = "https://wat.d4science.org/wat/relatedness/graph";
+        private final static Resilience.Endpoint ENDPOINT = Resilience.endpoint(Services.WAT_RELATEDNESS);
+        private final static String[] FIELDS = {"src_title.wiki_id", "src_title.wiki_title",
+                "dst_title.wiki_id", "dst_title.wiki_title", "relatedness"};
+        private final static int SRC_ID = 0, SRC_TITLE = 1, DST_ID = 2, DST_TITLE = 3, RELATEDNESS = 4;
+
+        private static LocalRelatedness local = null;
 
         public static class Pair {
 
@@ -270,65 +291,59 @@ public class WATApi {
          *                   (5) conditionalprobability (Conditional Probability)
          *                   (6) barabasialbert (Barabasi-Albert on the Wikipedia Graph)
          *                   (7) pmi (Pointwise Mutual Information)
+         * If -Dwat.relatedness.graph=PATH is given, the measures which only need the link graph (mw, jaccard,
+         * conditionalprobability, pmi) are computed with the {@link LocalRelatedness} graph at PATH instead of WAT.
          * @param ids List of Wikipedia entity IDs.
          * @return List List of Pairs of entities with relatedness score.
          */
 
         @NotNull
         public static List<Pair> getRelatedness(String relMeasure, int ... ids) {
+            if (LocalRelatedness.supports(relMeasure)) {
+                LocalRelatedness graph = localGraph();
+                if (graph != null) {
+                    return graph.getRelatedness(relMeasure, ids);
+                }
+            }
             List<Pair> relatedPairsList = new ArrayList<>();
+            ResponseDecoder decoder = new ResponseDecoder("pairs", FIELDS, row -> {
+                Pair.Source source = new Pair.Source(row.getInt(SRC_ID, 0), row.getString(SRC_TITLE, ""));
+                Pair.Destination destination = new Pair.Destination(row.getInt(DST_ID, 0), row.getString(DST_TITLE, ""));
+                relatedPairsList.add(new Pair(source, destination, row.getDouble(RELATEDNESS, 0.0d)));
+            });
+
+            ENDPOINT.call(() -> {
+                relatedPairsList.clear();
+                read(getConnection(relMeasure, ids), decoder);
+                return relatedPairsList;
+            });
+            if (relatedPairsList.isEmpty()) {
+                System.err.println("ERROR: WAT could not find any annotations.");
+            }
+            return relatedPairsList;
+        }
 
-            Document doc;
-
-            try {
-
-                doc = getDocument(relMeasure, ids);
-
-                if (doc != null) {
-                    JSONObject json = new JSONObject(doc.text());
-                    if (json.has("pairs")) {
-                        JSONArray jsonArray = json.getJSONArray("pairs");
-                        for (int i = 0; i < jsonArray.length(); i++) {
-                            String srcTitle = "", dstTitle = "";
-                            int srcId = 0, dstId = 0;
-                            double rel = 0.0d;
-
-                            JSONObject jsonObject = jsonArray.getJSONObject(i);
-
-                            if (jsonObject.has("src_title")) {
-                                srcTitle = jsonObject.getJSONObject("src_title").getString("wiki_title");
-                                srcId = jsonObject.getJSONObject("src_title").getInt("wiki_id");
-                            }
-
-                            if (jsonObject.has("dst_title")) {
-                                dstTitle = jsonObject.getJSONObject("dst_title").getString("wiki_title");
-                                dstId = jsonObject.getJSONObject("dst_title").getInt("wiki_id");
-                            }
-
-                            if (jsonObject.has("relatedness")) {
-                                rel = jsonObject.getDouble("relatedness");
-                            }
-
-                            Pair.Source source = new Pair.Source(srcId, srcTitle);
-                            Pair.Destination destination = new Pair.Destination(dstId, dstTitle);
-                            Pair pair = new Pair(source, destination, rel);
-
-                            relatedPairsList.add(pair);
+        /**
+         * Load the local graph given by -Dwat.relatedness.graph (once), if any.
+         */
 
-                        }
-                    } else {
-                        System.err.println("ERROR: WAT could not find any annotations.");
-                    }
+        static synchronized LocalRelatedness localGraph() {
+            String path = System.getProperty("wat.relatedness.graph");
+            if (path == null) {
+                return null;
+            }
+            if (local == null) {
+                try {
+                    local = LocalRelatedness.open(path);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not open relatedness graph: " + path, e);
                 }
-            } catch (JSONException e) {
-                e.printStackTrace();
             }
-
-            return relatedPairsList;
+            return local;
         }
 
         /**
-         * Get the Jsoup document.
+         * Set up the Jsoup connection.
          * @param relMeasure Relatedness function to compute.
          *                   Accepted values are:
          *                   (1) mw (Milne-Witten)
@@ -340,25 +355,18 @@ public class WATApi {
          *                   (7) pmi (Pointwise Mutual Information)
          *
          * @param ids List of Wikipedia entity IDs.
-         * @return Document Jsoup Document
+         * @return Connection Jsoup connection
          */
 
-        private static Document getDocument(String relMeasure, @NotNull int[] ids) {
-            Document doc = null;
-            try {
-                Connection con  = Jsoup.connect(URL)
-                        .data("gcube-token", TOKEN)
-                        .data("relatedness", relMeasure)
-                        .ignoreContentType(true);
+        private static Connection getConnection(String relMeasure, @NotNull int[] ids) {
+            Connection con  = Jsoup.connect(Services.url(Services.WAT_RELATEDNESS))
+                    .data("gcube-token", TOKEN)
+                    .data("relatedness", relMeasure);
 
-                for (int id : ids) {
-                    con.data("ids",Integer.toString(id));
-                }
-                doc = con.get();
-            } catch (IOException e) {
-                e.printStackTrace();
+            for (int id : ids) {
+                con.data("ids",Integer.toString(id));
             }
-            return doc;
+            return con;
         }
     }
 
@@ -369,44 +377,60 @@ public class WATApi {
      */
 
     public static class TitleResolver {
-        private final static String URL = "https://wat.d4science.org/wat/title";
+        private final static Resilience.Endpoint ENDPOINT = Resilience.endpoint(Services.WAT_TITLE);
 
-        public static int getId(String title) {
-            Document doc;
-            int id = 0;
+        private static LocalTitleResolver local = null;
 
-            try {
+        /**
+         * Get the Wikipedia page id of a title.
+         * If -Dwat.title.index=PATH is given, the title is resolved with the {@link LocalTitleResolver} at PATH
+         * instead of WAT.
+         * @param title String Wikipedia page title (e.g., "Barack_Obama").
+         * @return Integer Page id, -1 if the title is unknown (to WAT or to the local resolver). Callers test id < 0.
+         */
 
-                doc = getDocument(title);
+        public static int getId(String title) {
+            LocalTitleResolver resolver = localResolver();
+            if (resolver != null) {
+                return resolver.getId(title);
+            }
+            ResponseDecoder decoder = new ResponseDecoder(null, new String[0], null);
+            ENDPOINT.call(() -> {
+                read(getConnection(title), decoder);
+                return decoder;
+            });
+            Object id = decoder.getTop("wiki_id");
+            if (id instanceof Number) {
+                return ((Number) id).intValue();
+            }
+            System.err.println("ERROR: WAT could not find any annotations.");
+            return -1;
+        }
 
-                if (doc.text() != null) {
-                    JSONObject json = new JSONObject(doc.text());
-                    if (json.has("wiki_id")) {
-                        id = json.getInt("wiki_id");
-                    } else {
-                        System.err.println("ERROR: WAT could not find any annotations.");
-                    }
+        /**
+         * Load the local resolver given by -Dwat.title.index (once), if any.
+         */
+
+        private static synchronized LocalTitleResolver localResolver() {
+            String path = System.getProperty("wat.title.index");
+            if (path == null) {
+                return null;
+            }
+            if (local == null) {
+                try {
+                    local = LocalTitleResolver.open(path);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not open title index: " + path, e);
                 }
-            } catch (JSONException e) {
-                e.printStackTrace();
             }
-            return id;
-
+            return local;
         }
 
-        private static Document getDocument(String data) {
-            Document doc = null;
-            try {
-                doc = Jsoup.connect(URL)
-                        .data("lang", "en")
-                        .data("gcube-token", TOKEN)
-                        .data("title", data)
-                        .ignoreContentType(true)
-                        .get();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return doc;
+        private static Connection getConnection(String data) {
+            return Jsoup.connect(Services.url(Services.WAT_TITLE))
+                    .data("lang", "en")
+                    .data("gcube-token", TOKEN)
+                    .data("title", data);
         }
     }
 
@@ -415,7 +439,11 @@ public class WATApi {
      */
 
     public static class EntitySurfaceFormInformation {
-        private final static String URL = "https://wat.d4science.org/wat/sf/sf";
+        private final static Resilience.Endpoint ENDPOINT = Resilience.endpoint(Services.WAT_SF);
+        private final static String[] FIELDS = {"wiki_id", "num_links", "probability"};
+        private final static int WIKI_ID = 0, NUM_LINKS = 1, PROBABILITY = 2;
+
+        private static LocalSurfaceForms local = null;
 
         public static class SurfaceForm {
             private final int id;
@@ -426,7 +454,7 @@ public class WATApi {
             /**
              * Represents an entity that the surface form points to in Wikipedia.
              */
-            private static class LinkedEntity {
+            public static class LinkedEntity {
                 private final int wikiId, numLinks;
                 private final double probability;
 
@@ -523,83 +551,128 @@ public class WATApi {
             }
         }
 
+        /**
+         * Get the statistics of a surface form.
+         * If -Dwat.sf.index=PATH is given, the statistics are read from the {@link LocalSurfaceForms} store at PATH
+         * instead of WAT. A surface form which is not in the store gets empty statistics, as from WAT.
+         * @param data String Surface form.
+         * @return SurfaceForm Statistics of the surface form.
+         */
+
         @NotNull
-        @Contract("_ -> new")
         public static SurfaceForm getInformation(String data) {
-
-            Document doc;
-            int id = 0;
-            double linkProbability = 0.0d, termProbability = 0.0d, documentProbability = 0.0d, idf = 0.0d, tf_idf = 0.0d;
-            int tf = 0, df = 0;
+            LocalSurfaceForms store = localStore();
+            if (store != null) {
+                SurfaceForm sf = store.get(data);
+                return sf != null ? sf : empty();
+            }
             ArrayList<SurfaceForm.LinkedEntity> linkedEntities = new ArrayList<>();
-            try {
-                doc = getDocument(data);
-                if (doc.text() != null) {
-                    JSONObject json = new JSONObject(doc.text());
-                    id = json.has("id")
-                            ? json.getInt("id")
-                            : 0;
-                    linkProbability = json.has("link_probability")
-                            ? json.getDouble("link_probability")
-                            : 0.0d;
-                    termProbability = json.has("term_probability")
-                            ? json.getDouble("term_probability")
-                            : 0.0d;
-                    documentProbability = json.has("document_probability")
-                            ? json.getDouble("document_probability")
-                            : 0.0d;
-                    idf = json.has("idf")
-                            ? json.getDouble("idf")
-                            : 0.0d;
-                    tf_idf = json.has("tf_idf")
-                            ? json.getDouble("tf_idf")
-                            : 0.0d;
-                    tf = json.has("tf")
-                            ? json.getInt("tf")
-                            : 0;
-                    df = json.has("df")
-                            ? json.getInt("df")
-                            : 0;
-                    JSONArray entities = json.getJSONArray("entities");
-                    for (int i = 0; i < entities.length(); i++) {
-                        JSONObject entity = entities.getJSONObject(i);
-                        int wikiId = entity.has("wiki_id")
-                                ? entity.getInt("wiki_id")
-                                : 0;
-                        int numLinks = entity.has("num_links")
-                                ? entity.getInt("num_links")
-                                : 0;
-                        double prob = entity.has("probability")
-                                ? entity.getDouble("probability")
-                                : 0;
-                        linkedEntities.add(new SurfaceForm.LinkedEntity(wikiId, numLinks, prob));
-                    }
+            ResponseDecoder decoder = new ResponseDecoder("entities", FIELDS, row ->
+                    linkedEntities.add(new SurfaceForm.LinkedEntity(
+                            row.getInt(WIKI_ID, 0),
+                            row.getInt(NUM_LINKS, 0),
+                            row.getDouble(PROBABILITY, 0.0d))));
+
+            ENDPOINT.call(() -> {
+                linkedEntities.clear();
+                read(getConnection(data), decoder);
+                return linkedEntities;
+            });
+
+            return new SurfaceForm(
+                    intValue(decoder.getTop("id")),
+                    doubleValue(decoder.getTop("link_probability")),
+                    doubleValue(decoder.getTop("term_probability")),
+                    doubleValue(decoder.getTop("document_probability")),
+                    doubleValue(decoder.getTop("idf")),
+                    doubleValue(decoder.getTop("tf_idf")),
+                    intValue(decoder.getTop("tf")),
+                    intValue(decoder.getTop("df")),
+                    linkedEntities);
+        }
+
+        /**
+         * Get the statistics of many surface forms.
+         * With the local store (-Dwat.sf.index) this needs no network; otherwise WAT is queried once per distinct
+         * surface form.
+         * @param data Collection Surface forms.
+         * @return Map Map of (surface form, statistics).
+         */
+
+        @NotNull
+        public static Map<String, SurfaceForm> getInformation(@NotNull Collection<String> data) {
+            Map<String, SurfaceForm> result = new HashMap<>();
+            LocalSurfaceForms store = localStore();
+            if (store != null) {
+                result.putAll(store.get(data));
+            }
+            for (String surface : data) {
+                if (!result.containsKey(surface)) {
+                    result.put(surface, store != null ? empty() : getInformation(surface));
+                }
+            }
+            return result;
+        }
+
+        @NotNull
+        @Contract(" -> new")
+        private static SurfaceForm empty() {
+            return new SurfaceForm(0, 0.0d, 0.0d, 0.0d, 0.0d, 0.0d, 0, 0, new ArrayList<>());
+        }
+
+        /**
+         * Load the local store given by -Dwat.sf.index (once), if any.
+         */
+
+        private static synchronized LocalSurfaceForms localStore() {
+            String path = System.getProperty("wat.sf.index");
+            if (path == null) {
+                return null;
+            }
+            if (local == null) {
+                try {
+                    local = LocalSurfaceForms.open(path);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not open surface form store: " + path, e);
                 }
-            } catch (JSONException e) {
-                e.printStackTrace();
             }
+            return local;
+        }
 
+        private static int intValue(Object o) {
+            return o instanceof Number ? ((Number) o).intValue() : 0;
+        }
 
-            return new SurfaceForm(id, linkProbability, termProbability, documentProbability,
-                    idf, tf_idf, tf, df, linkedEntities);
+        private static double doubleValue(Object o) {
+            return o instanceof Number ? ((Number) o).doubleValue() : 0.0d;
         }
 
-        private static Document getDocument(String data) {
-            Document doc = null;
-            try {
-                doc = Jsoup.connect(URL)
-                        .data("gcube-token", TOKEN)
-                        .data("text", data)
-                        .ignoreContentType(true)
-                        .get();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return doc;
+        private static Connection getConnection(String data) {
+            return Jsoup.connect(Services.url(Services.WAT_SF))
+                    .data("gcube-token", TOKEN)
+                    .data("text", data);
         }
 
     }
 
+    /**
+     * Send the request and decode the response as it is read from the connection.
+     * The body is not buffered into a Jsoup Document or a String first.
+     * @param connection Connection Jsoup connection with all parameters set.
+     * @param decoder ResponseDecoder Decoder for the response.
+     * @throws IOException If the request failed or the response could not be decoded.
+     */
+
+    private static void read(@NotNull Connection connection, @NotNull ResponseDecoder decoder) throws IOException {
+        Connection.Response response = connection
+                .ignoreContentType(true)
+                .maxBodySize(0)
+                .execute();
+        try (Reader in = new InputStreamReader(response.bodyStream(), StandardCharsets.UTF_8)) {
+            decoder.decode(in);
+        }
+    }
+
     /**
      * Utility method to find the Wikipedia page title corresponding to the id.
      * Sort of a hack!!
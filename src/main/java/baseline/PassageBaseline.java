@@ -2,68 +2,182 @@ package baseline;
 
 import edu.unh.cs.treccar_v2.Data;
 import edu.unh.cs.treccar_v2.read_data.DeserializeData;
-import help.Utilities;
+import help.QueryTokenizer;
+import help.RunOptions;
 import lucene.Index;
+import lucene.MultiQuerySearcher;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.LMDirichletSimilarity;
 import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.BytesRef;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class creates a baseline for the passage retrieval task.
+ * The outlines file is read lazily, one page at a time, and the queries are searched by a pool of worker threads.
+ * The results are written to the run file as they come, in the order of the outlines file, so only the results of the
+ * queries in flight are kept in memory.
+ * Queries are either the page titles (one query per page), or the section paths (page title and the headings of the
+ * sections; one query per section path, with the section path id as the query id).
+ * Several similarities (e.g., BM25 and LM-JM with several lambdas) may be run at once: every query is then matched once,
+ * with a single pass over the postings of its terms (see MultiQuerySearcher), and one run file is written per
+ * similarity.
  * @author Shubham Chatterjee
  * @version 9/6/2019
  */
 
 public class PassageBaseline {
-    private IndexSearcher searcher;
-    private List<String> tokens = new ArrayList<>();
-    private ArrayList<String> runStrings = new ArrayList<>();
-    private List<Data.Page> pageList = new ArrayList<>();
-    private Analyzer analyzer;
+    private final static int TOP_K = 100;
+    private final IndexSearcher searcher;
+    private final Analyzer analyzer;
+    private final boolean useSections;
+    private final int numThreads;
+    // Similarities of the runs, null to search with the similarity of the searcher only
+    private final List<Similarity> similarities;
 
     public PassageBaseline(String indexDir,
                            String outlineFilePath,
                            String outputFilePath,
                            Analyzer analyzer,
                            Similarity similarity) {
+        this(indexDir, outlineFilePath, outputFilePath, analyzer, similarity, false,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * @param indexDir String Path to the paragraph index.
+     * @param outlineFilePath String Path to the outlines file.
+     * @param outputFilePath String Path to the run file to write.
+     * @param analyzer Analyzer Analyzer to use.
+     * @param similarity Similarity Similarity to use.
+     * @param useSections Boolean True for one query per section path, false for one query per page.
+     * @param numThreads Integer Number of worker threads.
+     */
+
+    public PassageBaseline(String indexDir,
+                           String outlineFilePath,
+                           String outputFilePath,
+                           Analyzer analyzer,
+                           Similarity similarity,
+                           boolean useSections,
+                           int numThreads) {
 
         this.analyzer = analyzer;
+        this.useSections = useSections;
+        this.numThreads = Math.max(1, numThreads);
+        this.similarities = null;
 
         System.out.print("Setting up index for use...");
         searcher = new Index.Setup(indexDir, "text", analyzer, similarity).getSearcher();
         System.out.println("[Done].");
 
-        System.out.print("Getting list of pages from outlines file...");
-        getPageListFromPath(outlineFilePath, pageList);
+        System.out.println("Searching index....");
+        int failures = search(outlineFilePath, Collections.singletonList(outputFilePath),
+                Collections.singletonList("Baseline-BM25"));
         System.out.println("[Done].");
 
-        System.out.println("Searching index....");
-        search();
+        report(Collections.singletonList(outputFilePath), failures);
+    }
+
+    /**
+     * Constructor.
+     * Make one run per similarity in a single pass over the index.
+     * @param indexDir String Path to the paragraph index.
+     * @param outlineFilePath String Path to the outlines file.
+     * @param outputFilePaths List Path to the run file to write for every similarity.
+     * @param runNames List Name of the run for every similarity (last column of the run file).
+     * @param analyzer Analyzer Analyzer to use.
+     * @param similarities List Similarities to use.
+     * @param useSections Boolean True for one query per section path, false for one query per page.
+     * @param numThreads Integer Number of worker threads.
+     */
+
+    public PassageBaseline(String indexDir,
+                           String outlineFilePath,
+                           @NotNull List<String> outputFilePaths,
+                           @NotNull List<String> runNames,
+                           Analyzer analyzer,
+                           @NotNull List<Similarity> similarities,
+                           boolean useSections,
+                           int numThreads) {
+
+        this.analyzer = analyzer;
+        this.useSections = useSections;
+        this.numThreads = Math.max(1, numThreads);
+        this.similarities = similarities;
+
+        System.out.print("Setting up index for use...");
+        searcher = new Index.Setup(indexDir, "text", analyzer, similarities.get(0)).getSearcher();
         System.out.println("[Done].");
 
-        System.out.print("Writing to run file...");
-        Utilities.writeFile(runStrings, outputFilePath);
-        System.out.print("[Done].");
+        System.out.println("Searching index....");
+        int failures = search(outlineFilePath, outputFilePaths, runNames);
+        System.out.println("[Done].");
 
-        System.out.println("Run file written to: " + outputFilePath);
+        report(outputFilePaths, failures);
+    }
 
+    /**
+     * Report the run files written. Exit with a non-zero status if some queries failed, so that an incomplete run is
+     * not mistaken for a complete one.
+     * @param outputFilePaths List Path to every run file.
+     * @param failures Integer Number of queries which failed.
+     */
 
+    private static void report(@NotNull List<String> outputFilePaths, int failures) {
+        for (String outputFilePath : outputFilePaths) {
+            System.out.println("Run file written to: " + outputFilePath);
+        }
+        if (failures > 0) {
+            System.err.println("ERROR: " + failures + " queries failed and are missing from the run file(s).");
+            System.exit(1);
+        }
+    }
 
+    /**
+     * Make a similarity from its specification.
+     * @param spec String One of: bm25, bm25:k1:b, lmjm:lambda, lmds, lmds:mu
+     * @return Similarity
+     * @throws IllegalArgumentException If the specification is not valid.
+     */
+    @NotNull
+    public static Similarity parseSimilarity(@NotNull String spec) {
+        String[] parts = spec.toLowerCase().split(":");
+        try {
+            switch (parts[0]) {
+                case "bm25":
+                    return parts.length == 3
+                            ? new BM25Similarity(Float.parseFloat(parts[1]), Float.parseFloat(parts[2]))
+                            : new BM25Similarity();
+                case "lmjm":
+                    return new LMJelinekMercerSimilarity(Float.parseFloat(parts[1]));
+                case "lmds":
+                    return parts.length == 2
+                            ? new LMDirichletSimilarity(Float.parseFloat(parts[1]))
+                            : new LMDirichletSimilarity();
+                default:
+                    break;
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            // Fall through
+        }
+        throw new IllegalArgumentException("Bad similarity: " + spec + " (use bm25, bm25:k1:b, lmjm:lambda, lmds or lmds:mu)");
     }
 
     /**
@@ -73,61 +187,78 @@ public class PassageBaseline {
      * @throws IOException Excption
      */
     private BooleanQuery toQuery(String queryStr) throws IOException {
-
-        TokenStream tokenStream = analyzer.tokenStream("text", new StringReader(queryStr));
-        tokenStream.reset();
-        tokens.clear();
-        while (tokenStream.incrementToken()) {
-            final String token = tokenStream.getAttribute(CharTermAttribute.class).toString();
-            tokens.add(token);
-        }
-        tokenStream.end();
-        tokenStream.close();
         BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
-        for (String token : tokens) {
+        for (BytesRef token : QueryTokenizer.of(analyzer).tokenize("text", queryStr)) {
             booleanQuery.add(new TermQuery(new Term("text", token)), BooleanClause.Occur.SHOULD);
         }
         return booleanQuery.build();
     }
 
     /**
-     * Create a run file
+     * Search a query with every similarity in one pass.
+     * Every term is weighted by its number of occurrences in the query, which scores like the clause per occurrence
+     * made by toQuery().
+     * @param queryStr String query
+     * @return TopDocs[] Top hits for every similarity
+     * @throws IOException Exception
+     */
+    @NotNull
+    private TopDocs[] searchAll(String queryStr) throws IOException {
+        Map<BytesRef, Float> termWeights = new LinkedHashMap<>();
+        for (BytesRef token : QueryTokenizer.of(analyzer).tokenize("text", queryStr)) {
+            termWeights.merge(token, 1.0f, Float::sum);
+        }
+        MultiQuerySearcher multiQuerySearcher = new MultiQuerySearcher(searcher, "text");
+        for (Similarity similarity : Objects.requireNonNull(similarities)) {
+            multiQuerySearcher.add(termWeights, similarity);
+        }
+        return multiQuerySearcher.search(TOP_K);
+    }
+
+    /**
+     * Create the run file strings of a query
      * Run file string format: $queryId Q0 $paragraphId $rank $score $name
+     * A hit is kept only the first time its docID is seen, and only the "id" field of the kept hits is read.
      * @param queryID String ID of the query
      * @param tds TopDocs Top hits for the query
-     * @param retDocs ScoreDoc[] Scores of the top hits
+     * @param runName String Name of the run
+     * @return List Run file strings
      * @throws IOException Exception
      */
-    private void createRunFile(String queryID, TopDocs tds, @NotNull ScoreDoc[] retDocs)throws IOException {
-        List<String> paraID = new ArrayList<>();
-        Document d;
-        String runFileString;
+    @NotNull
+    private List<String> makeRunStrings(String queryID, @NotNull TopDocs tds, String runName) throws IOException {
+        List<String> runStrings = new ArrayList<>(tds.scoreDocs.length);
+        Set<Integer> seen = new HashSet<>();
+        Set<String> fields = Collections.singleton("id");
+        ScoreDoc[] retDocs = tds.scoreDocs;
 
         for (int i = 0; i < retDocs.length; i++) {
-            d = searcher.doc(retDocs[i].doc);
-            String pID = d.getField("id").stringValue();
-
-            runFileString = queryID + " Q0 " + pID + " " + i + " " + tds.scoreDocs[i].score + " " + "Baseline-BM25";
-            if(!paraID.contains(pID)) {
-                paraID.add(pID);
-                runStrings.add(runFileString);
+            if (!seen.add(retDocs[i].doc)) {
+                continue;
             }
+            String pID = searcher.doc(retDocs[i].doc, fields).get("id");
+            runStrings.add(queryID + " Q0 " + pID + " " + i + " " + retDocs[i].score + " " + runName);
         }
+        return runStrings;
     }
 
     /**
-     * Get the list of pages
-     * @param path String Path to the outlines file
-     * @param pageList List of pages
+     * Get the queries of a page.
+     * @param page Page
+     * @return List of (query id, query string) pairs
      */
-    private void getPageListFromPath(String path, List<Data.Page> pageList) {
-        try {
-            BufferedInputStream bis = new BufferedInputStream(new FileInputStream(new File(path)));
-            for(Data.Page page: DeserializeData.iterableAnnotations(bis))
-                pageList.add(page);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+    @NotNull
+    private List<String[]> getQueries(@NotNull Data.Page page) {
+        List<String[]> queries = new ArrayList<>();
+        if (useSections) {
+            for (List<Data.Section> sectionPath : page.flatSectionPaths()) {
+                queries.add(new String[]{Data.sectionPathId(page.getPageId(), sectionPath),
+                        buildSectionQueryStr(page, sectionPath)});
+            }
+        } else {
+            queries.add(new String[]{page.getPageId(), buildSectionQueryStr(page, Collections.emptyList())});
         }
+        return queries;
     }
 
     /**
@@ -148,21 +279,98 @@ public class PassageBaseline {
     }
 
     /**
-     * Search the page titles as queries
+     * Search the queries of the pages in the outlines file and write the run files.
+     * At most a few queries per worker are in flight; the results of a query are written when it and all queries
+     * before it are done.
+     * @param outlineFilePath String Path to the outlines file
+     * @param outputFilePaths List Path to the run file of every run
+     * @param runNames List Name of every run
+     * @return Integer Number of queries which failed (and are missing from the run files)
      */
-    private void search() {
-        try {
-            for(Data.Page page : pageList) {
-                String qString = buildSectionQueryStr(page, Collections.emptyList());
-                BooleanQuery query = toQuery(qString);
-                String qID = page.getPageId();
-                TopDocs topDocs = Index.Search.searchIndex(query,100);
-                ScoreDoc[] scoreDocs = topDocs.scoreDocs;
-                createRunFile(qID,topDocs, scoreDocs);
-                System.out.println("Done page:"+page.getPageName());
+    private int search(String outlineFilePath, @NotNull List<String> outputFilePaths, @NotNull List<String> runNames) {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        // (page name if it is the last query of the page, result) in the order of the queries
+        Deque<Map.Entry<String, Future<List<List<String>>>>> pending = new ArrayDeque<>();
+        int maxPending = 4 * numThreads;
+        int failures = 0;
+        List<BufferedWriter> writers = new ArrayList<>();
+
+        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(new File(outlineFilePath)))) {
+            for (String outputFilePath : outputFilePaths) {
+                writers.add(new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(outputFilePath), StandardCharsets.UTF_8)));
+            }
+            for (Data.Page page : DeserializeData.iterableAnnotations(bis)) {
+                List<String[]> queries = getQueries(page);
+                if (queries.isEmpty()) {
+                    pending.add(new AbstractMap.SimpleEntry<>(page.getPageName(),
+                            CompletableFuture.<List<List<String>>>completedFuture(Collections.emptyList())));
+                }
+                for (int q = 0; q < queries.size(); q++) {
+                    String qID = queries.get(q)[0], qString = queries.get(q)[1];
+                    String pageName = q == queries.size() - 1 ? page.getPageName() : null;
+                    pending.add(new AbstractMap.SimpleEntry<>(pageName, executor.submit(() -> {
+                        TopDocs[] tops = similarities == null
+                                ? new TopDocs[]{searcher.search(toQuery(qString), TOP_K)}
+                                : searchAll(qString);
+                        List<List<String>> runStrings = new ArrayList<>(tops.length);
+                        for (int i = 0; i < tops.length; i++) {
+                            runStrings.add(makeRunStrings(qID, tops[i], runNames.get(i)));
+                        }
+                        return runStrings;
+                    })));
+                    while (pending.size() >= maxPending) {
+                        failures += write(pending.poll(), writers) ? 0 : 1;
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                failures += write(pending.poll(), writers) ? 0 : 1;
             }
         } catch (IOException e) {
+            // The queries after the error are missing too, but they cannot be counted
             e.printStackTrace();
+            failures += 1 + pending.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures += 1 + pending.size();
+        } finally {
+            executor.shutdownNow();
+            for (BufferedWriter writer : writers) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Write the results of a query.
+     * @return Boolean False if the query failed (its results are missing from the run files).
+     */
+
+    private static boolean write(@NotNull Map.Entry<String, Future<List<List<String>>>> result,
+                                 @NotNull List<BufferedWriter> writers) throws IOException, InterruptedException {
+        try {
+            List<List<String>> runStrings = result.getValue().get();
+            for (int i = 0; i < runStrings.size(); i++) {
+                BufferedWriter out = writers.get(i);
+                for (String runString : runStrings.get(i)) {
+                    out.write(runString);
+                    out.newLine();
+                }
+            }
+            return true;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return false;
+        } finally {
+            if (result.getKey() != null) {
+                System.out.println("Done page:" + result.getKey());
+            }
         }
     }
 
@@ -172,6 +380,13 @@ public class PassageBaseline {
      */
 
     public static void main(@NotNull String[] args) {
+        // Optional flags: --sections for one query per section path, --threads N for the number of worker threads
+        RunOptions options = new RunOptions(args);
+        boolean useSections = options.useSections();
+        int numThreads = options.getNumThreads();
+        args = options.getArgs();
+        System.out.println("Queries: " + (useSections ? "Section paths" : "Pages") + ", threads: " + numThreads);
+
         Similarity similarity = null;
         Analyzer analyzer = null;
         String s1 = null, s2 = null;
@@ -229,9 +444,68 @@ public class PassageBaseline {
                 System.out.println("Wrong choice of similarity! Exiting.");
                 System.exit(1);
         }
-        String outFile = "psg-baseline" + "-" + s1 + "-" + s2 + ".run";
+        String outFile = "psg-baseline" + "-" + s1 + "-" + s2 + (useSections ? "-sections" : "") + ".run";
         String outputFilePath = outputDir + "/" + outFile;
-        new PassageBaseline(indexDir, outlineFilePath, outputFilePath, analyzer, similarity);
+        new PassageBaseline(indexDir, outlineFilePath, outputFilePath, analyzer, similarity, useSections, numThreads);
+
+    }
 
+    /**
+     * Main method of the multi-similarity baseline.
+     * Usage: indexDir outlinesFile outputDir std|eng similarity... [--sections] [--threads N]
+     * where a similarity is one of bm25, bm25:k1:b, lmjm:lambda, lmds, lmds:mu (see parseSimilarity()).
+     * One run file is written per similarity: outputDir/psg-baseline-$similarity-$analyzer.run
+     * @param args Command line arguments
+     */
+
+    public static void mainMulti(@NotNull String[] args) {
+        RunOptions options = new RunOptions(args);
+        boolean useSections = options.useSections();
+        int numThreads = options.getNumThreads();
+        List<String> argList = Arrays.asList(options.getArgs());
+        System.out.println("Queries: " + (useSections ? "Section paths" : "Pages") + ", threads: " + numThreads);
+
+        String indexDir = argList.get(0);
+        String outlineFilePath = argList.get(1);
+        String outputDir = argList.get(2);
+        String a = argList.get(3);
+        Analyzer analyzer = null;
+
+        switch (a) {
+            case "std" :
+                analyzer = new StandardAnalyzer();
+                System.out.println("Analyzer: Standard");
+                break;
+            case "eng":
+                analyzer = new EnglishAnalyzer();
+                System.out.println("Analyzer: English");
+                break;
+            default:
+                System.out.println("Wrong choice of analyzer! Exiting.");
+                System.exit(1);
+        }
+
+        List<Similarity> similarities = new ArrayList<>();
+        List<String> outputFilePaths = new ArrayList<>();
+        List<String> runNames = new ArrayList<>();
+        for (String spec : argList.subList(4, argList.size())) {
+            try {
+                similarities.add(parseSimilarity(spec));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage() + ". Exiting.");
+                System.exit(1);
+            }
+            String name = spec.toLowerCase().replace(':', '-');
+            System.out.println("Similarity: " + spec);
+            outputFilePaths.add(outputDir + "/" + "psg-baseline" + "-" + name + "-" + a
+                    + (useSections ? "-sections" : "") + ".run");
+            runNames.add("Baseline-" + name);
+        }
+        if (similarities.isEmpty()) {
+            System.out.println("No similarity! Exiting.");
+            System.exit(1);
+        }
+        new PassageBaseline(indexDir, outlineFilePath, outputFilePaths, runNames, analyzer, similarities, useSections,
+                numThreads);
     }
 }
@@ -1,13 +1,12 @@
 package experiments;
 
+import help.RankFusion;
 import help.Utilities;
 import me.tongfei.progressbar.ProgressBar;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Purpose: This class does the first new experiment for ECIR 2019 full paper.
@@ -20,10 +19,11 @@ import java.util.*;
  */
 
 public class Experiment1 {
+    private final static String RUN_NAME = "re-ranking-exp-1";
 
-    private ArrayList<String> runStrings = new ArrayList<>();
-    private LinkedHashMap<String, LinkedHashMap<String, LinkedList<String>>> supportPassageMap = new LinkedHashMap<>();
-    private LinkedHashMap<String, Double> passageScoreMap = new LinkedHashMap<>();
+    // RRF with k = 0: the score of a passage in a ranking is the reciprocal of its rank
+    private final RankFusion rankFusion = new RankFusion(RankFusion.Method.RRF, 0.0d);
+    private final LinkedHashMap<String, List<RankFusion.Ranking>> supportPassageMap;
 
     /**
      * Constructor.
@@ -34,11 +34,11 @@ public class Experiment1 {
     public Experiment1(String supportPassageRunFilePath, String passageRunFilePath) {
 
         System.out.print("Reading support passage run file...");
-        readSupportPassageRunFile(supportPassageRunFilePath);
+        supportPassageMap = RankFusion.readRuns(Collections.singletonList(supportPassageRunFilePath), true);
         System.out.println("[Done].");
 
         System.out.print("Re-ranking...");
-        rerank(supportPassageMap);
+        List<String> runStrings = rerank(supportPassageMap);
         System.out.println("[Done].");
 
         // Create the run file
@@ -49,123 +49,60 @@ public class Experiment1 {
         System.out.println("Run file written at: " + passageRunFilePath);
 
     }
-    /**
-     * Read the support passage run file.
-     * This method reads the ranking as a Map of Map of Map.
-     * The innermost Map has Key = EntityID, Value = Score(passage|query, entity)
-     * The middle Map has Key = paraID, Value = innermost Map
-     * The outer map Map has Key = QueryID, Value = middle Map
-     * This format helps to marginalize over the entities.
-     * @param runFile String The run file to read.
-     */
-
-    private void readSupportPassageRunFile(String runFile) {
-
-        BufferedReader in = null;
-        String line;
-        LinkedHashMap<String, LinkedList<String>> entityToParaMap;
-        LinkedList<String> paraList;
-
-        try {
-            in = new BufferedReader(new FileReader(runFile));
-            while ((line = in.readLine()) != null) {
-                String[] fields = line.split(" ");
-                String queryID = fields[0].split("\\+")[0];
-                String entityID = fields[0].split("\\+")[1];
-                String paraID = fields[2];
-
-                if (supportPassageMap.containsKey(queryID)) {
-                    entityToParaMap = supportPassageMap.get(queryID);
-                } else {
-                    entityToParaMap = new LinkedHashMap<>();
-                }
-                if (entityToParaMap.containsKey(entityID)) {
-                    paraList = entityToParaMap.get(entityID);
-                } else {
-                    paraList = new LinkedList<>();
-                }
-                paraList.add(paraID);
-                entityToParaMap.put(entityID, paraList);
-                supportPassageMap.put(queryID, entityToParaMap);
-
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (in != null) {
-                    in.close();
-                } else {
-                    System.out.println("Input Buffer has not been initialized!");
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
 
     /**
      * Helper method to rerank the passages.
-     * @param supportPassageMap Map
+     * The queries are independent, so they are re-ranked in parallel; the run strings keep the order of the queries.
+     * @param supportPassageMap Map Query -> one ranking of support passages per entity of the query.
+     * @return List Run strings.
      */
 
-    private void rerank(@NotNull LinkedHashMap<String, LinkedHashMap<String, LinkedList<String>>> supportPassageMap) {
+    @NotNull
+    private List<String> rerank(@NotNull LinkedHashMap<String, List<RankFusion.Ranking>> supportPassageMap) {
         List<String> queryList = new ArrayList<>(supportPassageMap.keySet());
-        // Do in parallel
-        // queryList.parallelStream().forEach(this::doTask);
         ProgressBar pb = new ProgressBar("Progress", queryList.size());
 
-        for (String queryId : queryList) {
-            doTask(queryId);
-            pb.step();
-        }
+        List<String> runStrings = queryList.parallelStream()
+                .flatMap(queryId -> {
+                    List<String> queryRunStrings = doTask(queryId);
+                    pb.step();
+                    return queryRunStrings.stream();
+                })
+                .collect(Collectors.toList());
         pb.close();
+        return runStrings;
 
     }
 
     /**
      * Helper method.
      * @param queryId String
+     * @return List Run strings of the query.
      */
 
-    private void doTask(String queryId) {
-        LinkedHashMap<String, LinkedList<String>> entityToPassageMap = supportPassageMap.get(queryId);
-        List<String> entityList = new ArrayList<>(entityToPassageMap.keySet());
-        double paraScore;
-
-        for (String entityID : entityList) {
-            LinkedList<String> paraList = entityToPassageMap.get(entityID);
-            for (int i = 0; i < paraList.size(); i++) {
-                String paraID = paraList.get(i);
-                paraScore = 1.0 / (i + 1);
-                if (passageScoreMap.containsKey(paraID)) {
-                    paraScore += passageScoreMap.get(paraID);
-
-                }
-                passageScoreMap.put(paraID, paraScore);
-            }
-        }
-        makeRunStrings(queryId, passageScoreMap);
-        //System.out.println("Done: " + queryId);
-
+    @NotNull
+    private List<String> doTask(String queryId) {
+        return makeRunStrings(queryId, rankFusion.fuse(supportPassageMap.get(queryId)));
     }
 
     /**
      * Helper method.
      * @param queryId String
-     * @param passageScoreMap Map
+     * @param passageScores List (paraID, score) in decreasing order of score.
+     * @return List Run strings of the query.
      */
 
-    private void makeRunStrings(String queryId, LinkedHashMap<String, Double> passageScoreMap) {
-        LinkedHashMap<String, Double> sortedPassageScoreMap = Utilities.sortByValueDescending(passageScoreMap);
+    @NotNull
+    private List<String> makeRunStrings(String queryId, @NotNull List<Map.Entry<String, Double>> passageScores) {
+        List<String> runStrings = new ArrayList<>(passageScores.size());
         int rank = 1;
         String runFileString;
-        List<String> paraList = new ArrayList<>(sortedPassageScoreMap.keySet());
-        for (String paraID : paraList) {
-            String score = String.format("%.2f", sortedPassageScoreMap.get(paraID));
-            runFileString = queryId + " Q0 " + paraID + " " + rank++ + " " + score + " " + "re-ranking-exp-1";
+        for (Map.Entry<String, Double> entry : passageScores) {
+            String score = String.format("%.2f", entry.getValue());
+            runFileString = queryId + " Q0 " + entry.getKey() + " " + rank++ + " " + score + " " + RUN_NAME;
             runStrings.add(runFileString);
         }
+        return runStrings;
     }
 
     /**
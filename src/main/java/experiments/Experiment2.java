@@ -1,10 +1,18 @@
 package experiments;
 
+import help.RunOptions;
 import help.Utilities;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Purpose: This class does the second new experiment for ECIR 2019 paper.
@@ -13,12 +21,32 @@ import java.util.*;
  * Method:  First marginalize over the entities in the support passage ranking to get Score(passage|query).
  *          The queries are matched against those in the candidate passage ranking.
  *          If some query is not found in the support passage ranking, then it is copied over from the candidate ranking.
+ *          Streaming mode: the support passage run is read one query at a time (directly if the lines of a query are
+ *          contiguous, otherwise after spilling the run into hash buckets of queries), the queries are marginalized
+ *          in parallel with a choice of aggregation (sum, max, mean, or sum weighted by the score of the entity in an
+ *          entity run), and the candidate run is only read for its query IDs and for the queries to copy over.
  * @author Shubham Chatterjee
  * @version 8/1/2019
  */
 
 public class Experiment2 {
+    // Target size of a bucket of the support passage run when it has to be grouped by query
+    private final static long BUCKET_SIZE = 64L * 1024 * 1024;
+    private final static int MAX_BUCKETS = 1024;
+
+    public enum Aggregation { SUM, MAX, MEAN, WEIGHTED }
+
     private String METHOD;
+    private Aggregation aggregation = Aggregation.SUM;
+    private HashMap<String, LinkedHashMap<String, Double>> entityRankings = null;
+    private int numThreads = 1;
+
+    /**
+     * Callback which receives the lines of one query of a run file.
+     */
+    private interface QueryTask {
+        void accept(List<String> lines) throws IOException, InterruptedException;
+    }
 
     /**
      * Constructor.
@@ -74,6 +102,61 @@ public class Experiment2 {
 
     }
 
+    /**
+     * Constructor for the streaming mode.
+     * Memory is bounded by the queries in flight (a few per worker thread) rather than the whole support passage run.
+     * The new run file is overwritten.
+     * @param supportPassageRunFile String Path to the support passage run file.
+     * @param candidatePassageRunFile String Path to the candidate passage run file.
+     * @param newPassageRunFile String Path to the new passage run file.
+     * @param aggregation Aggregation How to combine the scores of a passage for the entities of a query.
+     * @param entityRunFile String Path to the entity run file (WEIGHTED only; null otherwise).
+     * @param numThreads Integer Number of worker threads.
+     */
+
+    public Experiment2(String supportPassageRunFile,
+                       String candidatePassageRunFile,
+                       String newPassageRunFile,
+                       @NotNull Aggregation aggregation,
+                       @Nullable String entityRunFile,
+                       int numThreads) {
+        this.aggregation = aggregation;
+        this.numThreads = Math.max(1, numThreads);
+
+        if (aggregation == Aggregation.WEIGHTED) {
+            if (entityRunFile == null) {
+                throw new IllegalArgumentException("Weighted aggregation needs an entity run file.");
+            }
+            System.out.print("Reading entity run file...");
+            entityRankings = new HashMap<>();
+            Utilities.getRankings(entityRunFile, entityRankings);
+            System.out.println("[Done].");
+        }
+
+        Set<String> marginalizedQueries = new HashSet<>();
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(newPassageRunFile), StandardCharsets.UTF_8))) {
+            System.out.print("Reading queries of candidate passage run file....");
+            Set<String> candidateQueries = readQueryIDs(candidatePassageRunFile, false, false);
+            System.out.println("[Done].");
+
+            System.out.print("Marginalizing over entities in support passage run file....");
+            METHOD = readMethod(supportPassageRunFile);
+            marginalize(supportPassageRunFile, candidateQueries, marginalizedQueries, out);
+            System.out.println("[Done].");
+
+            System.out.println("Copying missing queries from candidate passage run file...");
+            copyMissingQueries(candidatePassageRunFile, marginalizedQueries, out);
+            System.out.println("[Done].");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        System.out.println("New run file written to: " + newPassageRunFile);
+    }
+
     /**
      * Read the support passage run file.
      * This method reads the ranking as a Map of Map of Map.
@@ -201,6 +284,307 @@ public class Experiment2 {
         }
     }
 
+    /**
+     * Marginalize the queries of the support passage run file in parallel and write them in the order they are read.
+     * @param supportPassageRunFile String Path to the support passage run file.
+     * @param candidateQueries Set Queries of the candidate passage run; other queries are skipped.
+     * @param marginalizedQueries Set Filled with the queries written. A query whose task failed is left out, so that
+     *                            it is copied over from the candidate run.
+     * @param out BufferedWriter New run file.
+     */
+
+    private void marginalize(String supportPassageRunFile,
+                             @NotNull Set<String> candidateQueries,
+                             @NotNull Set<String> marginalizedQueries,
+                             @NotNull BufferedWriter out) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        // (query, result) in the order the queries were read
+        Deque<Map.Entry<String, Future<List<String>>>> pending = new ArrayDeque<>();
+        int maxPending = 4 * numThreads;
+
+        try {
+            forEachQuery(supportPassageRunFile, true, lines -> {
+                String queryID = queryID(lines.get(0), true);
+                if (!candidateQueries.contains(queryID)) {
+                    return;
+                }
+                pending.add(new AbstractMap.SimpleEntry<>(queryID, executor.submit(() -> marginalize(queryID, lines))));
+                while (pending.size() >= maxPending) {
+                    write(pending.poll(), marginalizedQueries, out);
+                }
+            });
+            while (!pending.isEmpty()) {
+                write(pending.poll(), marginalizedQueries, out);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Marginalize over the entities of one query.
+     * The passages are interned to ints and the scores accumulated in primitive arrays.
+     * @param queryID String Query ID.
+     * @param lines List Lines of the support passage run file for the query.
+     * @return List Run strings of the query.
+     */
+
+    @NotNull
+    private List<String> marginalize(String queryID, @NotNull List<String> lines) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> paras = new ArrayList<>();
+        double[] scores = new double[16];
+        int[] counts = new int[16];
+        Map<String, Double> entityScores = entityRankings == null ? null : entityRankings.get(queryID);
+
+        // As in the in-memory mode, the last line of a (passage, entity) replaces the earlier ones
+        Map<String, Integer> lastLine = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(" ");
+            lastLine.put(fields[0] + " " + fields[2], i);
+        }
+
+        for (int i = 0; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(" ");
+            if (lastLine.get(fields[0] + " " + fields[2]) != i) {
+                continue;
+            }
+            String paraID = fields[2];
+            double score = Double.parseDouble(fields[4]);
+            if (aggregation == Aggregation.WEIGHTED) {
+                String entityID = fields[0].split("\\+")[1];
+                Double entityScore = entityScores == null ? null : entityScores.get(entityID);
+                score *= entityScore == null ? 0.0d : entityScore;
+            }
+
+            Integer id = ids.get(paraID);
+            if (id == null) {
+                id = paras.size();
+                ids.put(paraID, id);
+                paras.add(paraID);
+                if (id == scores.length) {
+                    scores = Arrays.copyOf(scores, id * 2);
+                    counts = Arrays.copyOf(counts, id * 2);
+                }
+            }
+            if (aggregation == Aggregation.MAX) {
+                scores[id] = counts[id] == 0 ? score : Math.max(scores[id], score);
+            } else {
+                scores[id] += score;
+            }
+            counts[id]++;
+        }
+        if (aggregation == Aggregation.MEAN) {
+            for (int id = 0; id < paras.size(); id++) {
+                scores[id] /= counts[id];
+            }
+        }
+
+        final double[] s = scores;
+        // Stable sort, so ties keep the order of the run file
+        Integer[] order = new Integer[paras.size()];
+        for (int id = 0; id < order.length; id++) {
+            order[id] = id;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(s[j], s[i]));
+
+        List<String> runStrings = new ArrayList<>(order.length);
+        int rank = 1;
+        for (int id : order) {
+            runStrings.add(queryID + " Q0 " + paras.get(id) + " " + rank++ + " " + s[id] + " " + METHOD + "-passage");
+        }
+        return runStrings;
+    }
+
+    /**
+     * Copy the queries of the candidate passage run which were not marginalized to the new run file.
+     * The candidate run is read one query at a time, and every missing query is written as soon as it is read.
+     * @param candidatePassageRunFile String Path to the candidate passage run file.
+     * @param marginalizedQueries Set Queries already written.
+     * @param out BufferedWriter New run file.
+     */
+
+    private void copyMissingQueries(String candidatePassageRunFile,
+                                    @NotNull Set<String> marginalizedQueries,
+                                    @NotNull BufferedWriter out) throws IOException, InterruptedException {
+        forEachQuery(candidatePassageRunFile, false, lines -> {
+            String queryID = queryID(lines.get(0), false);
+            if (marginalizedQueries.contains(queryID)) {
+                return;
+            }
+            System.out.println("Did not find query: " + queryID);
+            Map<String, Double> paraMap = new LinkedHashMap<>();
+            for (String line : lines) {
+                String[] fields = line.split(" ");
+                paraMap.put(fields[2], Double.parseDouble(fields[4]));
+            }
+            List<String> runStrings = new ArrayList<>();
+            makeRunFileStrings(Collections.singletonMap(queryID, paraMap), runStrings);
+            for (String runString : runStrings) {
+                out.write(runString);
+                out.newLine();
+            }
+        });
+    }
+
+    private static void write(@NotNull Map.Entry<String, Future<List<String>>> result,
+                              @NotNull Set<String> marginalizedQueries,
+                              @NotNull BufferedWriter out) throws IOException, InterruptedException {
+        try {
+            for (String runString : result.getValue().get()) {
+                out.write(runString);
+                out.newLine();
+            }
+            marginalizedQueries.add(result.getKey());
+        } catch (ExecutionException e) {
+            System.err.println("Could not marginalize query (copying it from the candidate run): " + result.getKey());
+            e.getCause().printStackTrace();
+        }
+    }
+
+    /**
+     * Give the lines of every query of a run file to a task, one query at a time.
+     * If the lines of every query are contiguous, the file is streamed. Otherwise the lines are first spilled into
+     * temporary files by a hash of the query ID, so that only one bucket of queries is in memory at a time.
+     * @param runFile String Path to the run file.
+     * @param splitEntity Boolean True if the query ID of the run file is query+entity.
+     * @param task QueryTask Called once per query.
+     */
+
+    private void forEachQuery(String runFile, boolean splitEntity, @NotNull QueryTask task)
+            throws IOException, InterruptedException {
+        if (readQueryIDs(runFile, splitEntity, true) != null) {
+            forEachGroup(new File(runFile), splitEntity, task);
+            return;
+        }
+        File dir = Files.createTempDirectory("passage-run").toFile();
+        File[] buckets = spill(runFile, splitEntity, dir);
+        try {
+            for (File bucket : buckets) {
+                LinkedHashMap<String, List<String>> queryLines = new LinkedHashMap<>();
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(bucket), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        queryLines.computeIfAbsent(queryID(line, splitEntity), q -> new ArrayList<>()).add(line);
+                    }
+                }
+                for (List<String> lines : queryLines.values()) {
+                    task.accept(lines);
+                }
+            }
+        } finally {
+            for (File bucket : buckets) {
+                if (!bucket.delete()) {
+                    System.out.println("Could not delete: " + bucket);
+                }
+            }
+            if (!dir.delete()) {
+                System.out.println("Could not delete: " + dir);
+            }
+        }
+    }
+
+    /**
+     * Give every run of contiguous lines of the same query to a task.
+     * @param runFile File Run file.
+     * @param splitEntity Boolean True if the query ID of the run file is query+entity.
+     * @param task QueryTask
+     */
+
+    private static void forEachGroup(File runFile, boolean splitEntity, @NotNull QueryTask task)
+            throws IOException, InterruptedException {
+        try (BufferedReader in = new BufferedReader(new FileReader(runFile))) {
+            String line, queryID = null;
+            List<String> lines = new ArrayList<>();
+            while ((line = in.readLine()) != null) {
+                String q = queryID(line, splitEntity);
+                if (!q.equals(queryID) && !lines.isEmpty()) {
+                    task.accept(lines);
+                    lines = new ArrayList<>();
+                }
+                queryID = q;
+                lines.add(line);
+            }
+            if (!lines.isEmpty()) {
+                task.accept(lines);
+            }
+        }
+    }
+
+    /**
+     * Split a run file into buckets by a hash of the query ID.
+     * @param runFile String Path to the run file.
+     * @param splitEntity Boolean True if the query ID of the run file is query+entity.
+     * @param dir File Directory for the buckets.
+     * @return File[] Buckets.
+     */
+
+    @NotNull
+    private static File[] spill(String runFile, boolean splitEntity, File dir) throws IOException {
+        int numBuckets = (int) Math.max(1, Math.min(MAX_BUCKETS, new File(runFile).length() / BUCKET_SIZE + 1));
+        File[] buckets = new File[numBuckets];
+        BufferedWriter[] writers = new BufferedWriter[numBuckets];
+        try (BufferedReader in = new BufferedReader(new FileReader(runFile))) {
+            for (int b = 0; b < numBuckets; b++) {
+                buckets[b] = new File(dir, "bucket-" + b);
+                writers[b] = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(buckets[b]), StandardCharsets.UTF_8));
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                int b = (queryID(line, splitEntity).hashCode() & Integer.MAX_VALUE) % numBuckets;
+                writers[b].write(line);
+                writers[b].newLine();
+            }
+        } finally {
+            for (BufferedWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Read the query IDs of a run file.
+     * @param runFile String Path to the run file.
+     * @param splitEntity Boolean True if the query ID of the run file is query+entity.
+     * @param contiguous Boolean True to return null if the lines of some query are not contiguous.
+     * @return Set Query IDs.
+     */
+
+    @Nullable
+    private static Set<String> readQueryIDs(String runFile, boolean splitEntity, boolean contiguous)
+            throws IOException {
+        Set<String> queryIDs = new HashSet<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(runFile))) {
+            String line, previous = null;
+            while ((line = in.readLine()) != null) {
+                String q = queryID(line, splitEntity);
+                if (!q.equals(previous) && !queryIDs.add(q) && contiguous) {
+                    return null;
+                }
+                previous = q;
+            }
+        }
+        return queryIDs;
+    }
+
+    @NotNull
+    private static String queryID(@NotNull String line, boolean splitEntity) {
+        return splitEntity ? line.split("\\+")[0] : line.split(" ")[0];
+    }
+
+    @NotNull
+    private static String readMethod(String runFile) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(runFile))) {
+            String line = in.readLine();
+            return line == null ? "" : line.split(" ")[5];
+        }
+    }
+
     /**
      * Sum over elements in a Map.
      * Helpful for marginalization.
@@ -222,9 +606,22 @@ public class Experiment2 {
      */
 
     public static void main(@NotNull String[] args) {
+        // Optional: --threads N for the number of worker threads of the streaming mode
+        RunOptions options = new RunOptions(args);
+        int numThreads = options.getNumThreads();
+        args = options.getArgs();
+
         String supportPassageRunFile = args[0];
         String candidatePassageRunFile = args[1];
         String newPassageRunFile = args[2];
-        new Experiment2(supportPassageRunFile, candidatePassageRunFile, newPassageRunFile);
+        if (args.length > 3) {
+            // Streaming mode: sum|max|mean|weighted [entityRunFile]
+            Aggregation aggregation = Aggregation.valueOf(args[3].toUpperCase());
+            String entityRunFile = args.length > 4 ? args[4] : null;
+            new Experiment2(supportPassageRunFile, candidatePassageRunFile, newPassageRunFile, aggregation,
+                    entityRunFile, numThreads);
+        } else {
+            new Experiment2(supportPassageRunFile, candidatePassageRunFile, newPassageRunFile);
+        }
     }
 }
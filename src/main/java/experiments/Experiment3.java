@@ -2,6 +2,7 @@ package experiments;
 
 import edu.unh.cs.treccar_v2.Data;
 import edu.unh.cs.treccar_v2.read_data.DeserializeData;
+import help.FeatureMatrix;
 import help.Utilities;
 import lucene.Index;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
@@ -9,7 +10,6 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.similarities.BM25Similarity;
-import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
@@ -23,7 +23,7 @@ import java.util.*;
  */
 
 public class Experiment3 {
-    private HashMap<String, String> featureFileMap = new HashMap<>();
+    private FeatureMatrix featureMatrix;
     private HashMap<String, ArrayList<String>> passageRunFileMap;
     private HashMap<String, List<String>> passageEntity = new HashMap<>();
     private HashMap<String, ArrayList<String>> passageQrelMap;
@@ -80,109 +80,43 @@ public class Experiment3 {
     private void doTask(String fetFile) {
         Set<String> querySet = passageRunFileMap.keySet();
         int qid = 1;
-        ArrayList<String> fetLines = new ArrayList<>();
 
-
-        for (String queryID : querySet) {
-            HashMap<String, List<String>> paraFeatures = new HashMap<>();
-            ArrayList<String> retParaList = passageRunFileMap.get(queryID);
-            ArrayList<String> relParaList = passageQrelMap.get(queryID);
-            for (String paraID : retParaList) {
-
-                List<String> paraEntityList = passageEntity.get(paraID);
-                List<String> featureList = new ArrayList<>();
-
-                for (String entityID : paraEntityList) {
-                    //String procssedEntityId = pageMap.get(entityID);
-                    String searchKey = queryID + "+" + entityID + "_" + paraID;
-                    String featureString = featureFileMap.get(searchKey);
-                    if (featureString != null) {
-                        featureList.add(featureString);
+        // Appends, as Utilities.writeFile() does
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(fetFile, true), 1 << 16)) {
+            for (String queryID : querySet) {
+                List<Integer> rows = new ArrayList<>();
+                ArrayList<String> retParaList = passageRunFileMap.get(queryID);
+                ArrayList<String> relParaList = passageQrelMap.get(queryID);
+                Set<String> relParaSet = relParaList == null ? Collections.emptySet() : new HashSet<>(relParaList);
+                for (String paraID : retParaList) {
+
+                    List<String> paraEntityList = passageEntity.get(paraID);
+
+                    for (String entityID : paraEntityList) {
+                        //String procssedEntityId = pageMap.get(entityID);
+                        int row = featureMatrix.row(queryID, entityID, paraID);
+                        if (row >= 0) {
+                            rows.add(row);
+                        }
                     }
                 }
-                if (!featureList.isEmpty()) {
-                    paraFeatures.put(paraID, featureList);
-                }
-            }
-            // average the features
-            HashMap<String, String> averageFeatures = average(paraFeatures);
-            String prefix = " ", suffix = " ";
-            for (String paraID : averageFeatures.keySet()) {
-                String fetLine = averageFeatures.get(paraID);
-                if (relParaList.contains(paraID)) {
-                    prefix = "1" + " " + "qid:" + qid;
-                } else {
-                    prefix = "0" + " " + "qid:" + qid;
-                }
-                suffix = "#" + queryID + "_" + paraID;
-                fetLine = prefix + " " + fetLine + " " + suffix;
-                fetLines.add(fetLine);
-            }
-            qid ++;
-            System.out.println("Done: " + queryID);
-        }
-        System.out.print("Writing to feature file...");
-        Utilities.writeFile(fetLines, fetFile);
-        System.out.println("[Done].");
-
-    }
-
-    private HashMap<String, String> average(HashMap<String, List<String>> paraFeatures) {
-        Set<String> paraSet = paraFeatures.keySet();
-        HashMap<String, String> averageFeatures = new HashMap<>();
-        for (String paraID : paraSet) {
-            List<String> features = paraFeatures.get(paraID);
-            String avgFetString = average(features);
-            averageFeatures.put(paraID, avgFetString);
-        }
-        return averageFeatures;
-    }
-
-    @NotNull
-    private String average(@NotNull List<String> features) {
-        StringBuilder s = new StringBuilder();
-        HashMap<Integer, Double> avgFet = new HashMap<>();
-        HashMap<Integer, List<Double>> allFetValues = new HashMap<>();
-        for (String fet : features) {
-            String[] fetValPairs = fet.split(" ");
-            for (String fetValPair : fetValPairs) {
-                if (fetValPair.contains(":")) {
-                    int fetNum = Integer.parseInt(fetValPair.split(":")[0]);
-                    double fetVal = Double.parseDouble(fetValPair.split(":")[1]);
-                    List<Double> vals;
-                    if (allFetValues.containsKey(fetNum)) {
-                        vals = allFetValues.get(fetNum);
-                    } else {
-                        vals = new ArrayList<>();
-                    }
-                    vals.add(fetVal);
-                    allFetValues.put(fetNum, vals);
+                // average the features
+                FeatureMatrix averageFeatures = featureMatrix.groupByPassage(
+                        rows.stream().mapToInt(Integer::intValue).toArray(), FeatureMatrix.Aggregation.MEAN, null);
+                for (int row = 0; row < averageFeatures.numRows(); row++) {
+                    int rel = relParaSet.contains(averageFeatures.getPara(row)) ? 1 : 0;
+                    averageFeatures.write(out, row, rel, qid, false);
                 }
+                qid ++;
+                System.out.println("Done: " + queryID);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-
-        for (int fetNum : allFetValues.keySet()) {
-            double avgFetVal = averageInList(allFetValues.get(fetNum));
-            avgFet.put(fetNum, avgFetVal);
-        }
-
-        for (int fetNum : avgFet.keySet()) {
-            s.append(fetNum).append(":").append(avgFet.get(fetNum)).append(" ");
-        }
-        return s.toString().trim();
+        System.out.println("Feature file written to: " + fetFile);
 
     }
 
-    @Contract(pure = true)
-    private double averageInList(@NotNull List<Double> vals) {
-        double avg = 0.0d, sum = 0.0d;
-        for (double d : vals) {
-            sum += d;
-        }
-        avg = sum / vals.size();
-        return avg;
-    }
-
     private void getEntities() {
         Document document = null;
         Set<String> querySet = passageRunFileMap.keySet();
@@ -204,35 +138,11 @@ public class Experiment3 {
     }
 
     private void readFeatureFile(String featureFile) {
-        BufferedReader br = null;
-        String line ,info, feature;
-        int i;
-
         try {
-            br = new BufferedReader(new FileReader(featureFile));
-            while((line = br.readLine()) != null) {
-                i = line.indexOf("#");
-                feature = line.substring(8,i);
-                info = line.substring(i+1);
-                String query = info.split("_")[0];
-                String paraID = info.split("_")[1];
-                String queryID = query.split("\\+")[0];
-                String entityID = query.split("\\+")[1];
-                String newInfo = queryID + "+" + Utilities.process(entityID) + "_" + paraID;
-                featureFileMap.put(newInfo, feature);
-            }
+            // The entities of the feature file are matched against the entities of the passages in the index
+            featureMatrix = FeatureMatrix.read(featureFile, Utilities::process);
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            try {
-                if(br != null) {
-                    br.close();
-                } else {
-                    System.out.println("Buffer has not been initialized!");
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
         }
     }
 
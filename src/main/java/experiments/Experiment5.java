@@ -4,12 +4,12 @@ import api.WATApi;
 import help.EntityRMExpand;
 import help.Utilities;
 import lucene.Index;
+import lucene.MultiQuerySearcher;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
@@ -169,6 +169,10 @@ public class Experiment5 {
 
             retEntitySet.retainAll(relEntitySet);
 
+            // The expanded queries of all entities of the query are searched together
+            MultiQuerySearcher multiQuerySearcher = new MultiQuerySearcher(paraIndexSearcher, "text");
+            List<String> searchedEntities = new ArrayList<>();
+
             // For every entity in this set of relevant retrieved  entities do
             for (String entityId : retEntitySet) {
 
@@ -187,14 +191,16 @@ public class Experiment5 {
                         .replaceAll("%20", " ")     // replace %20 with whitespace
                         .toLowerCase();                            //  convert query to lowercase
 
-                // Convert the query to an expanded BooleanQuery
-                BooleanQuery booleanQuery = EntityRMExpand.toEntityRmQuery(queryStr, expansionEntities, omitQueryTerms,
-                        "text", analyzer);
-
-                // Search the index
-                TopDocs tops = Index.Search.searchIndex(booleanQuery, 100, paraIndexSearcher);
-                makeRunStrings(queryId, entityId, tops);
+                // Convert the query to an expanded query
+                multiQuerySearcher.add(EntityRMExpand.toExpansionQuery(queryStr, expansionEntities, omitQueryTerms,
+                        "text", analyzer).getTermWeights());
+                searchedEntities.add(entityId);
+            }
 
+            // Search the index
+            TopDocs[] tops = multiQuerySearcher.search(100);
+            for (int i = 0; i < tops.length; i++) {
+                makeRunStrings(queryId, searchedEntities.get(i), tops[i]);
             }
             System.out.println("Done query: " + queryId);
         }
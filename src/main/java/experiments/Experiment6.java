@@ -1,7 +1,9 @@
 package experiments;
 
 import api.WATApi;
+import help.CoOccurrence;
 import help.PseudoDocument;
+import help.QueryContext;
 import help.Utilities;
 import lucene.Index;
 import org.apache.lucene.document.Document;
@@ -141,12 +143,18 @@ public class Experiment6 {
             // Get the list of passages retrieved for the query
             ArrayList<String> paraList = paraRankings.get(queryId);
 
+            // Fetch the passages once for all pseudo-documents of the query
+            QueryContext context = new QueryContext(paraList, searcher);
+
+            // Co-occurring entities which are also retrieved for the query
+            CoOccurrence coOccurrence = new CoOccurrence(context, processedEntityList);
+
 
             // For every entity in this list of relevant entities do
             for (String entityId : retEntitySet) {
 
                 // Create a pseudo-document for the entity
-                PseudoDocument d = Utilities.createPseudoDocument(entityId, paraList, searcher);
+                PseudoDocument d = context.getPseudoDocument(entityId);
 
                 // Get the list of entities that co-occur with this entity in the pseudo-document
                 if (d != null) {
@@ -154,8 +162,8 @@ public class Experiment6 {
                     // Add it to the list of pseudo-documents for this entity
                     pseudoDocuments.add(d);
 
-                    // Get the list of co-occurring entities
-                    pseudoDocEntityList = d.getEntityList();
+                    // Get the list of (distinct) co-occurring entities which are also retrieved for the query
+                    pseudoDocEntityList = coOccurrence.getEntities(d);
 
                     // For every co-occurring entity do
                     for (String e : pseudoDocEntityList) {
@@ -165,14 +173,14 @@ public class Experiment6 {
 
 
                         ////////////////////////////////////////////////////////////////////////////////////////////////
-                        // The second condition is important because pseudoDocEntityList contains multiple occurrences
-                        // of the same entity (the original method depended on the frequency of the co-occurring entities).
+                        // The second condition is important because the same entity co-occurs with many entities
+                        // (the original method depended on the frequency of the co-occurring entities).
                         // However, for the purposes of this experiment, we are using the relatedness score between two
                         // entities and hence we don't need multiple occurrences of the same entity. Finding relatedness
                         // of same entity multiple times is going to increase run-time.
                         ////////////////////////////////////////////////////////////////////////////////////////////////
 
-                        if (processedEntityList.contains(e) && !relMap.containsKey(e)) {
+                        if (!relMap.containsKey(e)) {
 
                             // Find the relation score of this entity with the given entity and store it
                             relMap.put(e, getRelatedness(entityId, Utilities.unprocess(e)));
@@ -1,15 +1,18 @@
 package experiments;
 
 import api.WATApi;
+import help.CoOccurrence;
 import help.EntityRMExpand;
 import help.PseudoDocument;
+import help.QueryContext;
 import help.Utilities;
+import lucene.ForwardIndex;
 import lucene.Index;
+import lucene.MultiQuerySearcher;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
@@ -17,7 +20,9 @@ import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.LMDirichletSimilarity;
 import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.BytesRef;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.*;
@@ -34,6 +39,9 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 
 public class Experiment7 {
+    // Value of --forward-index to read the term vectors of the paragraph index
+    public final static String TERM_VECTORS = "term-vectors";
+
     private final IndexSearcher searcher;
 
     //HashMap where Key = queryID and Value = list of paragraphs relevant for the queryID
@@ -50,6 +58,8 @@ public class Experiment7 {
     private final ArrayList<String> runStrings = new ArrayList<>();
     private final int takeKEntities; // Number of query expansion terms
     private final boolean omitQueryTerms; // Omit query terms or not when calculating expansion terms
+    private final boolean restrictToCandidates; // Search only the candidate paragraphs of the query or the whole index
+    private ForwardIndex forwardIndex = null; // Scores the candidate paragraphs from their term frequencies, if set
     private final Analyzer analyzer; // Analyzer to use
     private String relType;
 
@@ -86,9 +96,70 @@ public class Experiment7 {
                        @NotNull String relType,
                        Analyzer analyzer,
                        Similarity similarity) {
+        this(paraIndexDir, mainDir, outputDir, dataDir, idFile, relFile, paraRunFile, entityRunFile, outFile,
+                entityQrelPath, takeKEntities, omitQueryTerms, useFrequency, relType, analyzer, similarity, false);
+    }
+
+    /**
+     * Constructor.
+     * Same as above, but the expanded queries may be restricted to the candidate paragraphs of the query (the
+     * paragraphs in the passage run file), so that they re-rank the candidates instead of searching the whole index.
+     * @param restrictToCandidates Boolean Whether or not to search only the candidate paragraphs of the query.
+     */
+
+    public Experiment7(String paraIndexDir,
+                       String mainDir,
+                       String outputDir,
+                       String dataDir,
+                       String idFile,
+                       String relFile,
+                       String paraRunFile,
+                       String entityRunFile,
+                       String outFile,
+                       String entityQrelPath,
+                       int takeKEntities,
+                       boolean omitQueryTerms,
+                       boolean useFrequency,
+                       @NotNull String relType,
+                       Analyzer analyzer,
+                       Similarity similarity,
+                       boolean restrictToCandidates) {
+        this(paraIndexDir, mainDir, outputDir, dataDir, idFile, relFile, paraRunFile, entityRunFile, outFile,
+                entityQrelPath, takeKEntities, omitQueryTerms, useFrequency, relType, analyzer, similarity,
+                restrictToCandidates, null);
+    }
+
+    /**
+     * Constructor.
+     * Same as above, but the candidate paragraphs may be scored from their term frequencies (see ForwardIndex) instead
+     * of being searched in the index. The scores are the same.
+     * @param forwardIndexPath String Path to a forward index of the "text" field of the paragraph index (see
+     *                         ForwardIndex.build()), or TERM_VECTORS to read the term vectors of the index. Null to
+     *                         search the index. Needs restrictToCandidates.
+     */
+
+    public Experiment7(String paraIndexDir,
+                       String mainDir,
+                       String outputDir,
+                       String dataDir,
+                       String idFile,
+                       String relFile,
+                       String paraRunFile,
+                       String entityRunFile,
+                       String outFile,
+                       String entityQrelPath,
+                       int takeKEntities,
+                       boolean omitQueryTerms,
+                       boolean useFrequency,
+                       @NotNull String relType,
+                       Analyzer analyzer,
+                       Similarity similarity,
+                       boolean restrictToCandidates,
+                       @Nullable String forwardIndexPath) {
 
 
         this.takeKEntities = takeKEntities;
+        this.restrictToCandidates = restrictToCandidates;
         this.analyzer = analyzer;
         this.omitQueryTerms = omitQueryTerms;
 
@@ -153,7 +224,28 @@ public class Experiment7 {
         searcher = new Index.Setup(paraIndexDir, "text", analyzer, similarity).getSearcher();
         System.out.println("[Done].");
 
+        if (forwardIndexPath != null) {
+            System.out.print("Opening forward index...");
+            try {
+                forwardIndex = TERM_VECTORS.equals(forwardIndexPath)
+                        ? ForwardIndex.fromTermVectors(searcher, "text")
+                        : ForwardIndex.open(forwardIndexPath, searcher, "text");
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            System.out.println("[Done].");
+        }
+
         feature(outputFilePath, useFrequency);
+
+        if (forwardIndex != null) {
+            try {
+                forwardIndex.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
     /**
      * Method to calculate the first feature.
@@ -210,6 +302,28 @@ public class Experiment7 {
             // Get the list of passages retrieved for the query
             ArrayList<String> paraList = paraRankings.get(queryId);
 
+            // Fetch the passages once for all pseudo-documents of the query
+            QueryContext context = new QueryContext(paraList, searcher);
+
+            // Co-occurring entities which are also retrieved for the query
+            CoOccurrence coOccurrence = new CoOccurrence(context, Utilities.process(entityList));
+
+
+            // The expanded queries of all entities of the query are searched together
+            MultiQuerySearcher multiQuerySearcher = new MultiQuerySearcher(searcher, "text");
+            List<String> searchedEntities = new ArrayList<>();
+            BitSet candidates = null;
+            if (restrictToCandidates) {
+                try {
+                    candidates = Index.Search.searchDocIds("id", paraList, searcher);
+                    multiQuerySearcher.setCandidates(candidates);
+                } catch (IOException e) {
+                    // Searching the whole index instead would put unrestricted results in the -candidates run
+                    e.printStackTrace();
+                    System.out.println("Skipping query (could not find its candidate passages): " + queryId);
+                    return;
+                }
+            }
 
             // For every entity in this set of relevant retrieved  entities do
             for (String entityId : retEntitySet) {
@@ -219,7 +333,7 @@ public class Experiment7 {
                 // So we are actually looking at all entities that occur in the PseudoDocument
                 // sorted in descending order of frequency
                 // Here we are using all entities retrieved for the query to get the expansion terms
-                getExpansionContextEntities(entityId, entityList, paraList, expansionEntities, useFrequency);
+                getExpansionContextEntities(entityId, context, coOccurrence, expansionEntities, useFrequency);
 
                 if (expansionEntities.size() == 0) {
                     continue;
@@ -231,34 +345,45 @@ public class Experiment7 {
                         .replaceAll("%20", " ")     // replace %20 with whitespace
                         .toLowerCase();                            //  convert query to lowercase
 
-                // Convert the query to an expanded BooleanQuery and search index
-                BooleanQuery booleanQuery;
-                TopDocs tops;
+                // Convert the query to an expanded query
                 try {
-                    booleanQuery = EntityRMExpand.toEntityRmQuery(queryStr, expansionEntities, omitQueryTerms,
-                            "text", analyzer);
-                    tops = Index.Search.searchIndex(booleanQuery, 100, searcher);
-                    makeRunStrings(queryId, entityId, tops);
+                    Map<BytesRef, Float> termWeights = EntityRMExpand.toExpansionQuery(queryStr, expansionEntities,
+                            omitQueryTerms, "text", analyzer).getTermWeights();
+                    if (forwardIndex != null) {
+                        // Score the candidates from their term frequencies instead of searching the index
+                        makeRunStrings(queryId, entityId, forwardIndex.search(termWeights, candidates, 100));
+                    } else {
+                        multiQuerySearcher.add(termWeights);
+                        searchedEntities.add(entityId);
+                    }
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
             }
+
+            // Search the index
+            try {
+                TopDocs[] tops = multiQuerySearcher.search(100);
+                for (int i = 0; i < tops.length; i++) {
+                    makeRunStrings(queryId, searchedEntities.get(i), tops[i]);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
             System.out.println("Done query: " + queryId);
         }
     }
 
     private void getExpansionContextEntities(String entityId,
-                                             List<String> entityList,
-                                             ArrayList<String> paraList,
+                                             QueryContext context,
+                                             CoOccurrence coOccurrence,
                                              @NotNull List<Map.Entry<String, Double>> expansionEntities,
                                              boolean useFrequency) {
 
-        HashMap<String, Integer> freqMap = new HashMap<>();
         Map<String, Double> relMap = new LinkedHashMap<>();
-        ArrayList<String> processedEntityList = Utilities.process(entityList);
 
         // Create a pseudo-document for the entity
-        PseudoDocument d = Utilities.createPseudoDocument(entityId, paraList, searcher);
+        PseudoDocument d = context.getPseudoDocument(entityId);
         if (d != null) {
 
             if (useFrequency) {
@@ -270,7 +395,7 @@ public class Experiment7 {
                 ///////////////////////////////////////////////////////////////////////////////////////////////////////
 
                 // Get the Map of (Entity, Frequency)
-                getFreqMap(d, processedEntityList, freqMap);
+                HashMap<String, Integer> freqMap = coOccurrence.getFreqMap(d);
 
                 // Sort the entities in decreasing order of frequency
                 Map<String, Integer> sortedFreqMap = Utilities.sortByValueDescending(freqMap);
@@ -285,7 +410,7 @@ public class Experiment7 {
                 // If useFrequency is false, then find a distribution over co-occurring entities using relatedness.
                 //////////////////////////////////////////////////////////////////////////////////////////////////
                 // Get the list of co-occurring entities
-                List<String> contextEntityList = d.getEntityList();
+                List<String> contextEntityList = d.getEntities();
 
                 // Get the relatedness with the target entity
                 getRelatedness(entityId, contextEntityList, relMap);
@@ -368,26 +493,6 @@ public class Experiment7 {
         }
     }
 
-    private void getFreqMap(PseudoDocument d,
-                            ArrayList<String> processedEntityList,
-                            HashMap<String, Integer> freqMap) {
-
-        ArrayList<String> pseudoDocEntityList;
-        // Get the list of entities that co-occur with this entity in the pseudo-document
-        if (d != null) {
-            // Get the list of co-occurring entities
-            pseudoDocEntityList = d.getEntityList();
-            // For every co-occurring entity do
-            for (String e : pseudoDocEntityList) {
-                // If the entity also occurs in the list of entities relevant for the query then
-                if (processedEntityList.contains(e)) {
-                    // Find the frequency of this entity in the pseudo-document and store it
-                    freqMap.put(e, Utilities.frequency(e, pseudoDocEntityList));
-                }
-            }
-        }
-    }
-
     @NotNull
     private Map<String, Double> toDistribution (@NotNull Map<String, Double> rankings) {
         Map<String, Double> normRankings = new HashMap<>();
@@ -435,6 +540,22 @@ public class Experiment7 {
 
     public static void main(@NotNull String[] args){
 
+        // Optional flag: --candidates to search only the candidate paragraphs of every query
+        // Optional: --forward-index PATH|term-vectors to score the candidate paragraphs from their term frequencies
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        boolean restrictToCandidates = argList.remove("--candidates");
+        String forwardIndexPath = null;
+        int f = argList.indexOf("--forward-index");
+        if (f >= 0) {
+            forwardIndexPath = argList.remove(f + 1);
+            argList.remove(f);
+            if (!restrictToCandidates) {
+                System.out.println("--forward-index needs --candidates! Exiting.");
+                System.exit(1);
+            }
+        }
+        args = argList.toArray(new String[0]);
+
         Similarity similarity = null;
         Analyzer analyzer = null;
         boolean omit, useFrequency;
@@ -524,10 +645,19 @@ public class Experiment7 {
             outFile += "-" + "freq-false";
         }
 
+        if (restrictToCandidates) {
+            System.out.println("Searching candidate paragraphs only: Yes");
+            outFile += "-" + "candidates";
+        }
+        if (forwardIndexPath != null) {
+            System.out.println("Scoring candidate paragraphs with forward index: " + forwardIndexPath);
+        }
+
         outFile += ".run";
 
         new Experiment7(indexDir, mainDir, outputDir, dataDir, idFile, relFile, paraRunFile, entityRunFile, outFile,
-                entityQrel, takeKEntities, omit, useFrequency, relType, analyzer, similarity);
+                entityQrel, takeKEntities, omit, useFrequency, relType, analyzer, similarity, restrictToCandidates,
+                forwardIndexPath);
 
     }
 }
@@ -0,0 +1,74 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Thread-safe memo cache with a bounded number of entries.
+ * Entries are kept in two generations. New entries go to the young generation; when it is full, it becomes the old
+ * generation and the previous old generation is dropped. An entry found in the old generation is moved back to the
+ * young one. So the cache never holds more than (maxSize) entries, and the entries in use survive, as with an LRU
+ * cache, but without any bookkeeping on a hit.
+ * @param <K> Key
+ * @param <V> Value
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class BoundedCache<K, V> {
+    private final int generationSize;
+    private final Function<K, V> loader;
+    private volatile ConcurrentHashMap<K, V> young = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<K, V> old = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     * @param maxSize Integer Maximum number of entries.
+     * @param loader Function Computes the value of a key which is not in the cache. Must not return null.
+     */
+
+    public BoundedCache(int maxSize, @NotNull Function<K, V> loader) {
+        this.generationSize = Math.max(1, maxSize / 2);
+        this.loader = loader;
+    }
+
+    /**
+     * Get the value of a key, computing it if needed.
+     * @param key K
+     * @return V
+     */
+
+    public V get(K key) {
+        V value = young.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = old.get(key);
+        if (value == null) {
+            value = loader.apply(key);
+        }
+        young.put(key, value);
+        if (young.size() >= generationSize) {
+            rotate();
+        }
+        return value;
+    }
+
+    private synchronized void rotate() {
+        if (young.size() >= generationSize) {
+            old = young;
+            young = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Drop all entries.
+     */
+
+    public synchronized void clear() {
+        young = new ConcurrentHashMap<>();
+        old = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,87 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Counts the entities of a pseudo-document which are also in a set of entities (e.g., the entities retrieved for the
+ * query), as needed by the Entity Context Neighbors (ECN) scorers.
+ * The set is mapped once per query to entity ordinals of the {@link QueryContext}. A pseudo-document then keeps the
+ * counts of its entities by ordinal (see {@link IntCounter}), so the frequencies of the co-occurring entities in the
+ * set are found with one pass over the distinct entities of the pseudo-document, instead of a scan of the list of
+ * entity occurrences for every entity.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class CoOccurrence {
+    private final QueryContext context;
+    // Context ordinals of the entities in the set
+    private final BitSet members = new BitSet();
+
+    /**
+     * Constructor.
+     * @param context QueryContext Context of the query.
+     * @param entities Collection Entities of the set, in the form of the "entity" field of the index
+     *                 (see Utilities.process()).
+     */
+
+    public CoOccurrence(@NotNull QueryContext context, @NotNull Collection<String> entities) {
+        this.context = context;
+        for (String e : entities) {
+            int ordinal = context.getEntityOrdinal(e);
+            if (ordinal >= 0) {
+                members.set(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Get the frequency of the co-occurring entities which are in the set.
+     * @param d PseudoDocument Pseudo-document made from the context.
+     * @return HashMap where Key = entity and Value = number of occurrences in the pseudo-document.
+     */
+
+    @NotNull
+    public HashMap<String, Integer> getFreqMap(@NotNull PseudoDocument d) {
+        IntCounter counts = d.getEntityCounts();
+        HashMap<String, Integer> freqMap = new HashMap<>();
+        for (int i = 0; i < counts.size(); i++) {
+            int ordinal = counts.keyAt(i);
+            if (members.get(ordinal)) {
+                freqMap.put(context.getEntityName(ordinal), counts.countAt(i));
+            }
+        }
+        return freqMap;
+    }
+
+    /**
+     * Get the distinct co-occurring entities which are in the set.
+     * @param d PseudoDocument Pseudo-document made from the context.
+     * @return List Entities, in the order of their first occurrence in the pseudo-document.
+     */
+
+    @NotNull
+    public List<String> getEntities(@NotNull PseudoDocument d) {
+        IntCounter counts = d.getEntityCounts();
+        List<String> entities = new ArrayList<>();
+        for (int i = 0; i < counts.size(); i++) {
+            if (members.get(counts.keyAt(i))) {
+                entities.add(context.getEntityName(counts.keyAt(i)));
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Check if an entity is in the set.
+     * @param entity String Entity, in the form of the "entity" field of the index.
+     * @return Boolean
+     */
+
+    public boolean contains(String entity) {
+        int ordinal = context.getEntityOrdinal(entity);
+        return ordinal >= 0 && members.get(ordinal);
+    }
+}
@@ -1,72 +1,60 @@
 package help;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.BoostQuery;
-import org.apache.lucene.search.TermQuery;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.StringReader;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class EntityRMExpand {
+    // Expansion terms weighing less than this fraction of the largest weight do not change the ranking
+    private final static double MIN_RELATIVE_WEIGHT = 1e-4;
+
     @Nullable
     public static <K,V> BooleanQuery toEntityRmQuery(String queryStr,
                                                List<Map.Entry<K, V>> expansionEntities,
                                                boolean omitQueryTerms,
                                                String searchField,
                                                Analyzer analyzer) throws IOException {
+        return toExpansionQuery(queryStr, expansionEntities, omitQueryTerms, searchField, analyzer).build();
+    }
 
-        BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
-        List<String> tokens = new ArrayList<>(64);
+    /**
+     * Collect the weighted terms of the expanded query.
+     * Query terms have weight 1; the terms of the name of an expansion entity have the weight of the entity.
+     * The weights of a term which occurs more than once are summed.
+     * @param queryStr String Query
+     * @param expansionEntities List Expansion entities with their weights (Double).
+     * @param omitQueryTerms Boolean True to use the expansion terms only.
+     * @param searchField String Field to search.
+     * @param analyzer Analyzer Analyzer of the field.
+     * @return ExpansionQueryBuilder
+     * @throws IOException Exception thrown by the analyzer.
+     */
+
+    @NotNull
+    public static <K,V> ExpansionQueryBuilder toExpansionQuery(String queryStr,
+                                                               @NotNull List<Map.Entry<K, V>> expansionEntities,
+                                                               boolean omitQueryTerms,
+                                                               String searchField,
+                                                               Analyzer analyzer) throws IOException {
+
+        ExpansionQueryBuilder builder = new ExpansionQueryBuilder(searchField, analyzer)
+                .setMaxTerms(BooleanQuery.getMaxClauseCount())
+                .setMinRelativeWeight(MIN_RELATIVE_WEIGHT);
         if (!omitQueryTerms) {
-            tokens = tokenizeQuery(queryStr, searchField, analyzer);
-            for (String token : tokens) {
-                booleanQuery.add(new BoostQuery(new TermQuery(new Term(searchField, token)), 1.0f),
-                        BooleanClause.Occur.SHOULD);
-            }
+            builder.add(queryStr, 1.0d);
         }
 
-
-
-
         // add Entity RM terms
-        for (Map.Entry<K,V> stringDoubleEntry : expansionEntities.subList(0, Math.min(expansionEntities.size(), (64 - tokens.size())))) {
+        for (Map.Entry<K,V> stringDoubleEntry : expansionEntities) {
             String e = (String) stringDoubleEntry.getKey();
-            e = Utilities.process(e).replaceAll("_", " ");
-            List<String> entityToks = tokenizeQuery(e, searchField, analyzer);
-            for (String entity : entityToks) {
-                double weight = (double) stringDoubleEntry.getValue();
-                booleanQuery.add(new BoostQuery(new TermQuery(new Term(searchField, entity)), (float)weight),
-                        BooleanClause.Occur.SHOULD);
-            }
+            e = Utilities.process(e).replace('_', ' ');
+            builder.add(e, (double) stringDoubleEntry.getValue());
         }
-
-        return booleanQuery.build();
-    }
-    @NotNull
-    private static List<String> tokenizeQuery(String queryStr, String searchField,
-                                              @NotNull Analyzer analyzer) throws IOException {
-        TokenStream tokenStream = analyzer.tokenStream(searchField, new StringReader(queryStr));
-        List<String> tokens = new ArrayList<>();
-        tokenStream.reset();
-        while (tokenStream.incrementToken() && tokens.size() < 64) {
-            final String token = tokenStream.getAttribute(CharTermAttribute.class).toString();
-            tokens.add(token);
-        }
-        tokenStream.end();
-        tokenStream.close();
-        return tokens;
+        return builder;
     }
 }
-
-
-
@@ -0,0 +1,151 @@
+package help;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Builds an expanded query (query terms plus weighted expansion terms) with one clause per unique term.
+ * The weights of a term added many times (e.g., a term in the names of many expansion entities) are summed. For the
+ * similarities of this project (BM25, LM-JM, LM-DS) the score of a term is linear in its boost, so a single clause with
+ * the summed weight scores the same as the repeated clauses, but the term's postings are traversed once.
+ * When the query is built, terms with a negligible weight (less than minRelativeWeight times the largest weight) are
+ * dropped, and the (at most) maxTerms terms with the largest weights are kept; maxTerms is capped at
+ * BooleanQuery.getMaxClauseCount().
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class ExpansionQueryBuilder {
+    private final String field;
+    private final QueryTokenizer tokenizer;
+    // Term -> summed weight, in the order the terms were first added
+    private final Map<BytesRef, Double> weights = new LinkedHashMap<>();
+    private int maxTerms = Integer.MAX_VALUE;
+    private double minRelativeWeight = 0.0d;
+
+    /**
+     * Constructor.
+     * @param field String Field to search.
+     * @param analyzer Analyzer Analyzer of the field.
+     */
+
+    public ExpansionQueryBuilder(String field, @NotNull Analyzer analyzer) {
+        this.field = field;
+        this.tokenizer = QueryTokenizer.of(analyzer);
+    }
+
+    /**
+     * Set the maximum number of terms of the query.
+     * @param maxTerms Integer
+     * @return this
+     */
+
+    public ExpansionQueryBuilder setMaxTerms(int maxTerms) {
+        this.maxTerms = maxTerms;
+        return this;
+    }
+
+    /**
+     * Set the weight (relative to the largest weight) below which a term is dropped.
+     * @param minRelativeWeight Double
+     * @return this
+     */
+
+    public ExpansionQueryBuilder setMinRelativeWeight(double minRelativeWeight) {
+        this.minRelativeWeight = minRelativeWeight;
+        return this;
+    }
+
+    /**
+     * Add every term of a text with a weight.
+     * @param text String Text to analyze.
+     * @param weight Double Weight added to every occurrence of a term of the text.
+     * @return this
+     * @throws IOException Exception thrown by the analyzer.
+     */
+
+    public ExpansionQueryBuilder add(String text, double weight) throws IOException {
+        for (BytesRef term : tokenizer.tokenize(field, text)) {
+            addTerm(term, weight);
+        }
+        return this;
+    }
+
+    /**
+     * Add a term with a weight.
+     * @param term BytesRef Analyzed term. Not copied; must not be modified afterwards.
+     * @param weight Double
+     * @return this
+     */
+
+    public ExpansionQueryBuilder addTerm(@NotNull BytesRef term, double weight) {
+        weights.merge(term, weight, Double::sum);
+        return this;
+    }
+
+    /**
+     * Get the terms kept in the query with their weights.
+     * @return LinkedHashMap Term -> weight, in decreasing order of weight (ties in the order the terms were added).
+     */
+
+    @NotNull
+    public LinkedHashMap<BytesRef, Float> getTermWeights() {
+        double max = 0.0d;
+        for (double w : weights.values()) {
+            max = Math.max(max, w);
+        }
+        double min = max * minRelativeWeight;
+        List<Map.Entry<BytesRef, Double>> terms = new ArrayList<>(weights.size());
+        for (Map.Entry<BytesRef, Double> entry : weights.entrySet()) {
+            if (entry.getValue() > 0 && entry.getValue() >= min) {
+                terms.add(entry);
+            }
+        }
+        // Stable sort, so ties keep the order of insertion
+        terms.sort((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()));
+
+        int n = Math.min(terms.size(), Math.min(maxTerms, BooleanQuery.getMaxClauseCount()));
+        LinkedHashMap<BytesRef, Float> termWeights = new LinkedHashMap<>();
+        for (Map.Entry<BytesRef, Double> entry : terms.subList(0, n)) {
+            termWeights.put(entry.getKey(), entry.getValue().floatValue());
+        }
+        return termWeights;
+    }
+
+    /**
+     * Build the query.
+     * @return BooleanQuery A disjunction (SHOULD clauses) with one boosted TermQuery per term.
+     */
+
+    @NotNull
+    public BooleanQuery build() {
+        BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
+        for (Map.Entry<BytesRef, Float> entry : getTermWeights().entrySet()) {
+            Query termQuery = new TermQuery(new Term(field, entry.getKey()));
+            if (entry.getValue() != 1.0f) {
+                termQuery = new BoostQuery(termQuery, entry.getValue());
+            }
+            booleanQuery.add(termQuery, BooleanClause.Occur.SHOULD);
+        }
+        return booleanQuery.build();
+    }
+
+    /**
+     * Number of unique terms added so far.
+     * @return Integer
+     */
+
+    public int size() {
+        return weights.size();
+    }
+}
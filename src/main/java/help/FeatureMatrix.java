@@ -0,0 +1,598 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A feature file (SVMlight/RankLib format) in memory.
+ * A line of the file is: label qid:N feature:value ... #info
+ * where info is query+entity_paraID for a support passage feature file or query_paraID for a passage feature file.
+ * The file is parsed by scanning its bytes (no String per token). The rows are stored sparse (CSR: feature ids and
+ * float values, row after row) and indexed by (query, entity, passage), where queries, entities and passages are
+ * interned to ordinals. The rows of a passage (one per entity) can be aggregated into one row per passage with mean,
+ * max, min or weighted mean; a feature is aggregated over the rows in which it is present.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class FeatureMatrix {
+    public final static int NO_ENTITY = -1;
+    private final static double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1.0d;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    public enum Aggregation { MEAN, MAX, MIN, WEIGHTED }
+
+    /**
+     * Interns strings to ordinals 0, 1, 2, ...
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        int add(String name) {
+            Integer ord = ordinals.get(name);
+            if (ord == null) {
+                ord = names.size();
+                ordinals.put(name, ord);
+                names.add(name);
+            }
+            return ord;
+        }
+
+        int get(String name) {
+            Integer ord = ordinals.get(name);
+            return ord == null ? -1 : ord;
+        }
+
+        String name(int ord) {
+            return names.get(ord);
+        }
+    }
+
+    private final Dictionary queries, entities, paras;
+    // Query ordinal -> ((entity ordinal << 32) | passage ordinal) -> row
+    private final List<Map<Long, Integer>> rowIndex = new ArrayList<>();
+
+    private int numRows = 0, numValues = 0, numFeatures = 0;
+    private float[] labels = new float[1024];
+    private int[] qids = new int[1024];
+    private int[] queryOrds = new int[1024], entityOrds = new int[1024], paraOrds = new int[1024];
+    private int[] rowStart = new int[1025];
+    private int[] featureIds = new int[16 * 1024];
+    private float[] values = new float[16 * 1024];
+
+    private FeatureMatrix(Dictionary queries, Dictionary entities, Dictionary paras) {
+        this.queries = queries;
+        this.entities = entities;
+        this.paras = paras;
+    }
+
+    /**
+     * Read a feature file.
+     * @param featureFile String Path to the feature file.
+     * @return FeatureMatrix
+     * @throws IOException Exception reading the file.
+     */
+
+    @NotNull
+    public static FeatureMatrix read(String featureFile) throws IOException {
+        return read(featureFile, null);
+    }
+
+    /**
+     * Read a feature file.
+     * @param featureFile String Path to the feature file.
+     * @param entityKey Function Applied to the entity of a row before it is interned (e.g., Utilities::process);
+     *                  null to keep the entity as in the file.
+     * @return FeatureMatrix
+     * @throws IOException Exception reading the file.
+     */
+
+    @NotNull
+    public static FeatureMatrix read(String featureFile, @Nullable Function<String, String> entityKey)
+            throws IOException {
+        FeatureMatrix matrix = new FeatureMatrix(new Dictionary(), new Dictionary(), new Dictionary());
+        try (InputStream in = new FileInputStream(featureFile)) {
+            byte[] buffer = new byte[1 << 16];
+            byte[] line = new byte[1024];
+            int length = 0, n;
+            while ((n = in.read(buffer)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        matrix.parseLine(line, length, entityKey);
+                        length = 0;
+                    } else {
+                        if (length == line.length) {
+                            line = Arrays.copyOf(line, 2 * length);
+                        }
+                        line[length++] = b;
+                    }
+                }
+            }
+            if (length > 0) {
+                matrix.parseLine(line, length, entityKey);
+            }
+        }
+        return matrix;
+    }
+
+    private void parseLine(byte[] line, int length, @Nullable Function<String, String> entityKey) {
+        int end = length;
+        int hash = indexOf(line, 0, length, (byte) '#');
+        if (hash >= 0) {
+            end = hash;
+        }
+        int i = skipSpaces(line, 0, end);
+        if (i == end) {
+            return;
+        }
+        int j = nextSpace(line, i, end);
+        float label = parseFloat(line, i, j);
+        int qid = 0;
+
+        int row = numRows;
+        ensureRows(row + 1);
+        rowStart[row] = numValues;
+        for (i = skipSpaces(line, j, end); i < end; i = skipSpaces(line, j, end)) {
+            j = nextSpace(line, i, end);
+            int colon = indexOf(line, i, j, (byte) ':');
+            if (colon < 0) {
+                continue;
+            }
+            if (colon - i == 3 && line[i] == 'q' && line[i + 1] == 'i' && line[i + 2] == 'd') {
+                qid = parseInt(line, colon + 1, j);
+            } else {
+                addValue(parseInt(line, i, colon), parseFloat(line, colon + 1, j));
+            }
+        }
+
+        String info = hash >= 0 ? new String(line, hash + 1, length - hash - 1, StandardCharsets.UTF_8).trim() : "";
+        String query = String.valueOf(qid), entity = null, para = String.valueOf(row);
+        int underscore = info.lastIndexOf('_');
+        if (underscore >= 0) {
+            query = info.substring(0, underscore);
+            para = info.substring(underscore + 1);
+            int plus = query.indexOf('+');
+            if (plus >= 0) {
+                entity = query.substring(plus + 1);
+                query = query.substring(0, plus);
+                if (entityKey != null) {
+                    entity = entityKey.apply(entity);
+                }
+            }
+        }
+        endRow(label, qid, queries.add(query), entity == null ? NO_ENTITY : entities.add(entity), paras.add(para));
+    }
+
+    private void ensureRows(int rows) {
+        if (rows > labels.length) {
+            int capacity = Math.max(rows, 2 * labels.length);
+            labels = Arrays.copyOf(labels, capacity);
+            qids = Arrays.copyOf(qids, capacity);
+            queryOrds = Arrays.copyOf(queryOrds, capacity);
+            entityOrds = Arrays.copyOf(entityOrds, capacity);
+            paraOrds = Arrays.copyOf(paraOrds, capacity);
+            rowStart = Arrays.copyOf(rowStart, capacity + 1);
+        }
+    }
+
+    private void addValue(int feature, float value) {
+        if (numValues == values.length) {
+            featureIds = Arrays.copyOf(featureIds, 2 * numValues);
+            values = Arrays.copyOf(values, 2 * numValues);
+        }
+        featureIds[numValues] = feature;
+        values[numValues++] = value;
+        numFeatures = Math.max(numFeatures, feature);
+    }
+
+    private void endRow(float label, int qid, int queryOrd, int entityOrd, int paraOrd) {
+        int row = numRows++;
+        labels[row] = label;
+        qids[row] = qid;
+        queryOrds[row] = queryOrd;
+        entityOrds[row] = entityOrd;
+        paraOrds[row] = paraOrd;
+        rowStart[numRows] = numValues;
+        while (rowIndex.size() <= queryOrd) {
+            rowIndex.add(new HashMap<>());
+        }
+        // A later row with the same key replaces the earlier one
+        rowIndex.get(queryOrd).put(key(entityOrd, paraOrd), row);
+    }
+
+    private static long key(int entityOrd, int paraOrd) {
+        return ((long) entityOrd << 32) | (paraOrd & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Find the row of a (query, entity, passage).
+     * @param query String Query ID.
+     * @param entity String Entity ID (after the entityKey given to read()); null for a passage feature file.
+     * @param para String Passage ID.
+     * @return Integer Row, or -1 if there is none.
+     */
+
+    public int row(String query, @Nullable String entity, String para) {
+        int q = queries.get(query), p = paras.get(para);
+        int e = entity == null ? NO_ENTITY : entities.get(entity);
+        if (q < 0 || p < 0 || (entity != null && e < 0) || q >= rowIndex.size()) {
+            return -1;
+        }
+        Integer row = rowIndex.get(q).get(key(e, p));
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * Aggregate every (query, entity, passage) row into one row per (query, passage).
+     * If a key occurs in more than one line of the file, only the last line is used.
+     * @param aggregation Aggregation
+     * @param weights float[] Weight of every row (WEIGHTED only; may be null otherwise).
+     * @return FeatureMatrix One row per (query, passage), in the order of the queries.
+     */
+
+    @NotNull
+    public FeatureMatrix groupByPassage(@NotNull Aggregation aggregation, @Nullable float[] weights) {
+        int[] rows = new int[numRows];
+        int n = 0;
+        for (int row = 0; row < numRows; row++) {
+            if (rowIndex.get(queryOrds[row]).get(key(entityOrds[row], paraOrds[row])) == row) {
+                rows[n++] = row;
+            }
+        }
+        return groupByPassage(Arrays.copyOf(rows, n), aggregation, weights);
+    }
+
+    /**
+     * Aggregate some rows into one row per (query, passage).
+     * The label of an aggregated row is the largest label of its rows.
+     * @param rows int[] Rows to aggregate.
+     * @param aggregation Aggregation
+     * @param weights float[] Weight of every row of this matrix (WEIGHTED only; may be null otherwise).
+     * @return FeatureMatrix One row per (query, passage), in the order of the queries and, within a query, of the
+     * first row of the passage.
+     */
+
+    @NotNull
+    public FeatureMatrix groupByPassage(@NotNull int[] rows,
+                                        @NotNull Aggregation aggregation,
+                                        @Nullable float[] weights) {
+        if (aggregation == Aggregation.WEIGHTED && weights == null) {
+            throw new IllegalArgumentException("Weighted aggregation needs row weights.");
+        }
+        // Group of every row
+        Map<Long, Integer> groupIds = new HashMap<>();
+        int[] groups = new int[rows.length];
+        List<Integer> firstRows = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            long key = ((long) queryOrds[row] << 32) | (paraOrds[row] & 0xFFFFFFFFL);
+            Integer group = groupIds.get(key);
+            if (group == null) {
+                group = firstRows.size();
+                groupIds.put(key, group);
+                firstRows.add(row);
+            }
+            groups[i] = group;
+        }
+
+        int numGroups = firstRows.size(), dim = numFeatures + 1;
+        double[] acc = new double[numGroups * dim];
+        double[] norm = new double[numGroups * dim];
+        int[] counts = new int[numGroups * dim];
+        float[] groupLabels = new float[numGroups];
+        Arrays.fill(groupLabels, Float.NEGATIVE_INFINITY);
+
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i], base = groups[i] * dim;
+            double w = weights == null ? 1.0d : weights[row];
+            groupLabels[groups[i]] = Math.max(groupLabels[groups[i]], labels[row]);
+            for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+                int cell = base + featureIds[k];
+                float v = values[k];
+                switch (aggregation) {
+                    case MEAN:
+                        acc[cell] += v;
+                        break;
+                    case WEIGHTED:
+                        acc[cell] += w * v;
+                        norm[cell] += w;
+                        break;
+                    case MAX:
+                        acc[cell] = counts[cell] == 0 ? v : Math.max(acc[cell], v);
+                        break;
+                    case MIN:
+                        acc[cell] = counts[cell] == 0 ? v : Math.min(acc[cell], v);
+                        break;
+                }
+                counts[cell]++;
+            }
+        }
+
+        // Order the groups by query, keeping the order of the first rows within a query
+        Integer[] order = new Integer[numGroups];
+        for (int g = 0; g < numGroups; g++) {
+            order[g] = g;
+        }
+        Arrays.sort(order, Comparator.comparingInt(g -> queryOrds[firstRows.get(g)]));
+
+        FeatureMatrix grouped = new FeatureMatrix(queries, entities, paras);
+        grouped.numFeatures = numFeatures;
+        for (int g : order) {
+            int row = firstRows.get(g), base = g * dim;
+            grouped.ensureRows(grouped.numRows + 1);
+            grouped.rowStart[grouped.numRows] = grouped.numValues;
+            for (int f = 1; f < dim; f++) {
+                int cell = base + f;
+                if (counts[cell] == 0) {
+                    continue;
+                }
+                double v = acc[cell];
+                if (aggregation == Aggregation.MEAN) {
+                    v /= counts[cell];
+                } else if (aggregation == Aggregation.WEIGHTED) {
+                    v = norm[cell] == 0 ? 0.0d : v / norm[cell];
+                }
+                grouped.addValue(f, (float) v);
+            }
+            grouped.endRow(groupLabels[g], qids[row], queryOrds[row], NO_ENTITY, paraOrds[row]);
+        }
+        return grouped;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    /**
+     * Largest feature id in the file (feature ids start at 1).
+     * @return Integer
+     */
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    public float getLabel(int row) {
+        return labels[row];
+    }
+
+    public int getQid(int row) {
+        return qids[row];
+    }
+
+    public String getQuery(int row) {
+        return queries.name(queryOrds[row]);
+    }
+
+    @Nullable
+    public String getEntity(int row) {
+        return entityOrds[row] == NO_ENTITY ? null : entities.name(entityOrds[row]);
+    }
+
+    public String getPara(int row) {
+        return paras.name(paraOrds[row]);
+    }
+
+    /**
+     * Get the value of a feature in a row.
+     * @param row Integer
+     * @param feature Integer Feature id.
+     * @return Float Value, 0 if the feature is not present in the row.
+     */
+
+    public float get(int row, int feature) {
+        for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+            if (featureIds[k] == feature) {
+                return values[k];
+            }
+        }
+        return 0.0f;
+    }
+
+    /**
+     * Get a row as a dense vector.
+     * @param row Integer
+     * @return float[] Value of feature f at index f - 1.
+     */
+
+    @NotNull
+    public float[] getRow(int row) {
+        float[] vector = new float[numFeatures];
+        for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+            vector[featureIds[k] - 1] = values[k];
+        }
+        return vector;
+    }
+
+    /**
+     * Get the matrix as a dense row-major array.
+     * @return float[] Value of feature f of row r at index r * numFeatures() + f - 1.
+     */
+
+    @NotNull
+    public float[] toDense() {
+        float[] dense = new float[numRows * numFeatures];
+        for (int row = 0; row < numRows; row++) {
+            int base = row * numFeatures - 1;
+            for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+                dense[base + featureIds[k]] = values[k];
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Write a row as a line of a feature file: label qid:N feature:value ... #info
+     * @param out Writer
+     * @param row Integer Row to write.
+     * @param label Float Label of the line.
+     * @param qid Integer Qid of the line.
+     * @param dense Boolean True to write every feature from 1 to numFeatures(), false for the features in the row only.
+     * @throws IOException Exception writing.
+     */
+
+    public void write(@NotNull Writer out, int row, float label, int qid, boolean dense) throws IOException {
+        StringBuilder line = new StringBuilder(32 + 16 * (dense ? numFeatures : rowStart[row + 1] - rowStart[row]));
+        if (label == (int) label) {
+            line.append((int) label);
+        } else {
+            line.append(label);
+        }
+        line.append(" qid:").append(qid);
+        if (dense) {
+            float[] vector = getRow(row);
+            for (int f = 1; f <= numFeatures; f++) {
+                line.append(' ').append(f).append(':').append(vector[f - 1]);
+            }
+        } else {
+            for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+                line.append(' ').append(featureIds[k]).append(':').append(values[k]);
+            }
+        }
+        line.append(" #").append(getQuery(row));
+        if (entityOrds[row] != NO_ENTITY) {
+            line.append('+').append(entities.name(entityOrds[row]));
+        }
+        line.append('_').append(getPara(row));
+        out.write(line.toString());
+        out.write('\n');
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte c) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(byte[] b, int from, int to) {
+        while (from < to && (b[from] == ' ' || b[from] == '\t' || b[from] == '\r')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int nextSpace(byte[] b, int from, int to) {
+        while (from < to && b[from] != ' ' && b[from] != '\t' && b[from] != '\r') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int parseInt(byte[] b, int from, int to) {
+        int i = from, sign = 1, v = 0;
+        if (i < to && (b[i] == '-' || b[i] == '+')) {
+            sign = b[i++] == '-' ? -1 : 1;
+        }
+        for (; i < to; i++) {
+            v = 10 * v + (b[i] - '0');
+        }
+        return sign * v;
+    }
+
+    /**
+     * Parse a decimal number (with optional fraction and exponent) from bytes.
+     * Numbers which the fast path cannot parse exactly (more than 18 digits, large exponents, NaN, Infinity) are
+     * handed to Double.parseDouble().
+     */
+
+    private static float parseFloat(byte[] b, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (b[i] == '-' || b[i] == '+')) {
+            negative = b[i++] == '-';
+        }
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean seenDigit = false;
+        for (; i < to && b[i] >= '0' && b[i] <= '9'; i++, seenDigit = true) {
+            if (mantissa != 0 || b[i] != '0') {
+                mantissa = 10 * mantissa + (b[i] - '0');
+                digits++;
+            }
+        }
+        if (i < to && b[i] == '.') {
+            for (i++; i < to && b[i] >= '0' && b[i] <= '9'; i++, seenDigit = true) {
+                if (mantissa != 0 || b[i] != '0') {
+                    mantissa = 10 * mantissa + (b[i] - '0');
+                    digits++;
+                }
+                exponent--;
+            }
+        }
+        if (seenDigit && i < to && (b[i] == 'e' || b[i] == 'E')) {
+            exponent += parseInt(b, i + 1, to);
+            i = to;
+        }
+        if (!seenDigit || i != to || digits > 18 || Math.abs(exponent) >= POW10.length) {
+            return (float) Double.parseDouble(new String(b, from, to - from, StandardCharsets.US_ASCII));
+        }
+        double v = exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+        return (float) (negative ? -v : v);
+    }
+
+    /**
+     * Main method.
+     * Aggregates a support passage feature file into a passage feature file.
+     * Usage: FeatureMatrix mean|max|min inFile outFile [--dense]
+     * The label of a passage is the largest label of its rows; the qid is numbered by query.
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        boolean dense = argList.remove("--dense");
+        // WEIGHTED needs a weight per row, which the feature file does not have
+        List<String> aggregations = Arrays.asList("mean", "max", "min");
+        if (argList.size() != 3 || !aggregations.contains(argList.get(0).toLowerCase())) {
+            System.err.println("Usage: FeatureMatrix mean|max|min inFile outFile [--dense]");
+            System.exit(1);
+        }
+        Aggregation aggregation = Aggregation.valueOf(argList.get(0).toUpperCase());
+        String inFile = argList.get(1);
+        String outFile = argList.get(2);
+
+        try {
+            System.out.print("Reading feature file...");
+            FeatureMatrix matrix = read(inFile);
+            System.out.println("[Done].");
+
+            System.out.print("Aggregating...");
+            FeatureMatrix grouped = matrix.groupByPassage(aggregation, null);
+            System.out.println("[Done].");
+
+            System.out.print("Writing feature file...");
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(outFile), StandardCharsets.UTF_8), 1 << 16)) {
+                int qid = 0;
+                String previous = null;
+                for (int row = 0; row < grouped.numRows(); row++) {
+                    if (!grouped.getQuery(row).equals(previous)) {
+                        previous = grouped.getQuery(row);
+                        qid++;
+                    }
+                    grouped.write(out, row, grouped.getLabel(row), qid, dense);
+                }
+            }
+            System.out.println("[Done].");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        System.out.println("Feature file written to: " + outFile);
+    }
+}
@@ -0,0 +1,162 @@
+package help;
+
+import org.jetbrains.annotations.Contract;
+
+import java.util.Arrays;
+
+/**
+ * Counts of int keys (e.g., entity ordinals) without boxing.
+ * Open addressing with linear probing; the keys are also kept in the order they were first added, so that they can be
+ * iterated in that order with keyAt() / countAt().
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class IntCounter {
+    private int[] keys;
+    private int[] counts;
+    private int size = 0;
+    // Slot of the table -> (index in keys) + 1, 0 if the slot is empty
+    private int[] table;
+
+    /**
+     * Constructor.
+     */
+
+    public IntCounter() {
+        this(8);
+    }
+
+    /**
+     * Constructor.
+     * @param expectedSize Integer Expected number of distinct keys.
+     */
+
+    public IntCounter(int expectedSize) {
+        int capacity = Math.max(4, expectedSize);
+        keys = new int[capacity];
+        counts = new int[capacity];
+        table = new int[tableSize(capacity)];
+    }
+
+    @Contract(pure = true)
+    private static int tableSize(int capacity) {
+        // Power of two, at most half full
+        return Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+    }
+
+    private int slot(int key) {
+        int mask = table.length - 1;
+        int h = key * 0x9E3779B9;
+        int s = (h ^ (h >>> 16)) & mask;
+        while (table[s] != 0 && keys[table[s] - 1] != key) {
+            s = (s + 1) & mask;
+        }
+        return s;
+    }
+
+    /**
+     * Add one to the count of a key.
+     * @param key Integer
+     */
+
+    public void add(int key) {
+        add(key, 1);
+    }
+
+    /**
+     * Add to the count of a key.
+     * @param key Integer
+     * @param n Integer Amount to add.
+     */
+
+    public void add(int key, int n) {
+        int s = slot(key);
+        if (table[s] != 0) {
+            counts[table[s] - 1] += n;
+            return;
+        }
+        if (size == keys.length) {
+            grow();
+            s = slot(key);
+        }
+        keys[size] = key;
+        counts[size] = n;
+        table[s] = ++size;
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        table = new int[tableSize(capacity)];
+        for (int i = 0; i < size; i++) {
+            table[slot(keys[i])] = i + 1;
+        }
+    }
+
+    /**
+     * Get the count of a key.
+     * @param key Integer
+     * @return Integer Count, 0 if the key was never added.
+     */
+
+    public int get(int key) {
+        int s = slot(key);
+        return table[s] == 0 ? 0 : counts[table[s] - 1];
+    }
+
+    /**
+     * Check if a key was added.
+     * @param key Integer
+     * @return Boolean
+     */
+
+    public boolean contains(int key) {
+        return table[slot(key)] != 0;
+    }
+
+    /**
+     * Number of distinct keys.
+     * @return Integer
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the i-th key, in the order the keys were first added.
+     * @param i Integer Index in [0, size())
+     * @return Integer Key
+     */
+
+    public int keyAt(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Get the count of the i-th key.
+     * @param i Integer Index in [0, size())
+     * @return Integer Count
+     */
+
+    public int countAt(int i) {
+        return counts[i];
+    }
+
+    /**
+     * Release the unused capacity, for counters which are kept after they are filled.
+     */
+
+    public void trim() {
+        if (size < keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(1, size));
+            counts = Arrays.copyOf(counts, Math.max(1, size));
+            table = new int[tableSize(keys.length)];
+            for (int i = 0; i < size; i++) {
+                table[slot(keys[i])] = i + 1;
+            }
+        }
+    }
+}
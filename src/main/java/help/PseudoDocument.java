@@ -1,30 +1,47 @@
 package help;
 import org.apache.lucene.document.Document;
-import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Class to represent a pseudo-document for an entity.
+ * The pseudo-document is made from a {@link QueryContext} but does not keep a reference to it: it holds only its own
+ * paragraphs, their sorted ids, and the counts of its co-occurring entities by entity ordinal of the context (with the
+ * names of those entities). The context, with all candidate paragraphs of the query, can be dropped once the
+ * pseudo-documents of the query are made.
  * @author Shubham Chatterjee
  * @version 02/25/2019
  */
 public class PseudoDocument {
-    private ArrayList<Document> documentList;
-    private String entity;
-    private ArrayList<String> entityList;
+    private final String entity;
+    private final Document[] documents;
+    // Ids of the documents, sorted
+    private final String[] paraIds;
+    private final IntCounter entityCounts;
+    // Name of the entity counted at every index of entityCounts
+    private final String[] entityNames;
 
     /**
-     * Construcor.
-     * @param documentList List of documents in the pseudo-document
+     * Constructor.
      * @param entity The entity for which the pseudo-document is made
-     * @param entityList The list of entities in the pseudo-document
+     * @param documents Paragraphs in the pseudo-document
+     * @param entityCounts Counts of the entity ordinals (in the context) of the entities in the pseudo-document
+     * @param entityNames Names of the entities, in the order of entityCounts
      */
-    @Contract(pure = true)
-    public PseudoDocument(ArrayList<Document> documentList, String entity, ArrayList<String> entityList) {
-        this.documentList = documentList;
+    PseudoDocument(String entity, @NotNull Document[] documents, @NotNull IntCounter entityCounts,
+                   @NotNull String[] entityNames) {
         this.entity = entity;
-        this.entityList = entityList;
+        this.documents = documents;
+        this.entityCounts = entityCounts;
+        this.entityNames = entityNames;
+        this.paraIds = new String[documents.length];
+        for (int i = 0; i < documents.length; i++) {
+            paraIds[i] = documents[i].get("id");
+        }
+        Arrays.sort(paraIds);
     }
 
     /**
@@ -32,7 +49,15 @@ public class PseudoDocument {
      * @return String
      */
     public ArrayList<Document> getDocumentList() {
-        return this.documentList;
+        return new ArrayList<>(Arrays.asList(documents));
+    }
+
+    /**
+     * Method to get the number of documents in the pseudo-document.
+     * @return Integer
+     */
+    public int size() {
+        return documents.length;
     }
 
     /**
@@ -44,11 +69,48 @@ public class PseudoDocument {
     }
 
     /**
-     * Method to get the list of entities in the pseudo-document.
+     * Method to get the list of entities in the pseudo-document, with one element per occurrence.
      * @return ArrayList
+     * @deprecated Builds the whole list. Use getEntities() and getFrequency().
      */
+    @Deprecated
     public ArrayList<String> getEntityList() {
-        return this.entityList;
+        ArrayList<String> entityList = new ArrayList<>();
+        for (int i = 0; i < entityCounts.size(); i++) {
+            String e = entityNames[i];
+            for (int n = 0; n < entityCounts.countAt(i); n++) {
+                entityList.add(e);
+            }
+        }
+        return entityList;
+    }
+
+    /**
+     * Method to get the distinct entities in the pseudo-document, in the order of their first occurrence.
+     * @return List
+     */
+    @NotNull
+    public List<String> getEntities() {
+        return new ArrayList<>(Arrays.asList(entityNames));
+    }
+
+    /**
+     * Method to get the number of occurrences of an entity in the pseudo-document.
+     * Scans the distinct entities of the pseudo-document.
+     * @param e The entity (as in the "entity" field of the index)
+     * @return Integer
+     */
+    public int getFrequency(String e) {
+        for (int i = 0; i < entityNames.length; i++) {
+            if (entityNames[i].equals(e)) {
+                return entityCounts.countAt(i);
+            }
+        }
+        return 0;
+    }
+
+    IntCounter getEntityCounts() {
+        return entityCounts;
     }
 
     /**
@@ -67,13 +129,8 @@ public class PseudoDocument {
      * @return Boolean true if this document is in the pseudo-document
      */
 
-    public boolean containsDocument(Document document) {
-        for (Document d : this.documentList) {
-            if (d.getField("id").stringValue().equalsIgnoreCase(document.getField("id").toString())) {
-                return true;
-            }
-        }
-        return false;
+    public boolean containsDocument(@NotNull Document document) {
+        String id = document.get("id");
+        return id != null && Arrays.binarySearch(paraIds, id) >= 0;
     }
 }
-
@@ -0,0 +1,156 @@
+package help;
+
+import lucene.Index;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.IndexSearcher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The candidate paragraphs of one query, loaded once and shared by all pseudo-documents of the query.
+ * Utilities.createPseudoDocument() looks up every candidate paragraph in the index once per entity. This class fetches
+ * all candidate paragraphs with a single batched lookup, splits their "entity" fields once into entity ordinals, and
+ * builds an inverted map (entity -> paragraphs mentioning it) in one pass. A pseudo-document is then read off the
+ * inverted map without touching the index.
+ * The context holds only the candidate paragraphs of one query; create one per query and drop it when done.
+ * The context is read-only after construction, so pseudo-documents may be built from many threads at once.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class QueryContext {
+    // Paragraphs with at least one entity, in the order of the candidate ranking
+    private final List<Document> documents = new ArrayList<>();
+    // Entity ordinals of every paragraph, in the order of the "entity" field (repetitions included)
+    private final List<int[]> paraEntities = new ArrayList<>();
+    // Entity name of every ordinal
+    private final List<String> entityNames = new ArrayList<>();
+    private final Map<String, Integer> entityOrdinals = new HashMap<>();
+    // Inverted map: ordinal of an entity -> indexes (in documents) of the paragraphs mentioning it
+    private final Map<Integer, int[]> entityToParas = new HashMap<>();
+
+    /**
+     * Constructor.
+     * @param paraList List List of paragraphs retrieved for the query (in rank order).
+     * @param searcher IndexSearcher Searcher of the paragraph index (fields "id", "text" and "entity").
+     */
+
+    public QueryContext(@NotNull List<String> paraList, @NotNull IndexSearcher searcher) {
+        Map<String, Document> found;
+        try {
+            found = Index.Search.searchIndex("id", new LinkedHashSet<>(paraList), searcher);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        Map<Integer, List<Integer>> inverted = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (String paraId : paraList) {
+            Document doc = found.get(paraId);
+            if (doc == null || !seen.add(paraId)) {
+                continue;
+            }
+            String field = doc.get("entity");
+            String[] entityList = field == null ? new String[0] : Utilities.clean(field.split(" "));
+            // If the document does not have any entities then ignore
+            if (entityList.length == 0) {
+                continue;
+            }
+            int index = documents.size();
+            int[] ordinals = new int[entityList.length];
+            for (int i = 0; i < entityList.length; i++) {
+                ordinals[i] = ordinal(entityList[i]);
+                List<Integer> paras = inverted.computeIfAbsent(ordinals[i], k -> new ArrayList<>());
+                if (paras.isEmpty() || paras.get(paras.size() - 1) != index) {
+                    paras.add(index);
+                }
+            }
+            documents.add(doc);
+            paraEntities.add(ordinals);
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : inverted.entrySet()) {
+            entityToParas.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private int ordinal(String entity) {
+        Integer ordinal = entityOrdinals.get(entity);
+        if (ordinal == null) {
+            ordinal = entityNames.size();
+            entityOrdinals.put(entity, ordinal);
+            entityNames.add(entity);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Create the pseudo-document of an entity.
+     * Same result as Utilities.createPseudoDocument(entity, paraList, searcher).
+     * @param entity String EntityID
+     * @return A Pseudo-Document for the (query, entity) pair, null if no candidate paragraph mentions the entity.
+     */
+
+    @Nullable
+    public PseudoDocument getPseudoDocument(String entity) {
+        Integer ordinal = entityOrdinals.get(Utilities.process(entity));
+        if (ordinal == null) {
+            return null;
+        }
+        int[] paras = entityToParas.get(ordinal);
+        IntCounter entityCounts = new IntCounter();
+        for (int p : paras) {
+            for (int e : paraEntities.get(p)) {
+                entityCounts.add(e);
+            }
+        }
+        entityCounts.trim();
+        Document[] documentList = new Document[paras.length];
+        for (int i = 0; i < paras.length; i++) {
+            documentList[i] = documents.get(paras[i]);
+        }
+        String[] names = new String[entityCounts.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = entityNames.get(entityCounts.keyAt(i));
+        }
+        return new PseudoDocument(entity, documentList, entityCounts, names);
+    }
+
+    /**
+     * Create the pseudo-documents of many entities.
+     * @param entities Collection EntityIDs
+     * @param parallel Boolean True to build the pseudo-documents in parallel (common ForkJoinPool).
+     * @return List Pseudo-documents of the entities mentioned in at least one candidate paragraph,
+     * in the order of the entities.
+     */
+
+    @NotNull
+    public ArrayList<PseudoDocument> getPseudoDocuments(@NotNull Collection<String> entities, boolean parallel) {
+        return (parallel ? entities.parallelStream() : entities.stream())
+                .map(this::getPseudoDocument)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    String getEntityName(int ordinal) {
+        return entityNames.get(ordinal);
+    }
+
+    int getEntityOrdinal(String entity) {
+        Integer ordinal = entityOrdinals.get(entity);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Number of candidate paragraphs with at least one entity.
+     * @return Integer
+     */
+
+    public int size() {
+        return documents.size();
+    }
+}
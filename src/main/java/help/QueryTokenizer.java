@@ -0,0 +1,92 @@
+package help;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.util.BytesRef;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tokenization service for query construction.
+ * Analyzes a text for a field once and keeps the terms, so that the query and the names of the expansion entities,
+ * which are the same over many (query, entity) pairs, are not run through the analyzer chain again.
+ * Use the shared instance of an analyzer: QueryTokenizer.of(analyzer).
+ * On a miss, the text is analyzed with Analyzer.tokenStream(field, String), which reuses the TokenStream (and its
+ * reader) of the calling thread. The terms returned are shared by all callers and must not be modified.
+ * The size of the cache of each analyzer can be set with -Dtokenizer.cache.size (default 65536 texts per field).
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class QueryTokenizer {
+    private final static int CACHE_SIZE = Integer.getInteger("tokenizer.cache.size", 1 << 16);
+    private final static ConcurrentHashMap<Analyzer, QueryTokenizer> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Analyzer analyzer;
+    private final int maxSize;
+    // Field -> (text -> terms)
+    private final ConcurrentHashMap<String, BoundedCache<String, BytesRef[]>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     * @param analyzer Analyzer Analyzer of the index.
+     * @param maxSize Integer Maximum number of texts cached per field.
+     */
+
+    public QueryTokenizer(@NotNull Analyzer analyzer, int maxSize) {
+        this.analyzer = analyzer;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the shared tokenizer of an analyzer.
+     * @param analyzer Analyzer
+     * @return QueryTokenizer
+     */
+
+    @NotNull
+    public static QueryTokenizer of(@NotNull Analyzer analyzer) {
+        return INSTANCES.computeIfAbsent(analyzer, a -> new QueryTokenizer(a, CACHE_SIZE));
+    }
+
+    /**
+     * Get the terms of a text.
+     * @param field String Field to analyze the text for.
+     * @param text String Text
+     * @return BytesRef[] Terms, in the order of the text. Do not modify.
+     * @throws IOException Exception thrown by the analyzer.
+     */
+
+    @NotNull
+    public BytesRef[] tokenize(String field, String text) throws IOException {
+        BoundedCache<String, BytesRef[]> cache = caches.computeIfAbsent(field,
+                f -> new BoundedCache<>(maxSize, t -> analyze(f, t)));
+        try {
+            return cache.get(text);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @NotNull
+    private BytesRef[] analyze(String field, String text) {
+        List<BytesRef> terms = new ArrayList<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(field, text)) {
+            TermToBytesRefAttribute termAtt = tokenStream.addAttribute(TermToBytesRefAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                terms.add(BytesRef.deepCopyOf(termAtt.getBytesRef()));
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms.toArray(new BytesRef[0]);
+    }
+}
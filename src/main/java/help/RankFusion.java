@@ -0,0 +1,256 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Fusion of many rankings of the same query into one ranking.
+ * Methods:
+ * (1) RRF:     score(d) = sum over rankings of 1 / (k + rank of d), ranks starting at 1.
+ * (2) CombSUM: score(d) = sum over rankings of the score of d, min-max normalized per ranking.
+ * (3) CombMNZ: CombSUM times the number of rankings which contain d.
+ * (4) Borda:   score(d) = sum over rankings of (length of the ranking - rank of d + 1).
+ * A document missing from a ranking gets nothing from it.
+ * The documents of a query are interned to ints and the scores kept in primitive arrays, so fusing a query costs a
+ * hash lookup per (ranking, document) and a sort. The queries of a run are fused in parallel and written in order,
+ * a block of queries at a time.
+ * Rankings are read from TREC run files: either one ranking per (run file, query), or, with groupByQuery, one ranking
+ * per (run file, query+entity) grouped by query, as in a support passage run.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class RankFusion {
+    private final static int BLOCK_SIZE = 1024;
+
+    public enum Method { RRF, COMBSUM, COMBMNZ, BORDA }
+
+    private final Method method;
+    private final double k;
+
+    /**
+     * One ranking: documents in rank order with their scores.
+     */
+    public static class Ranking {
+        private final List<String> docs = new ArrayList<>();
+        private double[] scores = new double[16];
+
+        /**
+         * Add the next document of the ranking.
+         * @param doc String Document ID
+         * @param score Double Score of the document in the ranking.
+         */
+
+        public void add(String doc, double score) {
+            if (docs.size() == scores.length) {
+                scores = Arrays.copyOf(scores, scores.length * 2);
+            }
+            scores[docs.size()] = score;
+            docs.add(doc);
+        }
+
+        public int size() {
+            return docs.size();
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param method Method Fusion method.
+     * @param k Double Constant of RRF (60 in the original paper; 0 gives the sum of reciprocal ranks). Not used by
+     *          the other methods.
+     */
+
+    public RankFusion(@NotNull Method method, double k) {
+        this.method = method;
+        this.k = k;
+    }
+
+    /**
+     * Fuse the rankings of one query.
+     * @param rankings List Rankings of the query.
+     * @return List Fused ranking: (document, score) in decreasing order of score; ties in the order the documents were
+     * first seen.
+     */
+
+    @NotNull
+    public List<Map.Entry<String, Double>> fuse(@NotNull List<Ranking> rankings) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> docs = new ArrayList<>();
+        double[] scores = new double[16];
+        int[] counts = new int[16];
+
+        for (Ranking ranking : rankings) {
+            int n = ranking.size();
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            if (method == Method.COMBSUM || method == Method.COMBMNZ) {
+                for (int r = 0; r < n; r++) {
+                    min = Math.min(min, ranking.scores[r]);
+                    max = Math.max(max, ranking.scores[r]);
+                }
+            }
+            for (int r = 0; r < n; r++) {
+                String doc = ranking.docs.get(r);
+                Integer id = ids.get(doc);
+                if (id == null) {
+                    id = docs.size();
+                    ids.put(doc, id);
+                    docs.add(doc);
+                    if (id == scores.length) {
+                        scores = Arrays.copyOf(scores, id * 2);
+                        counts = Arrays.copyOf(counts, id * 2);
+                    }
+                }
+                switch (method) {
+                    case RRF:
+                        scores[id] += 1.0d / (k + r + 1);
+                        break;
+                    case COMBSUM:
+                    case COMBMNZ:
+                        scores[id] += max > min ? (ranking.scores[r] - min) / (max - min) : 1.0d;
+                        break;
+                    case BORDA:
+                        scores[id] += n - r;
+                        break;
+                }
+                counts[id]++;
+            }
+        }
+        if (method == Method.COMBMNZ) {
+            for (int id = 0; id < docs.size(); id++) {
+                scores[id] *= counts[id];
+            }
+        }
+
+        final double[] s = scores;
+        // Stable sort, so ties keep the order the documents were first seen
+        List<Integer> order = IntStream.range(0, docs.size()).boxed()
+                .sorted((i, j) -> Double.compare(s[j], s[i]))
+                .collect(Collectors.toList());
+        List<Map.Entry<String, Double>> fused = new ArrayList<>(order.size());
+        for (int id : order) {
+            fused.add(new AbstractMap.SimpleEntry<>(docs.get(id), s[id]));
+        }
+        return fused;
+    }
+
+    /**
+     * Fuse the rankings of every query and write the fused run.
+     * @param runs Map Query -> rankings of the query (see readRuns()).
+     * @param outputFilePath String Path to the run file to write (appended to, as Utilities.writeFile() does).
+     * @param runName String Name of the run.
+     */
+
+    public void fuse(@NotNull Map<String, List<Ranking>> runs, String outputFilePath, String runName) {
+        List<String> queries = new ArrayList<>(runs.keySet());
+        for (int start = 0; start < queries.size(); start += BLOCK_SIZE) {
+            List<String> block = queries.subList(start, Math.min(queries.size(), start + BLOCK_SIZE));
+            // The stream keeps the order of the queries
+            List<String> runStrings = block.parallelStream()
+                    .flatMap(queryId -> makeRunStrings(queryId, fuse(runs.get(queryId)), runName).stream())
+                    .collect(Collectors.toList());
+            Utilities.writeFile(runStrings, outputFilePath);
+        }
+    }
+
+    @NotNull
+    private static List<String> makeRunStrings(String queryId,
+                                               @NotNull List<Map.Entry<String, Double>> fused,
+                                               String runName) {
+        List<String> runStrings = new ArrayList<>(fused.size());
+        int rank = 1;
+        for (Map.Entry<String, Double> entry : fused) {
+            runStrings.add(queryId + " Q0 " + entry.getKey() + " " + rank++ + " " + entry.getValue() + " " + runName);
+        }
+        return runStrings;
+    }
+
+    /**
+     * Read the rankings of run files.
+     * @param runFiles List Paths to the run files.
+     * @param groupByQuery Boolean False: one ranking per (run file, query ID). True: the query ID of the run file is
+     *                     query+entity; one ranking per (run file, query+entity), grouped by query.
+     * @return Map Query -> rankings of the query, in the order of the run files.
+     */
+
+    @NotNull
+    public static LinkedHashMap<String, List<Ranking>> readRuns(@NotNull List<String> runFiles, boolean groupByQuery) {
+        LinkedHashMap<String, List<Ranking>> runs = new LinkedHashMap<>();
+        for (String runFile : runFiles) {
+            Map<String, Ranking> rankings = new HashMap<>();
+            try (BufferedReader in = new BufferedReader(new FileReader(runFile))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] fields = line.split(" ");
+                    if (fields.length < 5) {
+                        continue;
+                    }
+                    String rankingID = fields[0];
+                    String queryID = groupByQuery ? rankingID.split("\\+")[0] : rankingID;
+                    Ranking ranking = rankings.get(rankingID);
+                    if (ranking == null) {
+                        ranking = new Ranking();
+                        rankings.put(rankingID, ranking);
+                        runs.computeIfAbsent(queryID, q -> new ArrayList<>()).add(ranking);
+                    }
+                    ranking.add(fields[2], Double.parseDouble(fields[4]));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Parse a method.
+     * @param spec String One of: rrf, rrf:k, combsum, combmnz, borda
+     * @return RankFusion
+     */
+
+    @NotNull
+    public static RankFusion parse(@NotNull String spec) {
+        String[] parts = spec.toLowerCase().split(":");
+        switch (parts[0]) {
+            case "rrf":
+                return new RankFusion(Method.RRF, parts.length > 1 ? Double.parseDouble(parts[1]) : 60.0d);
+            case "combsum":
+                return new RankFusion(Method.COMBSUM, 0.0d);
+            case "combmnz":
+                return new RankFusion(Method.COMBMNZ, 0.0d);
+            case "borda":
+                return new RankFusion(Method.BORDA, 0.0d);
+            default:
+                throw new IllegalArgumentException("Bad fusion method: " + spec
+                        + " (use rrf, rrf:k, combsum, combmnz or borda)");
+        }
+    }
+
+    /**
+     * Main method.
+     * Usage: RankFusion rrf|rrf:k|combsum|combmnz|borda outputFile runName runFile1 runFile2 ...
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) {
+        RankFusion rankFusion = parse(args[0]);
+        String outputFilePath = args[1];
+        String runName = args[2];
+        List<String> runFiles = Arrays.asList(args).subList(3, args.length);
+
+        System.out.print("Reading run files...");
+        LinkedHashMap<String, List<Ranking>> runs = readRuns(runFiles, false);
+        System.out.println("[Done].");
+
+        System.out.print("Fusing...");
+        rankFusion.fuse(runs, outputFilePath, runName);
+        System.out.println("[Done].");
+        System.out.println("Run file written at: " + outputFilePath);
+    }
+}
@@ -0,0 +1,82 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Options of the parallel runs, parsed off the command line arguments.
+ * Options:
+ * (1) --sections:  One query per section path instead of one query per page.
+ * (2) --threads N: Number of worker threads (default: number of processors).
+ * The options may appear anywhere in the arguments; the other arguments keep their order.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class RunOptions {
+    private final boolean useSections;
+    private final int numThreads;
+    private final String[] args;
+
+    /**
+     * Constructor.
+     * @param args String[] Command line arguments.
+     */
+
+    public RunOptions(@NotNull String[] args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        useSections = argList.remove("--sections");
+        int t = argList.indexOf("--threads");
+        if (t >= 0) {
+            numThreads = Integer.parseInt(argList.remove(t + 1));
+            argList.remove(t);
+        } else {
+            numThreads = Runtime.getRuntime().availableProcessors();
+        }
+        this.args = argList.toArray(new String[0]);
+    }
+
+    /**
+     * Whether --sections was given.
+     * @return Boolean
+     */
+
+    public boolean useSections() {
+        return useSections;
+    }
+
+    /**
+     * Number of worker threads.
+     * @return Integer
+     */
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * The command line arguments without the options.
+     * @return String[]
+     */
+
+    @NotNull
+    public String[] getArgs() {
+        return args;
+    }
+
+    /**
+     * Main method.
+     * Prints the parsed options.
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) {
+        RunOptions options = new RunOptions(args);
+        System.out.println("Queries: " + (options.useSections() ? "Section paths" : "Pages")
+                + ", threads: " + options.getNumThreads());
+        System.out.println("Arguments: " + Arrays.toString(options.getArgs()));
+    }
+}
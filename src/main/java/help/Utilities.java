@@ -1,10 +1,8 @@
 package help;
-import lucene.Index;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
-import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
@@ -142,6 +140,12 @@ public class Utilities {
         return list.toArray(new String[list.size()]);
     }
 
+    // Memo caches of process() and unprocess(). Entity ids repeat a lot within and across queries.
+    private final static int CACHE_SIZE = Integer.getInteger("utilities.cache.size", 1 << 16);
+    private final static BoundedCache<String, String> PROCESSED = new BoundedCache<>(CACHE_SIZE, Utilities::toProcessed);
+    private final static BoundedCache<String, String> UNPROCESSED = new BoundedCache<>(CACHE_SIZE, Utilities::toUnprocessed);
+    private final static ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
     /**
      * Convert an entity id to lowercase after removing the %20 and enwiki:
      * @param entityID String
@@ -149,9 +153,7 @@ public class Utilities {
      */
 
     public static String process(String entityID) {
-        entityID = entityID.substring(entityID.indexOf(":")+1);
-        entityID = entityID.replaceAll("%20", "_").toLowerCase();
-        return entityID;
+        return PROCESSED.get(entityID);
     }
 
     /**
@@ -161,41 +163,87 @@ public class Utilities {
      */
     public static ArrayList<String> process(@NotNull List<String> entity)
     {
-        ArrayList<String> list = new ArrayList<>();
+        ArrayList<String> list = new ArrayList<>(entity.size());
         for(String s : entity)
         {
-            s = s.substring(s.indexOf(":")+1);
-            s = s.replaceAll("%20", "_").toLowerCase();
-            list.add(s);
+            list.add(PROCESSED.get(s));
         }
         return list;
     }
 
+    /**
+     * Convert an entity id from the processed form (e.g., "barack_obama") back to the form of the run files
+     * (e.g., "enwiki:Barack%20Obama").
+     * @param e String
+     * @return String
+     */
+
     @NotNull
     public static String unprocess(@NotNull String e) {
-        String[] arr = e.split("_");
-        StringBuilder sb = new StringBuilder();
-        sb.append("enwiki:");
-
-        for (String s : arr) {
-            sb.append(Character.toUpperCase(s.charAt(0)))
-                    .append(s.substring(1))
-                    .append(" ");
-        }
-        String s = sb.toString().trim();
-        return s.replaceAll(" ", "%20");
+        return UNPROCESSED.get(e);
     }
 
     @NotNull
     @Contract(pure = true)
     public static ArrayList<String> unprocess(@NotNull List<String> entityList) {
-        ArrayList<String> list = new ArrayList<>();
+        ArrayList<String> list = new ArrayList<>(entityList.size());
         for (String e : entityList) {
-            list.add(unprocess(e));
+            list.add(UNPROCESSED.get(e));
         }
         return list;
     }
 
+    /**
+     * Remove everything up to the first ':', replace "%20" with '_' and lower-case, in one scan.
+     */
+
+    @NotNull
+    private static String toProcessed(@NotNull String entityID) {
+        int start = entityID.indexOf(':') + 1;
+        int pct = entityID.indexOf("%20", start);
+        if (pct < 0) {
+            return entityID.substring(start).toLowerCase();
+        }
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        int from = start;
+        for (; pct >= 0; pct = entityID.indexOf("%20", from)) {
+            sb.append(entityID, from, pct).append('_');
+            from = pct + 3;
+        }
+        sb.append(entityID, from, entityID.length());
+        return sb.toString().toLowerCase();
+    }
+
+    /**
+     * Split at '_', upper-case the first letter of every part, join the parts with "%20" and prefix "enwiki:",
+     * in one scan.
+     */
+
+    @NotNull
+    private static String toUnprocessed(@NotNull String e) {
+        // Trailing '_' make no part and trailing whitespace is dropped
+        int end = e.length();
+        while (end > 0 && (e.charAt(end - 1) == '_' || e.charAt(end - 1) <= ' ')) {
+            end--;
+        }
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        sb.append("enwiki:");
+        boolean startOfPart = true;
+        for (int i = 0; i < end; i++) {
+            char c = e.charAt(i);
+            if (c == '_' || c == ' ') {
+                sb.append("%20");
+                startOfPart = c == '_';
+            } else {
+                sb.append(startOfPart ? Character.toUpperCase(c) : c);
+                startOfPart = false;
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Method to find the frequency of an entity in the list of entities.
      * @param e Entity to search
@@ -231,6 +279,8 @@ public class Utilities {
 
     /**
      * Method to create a Pseudo-Document for an entity.
+     * The candidate paragraphs are fetched with one batched lookup. To create the pseudo-documents of many entities
+     * for the same query, use a {@link QueryContext} so that the paragraphs are fetched only once.
      * @param entity String EntityID
      * @param paraList ArrayList List of paragraphs relevant for query
      * @param searcher IndexSearcher
@@ -239,42 +289,7 @@ public class Utilities {
 
     @Nullable
     public static PseudoDocument createPseudoDocument(String entity, @NotNull ArrayList<String> paraList, IndexSearcher searcher) {
-        ArrayList<Document> documentList = new ArrayList<>();
-        ArrayList<String> pseudoDocEntityList = new ArrayList<>();
-        // Get the list of paragraphs relevant for the query
-        // For every paragraph in the list of paragraphs relevant for the query do
-        for (String paraId : paraList) {
-            try {
-                // Get the document corresponding to the paragraph from the lucene index
-                Document doc = Index.Search.searchIndex("id", paraId, searcher);
-                // Get the entities in the paragraph
-                assert doc != null;
-                String[] entityList = Utilities.clean(doc.get("entity").split(" "));
-                // Make an ArrayList from the String array
-                ArrayList<String> pEntList = new ArrayList<>(Arrays.asList(entityList));
-                // If the document does not have any entities then ignore
-                if (pEntList.isEmpty()) {
-                    continue;
-                }
-                // If the entity is present in the paragraph
-                if (pEntList.contains(Utilities.process(entity))) {
-                    // Add it to the pseudo document
-                    documentList.add(doc);
-                    // Add all the entities to the pseudo document entity list
-                    pseudoDocEntityList.addAll(pEntList);
-                }
-
-            } catch (IOException | ParseException e) {
-                e.printStackTrace();
-            }
-
-        }
-
-        // If there are no documents in the pseudo-document
-        if (documentList.size() == 0) {
-            return null;
-        }
-        return new PseudoDocument(documentList, entity, pseudoDocEntityList);
+        return new QueryContext(paraList, searcher).getPseudoDocument(entity);
     }
 
     /**
@@ -290,17 +305,8 @@ public class Utilities {
 
     }
     public static ArrayList<PseudoDocument> getPseudoDocs(@NotNull ArrayList<String> entityList, ArrayList<String> paraList, IndexSearcher searcher) {
-        ArrayList<PseudoDocument> pseudoDocuments = new ArrayList<>();
-        // For every entity in this list of relevant entities do
-        for (String entityId : entityList) {
-
-            // Create a pseudo-document for the entity
-            PseudoDocument d = createPseudoDocument(entityId, paraList, searcher);
-            if (d != null) {
-                pseudoDocuments.add(d);
-            }
-        }
-        return pseudoDocuments;
+        // Fetch the paragraphs once for all entities
+        return new QueryContext(paraList, searcher).getPseudoDocuments(entityList, false);
     }
     /**
      * Converts a PseudoDocument to a Lucene Document.
@@ -0,0 +1,506 @@
+package lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Per-document term frequencies of a field, and scoring of weighted term vectors against given documents from them.
+ * Scoring a few candidate paragraphs by re-analyzing their stored text (or by indexing them again in a RAMIndex) costs
+ * an analysis per paragraph. Here, the (term, tf) pairs of a paragraph are read directly, and the score of a term is
+ * computed by the similarity of the searcher from the term statistics and the norms of the index, so the scores are
+ * the same as those of a BooleanQuery of boosted TermQuerys over the index.
+ * The term frequencies come from either:
+ * (1) the term vectors of the field, if the index was built with them (see Index.Build.setStoreTermVectors()), or
+ * (2) a separate forward index built once from an existing index (see build()), made of three files:
+ *     PATH.fst:     Lucene FST mapping every term of the field to its ordinal (its rank in the terms dictionary).
+ *     PATH.data:    For every document, the number of distinct terms followed by the (ordinal, tf) pairs, sorted by
+ *                   ordinal, delta-encoded with VLongs. A record never crosses a chunk of the memory map (1 GB).
+ *     PATH.offsets: The offset (long) of the record of every document in PATH.data, plus the end offset.
+ *     The data and offsets files are memory-mapped, so the forward index opens instantly and may be read from many
+ *     threads at once. The docIDs are those of the index it was built from; rebuild it if the index changes.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class ForwardIndex implements Closeable {
+    private final static int CHUNK_BITS = 30;
+    private final static long CHUNK_SIZE = 1L << CHUNK_BITS;
+
+    private final IndexSearcher searcher;
+    private final String field;
+    private final List<LeafReaderContext> leaves;
+    // Null when reading the term vectors
+    @Nullable private final FST<Long> fst;
+    @Nullable private final MappedByteBuffer[] data;
+    @Nullable private final MappedByteBuffer[] offsets;
+    private final List<FileChannel> channels;
+
+    private ForwardIndex(@NotNull IndexSearcher searcher,
+                         String field,
+                         @Nullable FST<Long> fst,
+                         @Nullable MappedByteBuffer[] data,
+                         @Nullable MappedByteBuffer[] offsets,
+                         @NotNull List<FileChannel> channels) {
+        this.searcher = searcher;
+        this.field = field;
+        this.leaves = searcher.getIndexReader().leaves();
+        this.fst = fst;
+        this.data = data;
+        this.offsets = offsets;
+        this.channels = channels;
+    }
+
+    /**
+     * Read the term frequencies from the term vectors of the field.
+     * @param searcher IndexSearcher Searcher of an index with term vectors for the field.
+     * @param field String Field
+     * @return ForwardIndex
+     */
+
+    @NotNull
+    public static ForwardIndex fromTermVectors(@NotNull IndexSearcher searcher, String field) {
+        return new ForwardIndex(searcher, field, null, null, null, Collections.emptyList());
+    }
+
+    /**
+     * Open a forward index built with build().
+     * @param path String Path of the forward index (without extension).
+     * @param searcher IndexSearcher Searcher of the index the forward index was built from.
+     * @param field String Field the forward index was built for.
+     * @return ForwardIndex
+     * @throws IOException If the files could not be read.
+     */
+
+    @NotNull
+    public static ForwardIndex open(String path, @NotNull IndexSearcher searcher, String field) throws IOException {
+        FST<Long> fst = FST.read(Paths.get(path + ".fst"), PositiveIntOutputs.getSingleton());
+        List<FileChannel> channels = new ArrayList<>();
+        MappedByteBuffer[] data = map(path + ".data", channels);
+        MappedByteBuffer[] offsets = map(path + ".offsets", channels);
+        long expected = 8L * (searcher.getIndexReader().maxDoc() + 1);
+        if (channels.get(1).size() != expected) {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+            throw new IllegalStateException("Forward index " + path + " was not built from this index");
+        }
+        return new ForwardIndex(searcher, field, fst, data, offsets, channels);
+    }
+
+    @NotNull
+    private static MappedByteBuffer[] map(String file, @NotNull List<FileChannel> channels) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        channels.add(channel);
+        long size = channel.size();
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_BITS;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+        }
+        return chunks;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    /**
+     * A weighted term vector prepared for scoring: the similarity weights of its terms (and their ordinals).
+     */
+    private class PreparedQuery {
+        private final BytesRef[] terms;
+        private final Similarity.SimWeight[] weights;
+        // Ordinals of the terms in increasing order, and the index (in terms) of each
+        private final long[] ordinals;
+        private final int[] order;
+        // Scorers of every (term, leaf), made when first needed
+        private final Similarity.SimScorer[][] scorers;
+        private final Similarity similarity = searcher.getSimilarity(true);
+
+        private PreparedQuery(@NotNull Map<BytesRef, Float> termWeights) throws IOException {
+            CollectionStatistics collectionStats = searcher.collectionStatistics(field);
+            IndexReaderContext topContext = searcher.getTopReaderContext();
+            List<BytesRef> termList = new ArrayList<>();
+            List<Similarity.SimWeight> weightList = new ArrayList<>();
+            List<long[]> ordinalList = new ArrayList<>();
+            for (Map.Entry<BytesRef, Float> entry : termWeights.entrySet()) {
+                if (entry.getValue() == 0.0f) {
+                    continue;
+                }
+                Term term = new Term(field, entry.getKey());
+                TermContext termContext = TermContext.build(topContext, term);
+                if (termContext.docFreq() == 0) {
+                    continue;
+                }
+                Long ordinal = fst == null ? Long.valueOf(0L) : Util.get(fst, entry.getKey());
+                if (ordinal == null) {
+                    continue;
+                }
+                ordinalList.add(new long[]{ordinal, termList.size()});
+                termList.add(entry.getKey());
+                // As BoostQuery(TermQuery) does it
+                weightList.add(similarity.computeWeight(entry.getValue(), collectionStats,
+                        searcher.termStatistics(term, termContext)));
+            }
+            terms = termList.toArray(new BytesRef[0]);
+            weights = weightList.toArray(new Similarity.SimWeight[0]);
+            ordinalList.sort(Comparator.comparingLong(o -> o[0]));
+            ordinals = new long[ordinalList.size()];
+            order = new int[ordinalList.size()];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = ordinalList.get(i)[0];
+                order[i] = (int) ordinalList.get(i)[1];
+            }
+            scorers = new Similarity.SimScorer[terms.length][leaves.size()];
+        }
+
+        private Similarity.SimScorer scorer(int term, int leaf) throws IOException {
+            if (scorers[term][leaf] == null) {
+                scorers[term][leaf] = similarity.simScorer(weights[term], leaves.get(leaf));
+            }
+            return scorers[term][leaf];
+        }
+
+        /**
+         * Score a document (docID of the index).
+         */
+
+        private float score(int doc) throws IOException {
+            if (terms.length == 0) {
+                return 0.0f;
+            }
+            int leaf = ReaderUtil.subIndex(doc, leaves);
+            int docInLeaf = doc - leaves.get(leaf).docBase;
+            double score = 0.0d;
+
+            if (fst == null) {
+                Terms termVector = leaves.get(leaf).reader().getTermVector(docInLeaf, field);
+                if (termVector == null) {
+                    return 0.0f;
+                }
+                TermsEnum termsEnum = termVector.iterator();
+                for (int t = 0; t < terms.length; t++) {
+                    if (termsEnum.seekExact(terms[t])) {
+                        score += scorer(t, leaf).score(docInLeaf, termsEnum.totalTermFreq());
+                    }
+                }
+                return (float) score;
+            }
+
+            // Merge the (sorted) ordinals of the document with those of the query
+            long offset = offset(doc);
+            MappedByteBuffer b = data[(int) (offset >>> CHUNK_BITS)];
+            int[] p = {(int) (offset & (CHUNK_SIZE - 1))};
+            int n = (int) readVLong(b, p);
+            long ordinal = 0;
+            int q = 0;
+            for (int i = 0; i < n && q < ordinals.length; i++) {
+                ordinal += readVLong(b, p);
+                int tf = (int) readVLong(b, p);
+                while (q < ordinals.length && ordinals[q] < ordinal) {
+                    q++;
+                }
+                if (q < ordinals.length && ordinals[q] == ordinal) {
+                    score += scorer(order[q], leaf).score(docInLeaf, tf);
+                }
+            }
+            return (float) score;
+        }
+    }
+
+    private long offset(int doc) {
+        long position = 8L * doc;
+        return Objects.requireNonNull(offsets)[(int) (position >>> CHUNK_BITS)].getLong((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    private static long readVLong(@NotNull MappedByteBuffer b, @NotNull int[] p) {
+        int v = b.get(p[0]++);
+        long value = v & 0x7F;
+        for (int shift = 7; v < 0; shift += 7) {
+            v = b.get(p[0]++);
+            value |= (long) (v & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * Score a weighted term vector against documents.
+     * @param termWeights Map Analyzed term -> weight (boost) of the term.
+     * @param docs int[] DocIDs (of the index) of the documents.
+     * @return float[] Score of every document, as the disjunction of the boosted terms would score it.
+     * @throws IOException Exception
+     */
+
+    @NotNull
+    public float[] score(@NotNull Map<BytesRef, Float> termWeights, @NotNull int[] docs) throws IOException {
+        PreparedQuery query = new PreparedQuery(termWeights);
+        float[] scores = new float[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            scores[i] = query.score(docs[i]);
+        }
+        return scores;
+    }
+
+    /**
+     * Rank documents with a weighted term vector.
+     * @param termWeights Map Analyzed term -> weight (boost) of the term.
+     * @param candidates BitSet DocIDs (of the index) of the documents to rank (see Index.Search.searchDocIds()).
+     * @param n Integer Number of top hits.
+     * @return TopDocs Top documents with a score > 0 (earlier docs win ties).
+     * @throws IOException Exception
+     */
+
+    @NotNull
+    public TopDocs search(@NotNull Map<BytesRef, Float> termWeights, @NotNull BitSet candidates, int n)
+            throws IOException {
+        PreparedQuery query = new PreparedQuery(termWeights);
+        Bits liveDocs = MultiFields.getLiveDocs(searcher.getIndexReader());
+        List<ScoreDoc> hits = new ArrayList<>();
+        for (int doc = candidates.nextSetBit(0); doc >= 0; doc = candidates.nextSetBit(doc + 1)) {
+            if (liveDocs != null && !liveDocs.get(doc)) {
+                continue;
+            }
+            float score = query.score(doc);
+            if (score > 0) {
+                hits.add(new ScoreDoc(doc, score));
+            }
+        }
+        hits.sort((h1, h2) -> h1.score != h2.score ? Float.compare(h2.score, h1.score) : Integer.compare(h1.doc, h2.doc));
+        ScoreDoc[] scoreDocs = hits.subList(0, Math.min(n, hits.size())).toArray(new ScoreDoc[0]);
+        return new TopDocs(hits.size(), scoreDocs, scoreDocs.length == 0 ? Float.NaN : scoreDocs[0].score);
+    }
+
+    /**
+     * Get the term frequencies of a document.
+     * @param doc Integer DocID (of the index).
+     * @return Map Term -> frequency in the document, in the order of the terms dictionary.
+     * @throws IOException Exception
+     */
+
+    @NotNull
+    public Map<BytesRef, Integer> getTermFrequencies(int doc) throws IOException {
+        Map<BytesRef, Integer> frequencies = new LinkedHashMap<>();
+        if (fst == null) {
+            Terms termVector = searcher.getIndexReader().getTermVector(doc, field);
+            if (termVector != null) {
+                TermsEnum termsEnum = termVector.iterator();
+                BytesRef term;
+                while ((term = termsEnum.next()) != null) {
+                    frequencies.put(BytesRef.deepCopyOf(term), (int) termsEnum.totalTermFreq());
+                }
+            }
+            return frequencies;
+        }
+        long offset = offset(doc);
+        MappedByteBuffer b = Objects.requireNonNull(data)[(int) (offset >>> CHUNK_BITS)];
+        int[] p = {(int) (offset & (CHUNK_SIZE - 1))};
+        int n = (int) readVLong(b, p);
+        long ordinal = 0;
+        BytesRefBuilder scratch = new BytesRefBuilder();
+        for (int i = 0; i < n; i++) {
+            ordinal += readVLong(b, p);
+            int tf = (int) readVLong(b, p);
+            IntsRef input = Util.getByOutput(fst, ordinal);
+            if (input != null) {
+                frequencies.put(BytesRef.deepCopyOf(Util.toBytesRef(input, scratch)), tf);
+            }
+        }
+        return frequencies;
+    }
+
+    /**
+     * Build a forward index of a field of an index.
+     * The term frequencies of a document are read from its term vector if it has one; otherwise its stored text is
+     * analyzed (once, here) with the analyzer the index was built with.
+     * @param indexDir String Path to the index directory.
+     * @param field String Field (must be stored if the index has no term vectors for it).
+     * @param analyzer Analyzer Analyzer the index was built with.
+     * @param path String Path of the forward index to build (without extension).
+     * @throws IOException If a file could not be read or written.
+     */
+
+    public static void build(String indexDir, String field, Analyzer analyzer, String path) throws IOException {
+        try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(indexDir)))) {
+            Terms terms = MultiFields.getTerms(reader, field);
+            if (terms == null) {
+                throw new IllegalArgumentException("No terms in field " + field);
+            }
+
+            // Terms are enumerated in sorted order, as the FST builder needs them
+            System.out.print("Building FST...");
+            Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+            IntsRefBuilder scratch = new IntsRefBuilder();
+            TermsEnum termsEnum = terms.iterator();
+            BytesRef term;
+            long numTerms = 0;
+            while ((term = termsEnum.next()) != null) {
+                builder.add(Util.toIntsRef(term, scratch), numTerms++);
+            }
+            FST<Long> fst = builder.finish();
+            fst.save(Paths.get(path + ".fst"));
+            System.out.println("[Done].");
+            System.out.println("Terms: " + numTerms + ", FST size: " + fst.ramBytesUsed() + " bytes");
+
+            System.out.print("Writing documents...");
+            Bits liveDocs = MultiFields.getLiveDocs(reader);
+            long position = 0;
+            int analyzed = 0;
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            long[] ordinals = new long[64];
+            try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                         new FileOutputStream(path + ".data"), 1 << 16));
+                 DataOutputStream offsets = new DataOutputStream(new BufferedOutputStream(
+                         new FileOutputStream(path + ".offsets"), 1 << 16))) {
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    int n = 0;
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        Terms termVector = reader.getTermVector(doc, field);
+                        if (termVector != null) {
+                            // Term vectors are sorted like the terms dictionary
+                            TermsEnum tv = termVector.iterator();
+                            while ((term = tv.next()) != null) {
+                                Long ordinal = Util.get(fst, term);
+                                if (ordinal == null) {
+                                    continue;
+                                }
+                                int tf = (int) tv.totalTermFreq();
+                                if (n + tf > ordinals.length) {
+                                    ordinals = Arrays.copyOf(ordinals, Math.max(n + tf, ordinals.length * 2));
+                                }
+                                for (int i = 0; i < tf; i++) {
+                                    ordinals[n++] = ordinal;
+                                }
+                            }
+                        } else {
+                            String text = reader.document(doc).get(field);
+                            if (text != null) {
+                                analyzed++;
+                                try (TokenStream tokenStream = analyzer.tokenStream(field, text)) {
+                                    TermToBytesRefAttribute termAtt = tokenStream.addAttribute(TermToBytesRefAttribute.class);
+                                    tokenStream.reset();
+                                    while (tokenStream.incrementToken()) {
+                                        Long ordinal = Util.get(fst, termAtt.getBytesRef());
+                                        if (ordinal == null) {
+                                            continue;
+                                        }
+                                        if (n == ordinals.length) {
+                                            ordinals = Arrays.copyOf(ordinals, n * 2);
+                                        }
+                                        ordinals[n++] = ordinal;
+                                    }
+                                    tokenStream.end();
+                                }
+                            }
+                        }
+                    }
+                    encode(ordinals, n, record);
+
+                    // A record never crosses a chunk of the memory map
+                    long room = CHUNK_SIZE - (position & (CHUNK_SIZE - 1));
+                    if (record.size() > room) {
+                        for (long i = 0; i < room; i++) {
+                            data.write(0);
+                        }
+                        position += room;
+                    }
+                    offsets.writeLong(position);
+                    record.writeTo(data);
+                    position += record.size();
+                }
+                offsets.writeLong(position);
+            }
+            System.out.println("[Done].");
+            System.out.println("Documents: " + reader.maxDoc() + " (analyzed: " + analyzed + "), data size: "
+                    + position + " bytes");
+        }
+    }
+
+    /**
+     * Encode term ordinals (one per occurrence) as the number of distinct ordinals followed by the
+     * (delta of ordinal, tf) pairs in increasing order of ordinal.
+     */
+
+    private static void encode(@NotNull long[] ordinals, int n, @NotNull ByteArrayOutputStream record) {
+        Arrays.sort(ordinals, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || ordinals[i] != ordinals[i - 1]) {
+                distinct++;
+            }
+        }
+        record.reset();
+        writeVLong(record, distinct);
+        long previous = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && ordinals[j] == ordinals[i]) {
+                j++;
+            }
+            writeVLong(record, ordinals[i] - previous);
+            writeVLong(record, j - i);
+            previous = ordinals[i];
+            i = j;
+        }
+    }
+
+    private static void writeVLong(@NotNull ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    /**
+     * Main method.
+     * Usage: ForwardIndex build indexDir field std|eng forwardIndex
+     *        ForwardIndex get indexDir forwardIndex field docID
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) throws IOException {
+        if ("build".equals(args[0])) {
+            Analyzer analyzer = "eng".equals(args[3]) ? new EnglishAnalyzer() : new StandardAnalyzer();
+            build(args[1], args[2], analyzer, args[4]);
+            System.out.println("Forward index written at: " + args[4]);
+        } else if ("get".equals(args[0])) {
+            try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(args[1])));
+                 ForwardIndex forwardIndex = ForwardIndex.open(args[2], new IndexSearcher(reader), args[3])) {
+                for (Map.Entry<BytesRef, Integer> entry
+                        : forwardIndex.getTermFrequencies(Integer.parseInt(args[4])).entrySet()) {
+                    System.out.println(entry.getKey().utf8ToString() + "\t" + entry.getValue());
+                }
+            }
+        } else {
+            System.err.println("Usage: ForwardIndex build indexDir field std|eng forwardIndex | get indexDir forwardIndex field docID");
+        }
+    }
+}
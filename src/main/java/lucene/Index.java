@@ -7,6 +7,7 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.*;
@@ -17,14 +18,20 @@ import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.StreamSupport;
 
 /**
@@ -59,6 +66,17 @@ public class Index
      */
     public  final static class Build
     {
+        /**
+         * Type of the "parabody" field when term vectors are stored: stored and tokenized, with term frequencies per
+         * document (see ForwardIndex.fromTermVectors())
+         */
+        private static final FieldType TEXT_WITH_TERM_VECTORS = new FieldType(TextField.TYPE_STORED);
+        static
+        {
+            TEXT_WITH_TERM_VECTORS.setStoreTermVectors(true);
+            TEXT_WITH_TERM_VECTORS.freeze();
+        }
+        private static boolean storeTermVectors = false;
         /**
          * Builds a Lucene index of paragraphs in CBOR_FILE in the directory pointed to by INDEX_DIR
          * @param INDEX_DIR String Directory to store index
@@ -73,6 +91,27 @@ public class Index
             COUNT = 0;
             pb = new ProgressBar("Progress",29794697 );
         }
+        /**
+         * Store term vectors for the "parabody" field of the documents indexed from now on
+         * Term vectors make the index larger, but let the term frequencies of a paragraph be read without
+         * analyzing its text again
+         * @param store Boolean Whether or not to store term vectors (default: no)
+         */
+        public static void setStoreTermVectors(boolean store)
+        {
+            storeTermVectors = store;
+        }
+        /**
+         * Create the "parabody" field with the given text
+         * @param text String
+         * @return Field A stored text field, with term vectors if setStoreTermVectors(true) was called
+         */
+        private static Field createTextField(String text)
+        {
+            return storeTermVectors
+                    ? new Field("parabody", text, TEXT_WITH_TERM_VECTORS)
+                    : new TextField("parabody", text, Field.Store.YES);
+        }
         /**
          * Create an IndexWriter object with the specified Analyzer
          * @param analyzer Analyzer Type of analyzer to use for building the index
@@ -100,7 +139,7 @@ public class Index
             COUNT++;
             Document doc = new Document();
             doc.add(new StringField("paraentity", entity, Field.Store.YES));
-            doc.add(new TextField("parabody", text, Field.Store.YES));
+            doc.add(createTextField(text));
             doc.add(new StringField("paraid", id, Field.Store.YES));
             System.out.println(id);
             return doc;
@@ -136,7 +175,7 @@ public class Index
             entity = null;
             paradoc.add(new StringField("paraid", para.getParaId(), Field.Store.YES));
             paradoc.add(new StringField("paraentity", entityString, Field.Store.YES));
-            paradoc.add(new TextField("parabody", para.getTextOnly(), Field.Store.YES));
+            paradoc.add(createTextField(para.getTextOnly()));
             System.out.println(para.getParaId());
 
             return paradoc;
@@ -409,6 +448,94 @@ public class Index
             }
             return null;
         }
+        /**
+         * Search the index for many values of a field at once using the given searcher instance
+         * Use this instead of calling searchIndex(field, query, searcher) in a loop, e.g., to fetch a batch of paragraphs
+         * by their ids: a single TermInSetQuery visits the terms dictionary once for the whole batch
+         * @param field String Field to search (must not be tokenized, e.g., "id")
+         * @param values Collection Values to search
+         * @param searcher IndexSearcher
+         * @return Map<String,Document> A map of (value,document) for the values found in the index
+         * @throws IOException
+         */
+        @NotNull
+        public static Map<String, Document> searchIndex(String field,
+                                                        @NotNull Collection<String> values,
+                                                        @NotNull IndexSearcher searcher)throws IOException
+        {
+            Map<String, Document> results = new HashMap<>();
+            if (values.isEmpty()) {
+                return results;
+            }
+            List<BytesRef> terms = new ArrayList<>(values.size());
+            for (String value : values) {
+                terms.add(new BytesRef(value));
+            }
+            Query q = new TermInSetQuery(field, terms);
+            // Every hit, not the top values.size(): a value indexed twice would otherwise push out another value
+            BitSet docIds = collectDocIds(q, searcher);
+            for (int doc = docIds.nextSetBit(0); doc >= 0; doc = docIds.nextSetBit(doc + 1)) {
+                Document d = searcher.doc(doc);
+                results.putIfAbsent(d.get(field), d);
+            }
+            return results;
+        }
+        /**
+         * Collect the docIDs of every document matching a query
+         * @param q Query
+         * @param searcher IndexSearcher
+         * @return BitSet The docIDs of the matching documents
+         * @throws IOException
+         */
+        @NotNull
+        private static BitSet collectDocIds(Query q, @NotNull IndexSearcher searcher) throws IOException
+        {
+            BitSet docIds = new BitSet();
+            searcher.search(q, new SimpleCollector() {
+                private int docBase;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) {
+                    docBase = context.docBase;
+                }
+
+                @Override
+                public void collect(int doc) {
+                    docIds.set(docBase + doc);
+                }
+
+                @Override
+                public boolean needsScores() {
+                    return false;
+                }
+            });
+            return docIds;
+        }
+        /**
+         * Find the docIDs of many values of a field at once using the given searcher instance
+         * Use this to restrict a search to a fixed set of documents, e.g., the candidate paragraphs of a query
+         * (see MultiQuerySearcher.setCandidates())
+         * @param field String Field to search (must not be tokenized, e.g., "id")
+         * @param values Collection Values to search
+         * @param searcher IndexSearcher
+         * @return BitSet The docIDs of the documents found in the index
+         * @throws IOException
+         */
+        @NotNull
+        public static BitSet searchDocIds(String field,
+                                          @NotNull Collection<String> values,
+                                          @NotNull IndexSearcher searcher)throws IOException
+        {
+            if (values.isEmpty()) {
+                return new BitSet();
+            }
+            List<BytesRef> terms = new ArrayList<>(values.size());
+            for (String value : values) {
+                terms.add(new BytesRef(value));
+            }
+            // Every hit, not the top values.size(): a value indexed twice would otherwise push out another value
+            return collectDocIds(new TermInSetQuery(field, terms), searcher);
+        }
         /**
          * Search the index for the given query in given field and return topmost n hits
          * @param field String Field to search
@@ -438,13 +565,25 @@ public class Index
     {
         return COUNT;
     }
-	/*public static void main(String[] args) throws IOException
-	{
-		String indexDir = args[0];
-		String cborDir = args[1];
-		System.out.println("Building index at location:"+indexDir);
-		new Index.Build(indexDir,cborDir);
-		Index.Build.createIndex(new StandardAnalyzer());
-		System.out.println("Number of paragraphs indexed = "+Index.getIndexSize());
-	}*/
+    /**
+     * Build a paragraph index
+     * Usage: Index indexDir cborFile [--term-vectors]
+     * --term-vectors stores term vectors for the "parabody" field, so that ForwardIndex.fromTermVectors() can read
+     * the term frequencies of a paragraph from the index
+     * @param args Command line arguments
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException
+    {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        boolean storeTermVectors = argList.remove("--term-vectors");
+        String indexDir = argList.get(0);
+        String cborDir = argList.get(1);
+        System.out.println("Building index at location:"+indexDir);
+        System.out.println("Storing term vectors: "+(storeTermVectors ? "Yes" : "No"));
+        new Index.Build(indexDir,cborDir);
+        Index.Build.setStoreTermVectors(storeTermVectors);
+        Index.Build.createIndex(new StandardAnalyzer());
+        System.out.println("Number of paragraphs indexed = "+Index.getIndexSize());
+    }
 }
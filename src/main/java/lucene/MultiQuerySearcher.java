@@ -0,0 +1,377 @@
+package lucene;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Evaluates many weighted term queries over the same field together.
+ * The queries of one query id (e.g., the expanded queries of all entities of the query) share many terms. Searched one
+ * by one, the postings of a shared term are read once per query. Here, every query is a slot; the postings of every
+ * distinct term are read once, document-at-a-time, and the score of the term in a document is added to every slot
+ * which has the term (multiplied by the weight of the term in the slot). Every slot keeps its own top-K.
+ * A slot is scored as the disjunction (BooleanQuery of SHOULD clauses) of its terms, each boosted by its weight, with
+ * the similarity of the slot (the similarity of the searcher by default). This relies on the score of a term being
+ * linear in its boost, which holds for BM25, LM-JM and LM-DS.
+ * Slots may have different similarities, e.g., the same query with BM25 and LM-JM for several lambdas: the term
+ * statistics are then computed once, and the score of a term in a document once per similarity.
+ * The search may be restricted to a set of candidate documents (e.g., the candidate paragraphs of the query): the
+ * postings are then advanced (skipped) from one candidate to the next, so the cost depends on the number of candidates
+ * rather than on the lengths of the postings.
+ * An instance is meant for one batch of queries (e.g. one query id) and is not thread-safe; the searcher may be shared.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class MultiQuerySearcher {
+    private final IndexSearcher searcher;
+    private final String field;
+    private final List<Map<BytesRef, Float>> queries = new ArrayList<>();
+    // Distinct similarities of the slots, and the index (in similarities) of the similarity of every slot
+    private final List<Similarity> similarities = new ArrayList<>();
+    private final List<Integer> slotSimilarities = new ArrayList<>();
+    // Candidate documents (docIDs of the index), null to search all documents
+    private BitSet candidates = null;
+    private int n;
+    private List<PriorityQueue<ScoreDoc>> hits;
+    private long[] totalHits;
+    // Score of every slot in the current document, and the slots which matched it
+    private double[] scores;
+    private int[] touched;
+    private boolean[] isTouched;
+    private int numTouched;
+
+    /**
+     * Slots having a term, with the weight of the term in each.
+     */
+    private static class TermSlots {
+        private int[] slots = new int[4];
+        private float[] weights = new float[4];
+        // Index of the similarity of every slot
+        private int[] similarities = new int[4];
+        private int size = 0;
+
+        private void add(int slot, float weight, int similarity) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+                similarities = Arrays.copyOf(similarities, size * 2);
+            }
+            slots[size] = slot;
+            weights[size] = weight;
+            similarities[size++] = similarity;
+        }
+    }
+
+    /**
+     * Postings of a term in one segment.
+     */
+    private static class Cursor {
+        private final PostingsEnum postings;
+        // Scorer of every similarity (null for the similarities of no slot of the term)
+        private final Similarity.SimScorer[] scorers;
+        private final TermSlots termSlots;
+        // Score of the term in the document scoredDocs[s] with similarity s
+        private final float[] scores;
+        private final int[] scoredDocs;
+        private int doc;
+
+        private Cursor(PostingsEnum postings, Similarity.SimScorer[] scorers, TermSlots termSlots) throws IOException {
+            this.postings = postings;
+            this.scorers = scorers;
+            this.termSlots = termSlots;
+            this.scores = new float[scorers.length];
+            this.scoredDocs = new int[scorers.length];
+            Arrays.fill(scoredDocs, -1);
+            this.doc = postings.nextDoc();
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param searcher IndexSearcher Searcher of the index.
+     * @param field String Field to search.
+     */
+
+    public MultiQuerySearcher(@NotNull IndexSearcher searcher, String field) {
+        this.searcher = searcher;
+        this.field = field;
+    }
+
+    /**
+     * Add a query.
+     * @param termWeights Map Analyzed term -> weight (boost) of the term. Terms with a weight of 0 are ignored.
+     * @return Integer Slot of the query; the results of the query are at this index of the array returned by search().
+     */
+
+    public int add(@NotNull Map<BytesRef, Float> termWeights) {
+        return add(termWeights, searcher.getSimilarity(true));
+    }
+
+    /**
+     * Add a query scored with a given similarity.
+     * @param termWeights Map Analyzed term -> weight (boost) of the term. Terms with a weight of 0 are ignored.
+     * @param similarity Similarity Similarity of the query. Must use the norms of the index (all similarities of
+     *                   Lucene 7 encode the norms the same way).
+     * @return Integer Slot of the query; the results of the query are at this index of the array returned by search().
+     */
+
+    public int add(@NotNull Map<BytesRef, Float> termWeights, @NotNull Similarity similarity) {
+        int s = 0;
+        while (s < similarities.size() && similarities.get(s) != similarity) {
+            s++;
+        }
+        if (s == similarities.size()) {
+            similarities.add(similarity);
+        }
+        queries.add(termWeights);
+        slotSimilarities.add(s);
+        return queries.size() - 1;
+    }
+
+    /**
+     * Restrict the search to a set of candidate documents.
+     * @param candidates BitSet DocIDs of the candidates (see Index.Search.searchDocIds()); null to search all documents.
+     */
+
+    public void setCandidates(@Nullable BitSet candidates) {
+        this.candidates = candidates;
+    }
+
+    /**
+     * Number of queries added.
+     * @return Integer
+     */
+
+    public int size() {
+        return queries.size();
+    }
+
+    /**
+     * Search all queries.
+     * @param n Integer Number of top hits per query.
+     * @return TopDocs[] Top hits of every query, in the order of the slots.
+     * @throws IOException Exception
+     */
+
+    @NotNull
+    public TopDocs[] search(int n) throws IOException {
+        int numSlots = queries.size();
+
+        // Invert the queries: term -> slots
+        Map<BytesRef, TermSlots> terms = new LinkedHashMap<>();
+        for (int slot = 0; slot < numSlots; slot++) {
+            for (Map.Entry<BytesRef, Float> entry : queries.get(slot).entrySet()) {
+                if (entry.getValue() != 0.0f) {
+                    terms.computeIfAbsent(entry.getKey(), k -> new TermSlots())
+                            .add(slot, entry.getValue(), slotSimilarities.get(slot));
+                }
+            }
+        }
+
+        // Statistics of every term over the whole index, as TermQuery computes them, and the weight of the term for
+        // every similarity of its slots
+        int numSimilarities = similarities.size();
+        CollectionStatistics collectionStats = searcher.collectionStatistics(field);
+        IndexReaderContext topContext = searcher.getTopReaderContext();
+        List<BytesRef> termList = new ArrayList<>();
+        List<TermContext> termContexts = new ArrayList<>();
+        List<Similarity.SimWeight[]> simWeights = new ArrayList<>();
+        for (Map.Entry<BytesRef, TermSlots> entry : terms.entrySet()) {
+            Term term = new Term(field, entry.getKey());
+            TermContext termContext = TermContext.build(topContext, term);
+            if (termContext.docFreq() == 0) {
+                continue;
+            }
+            TermStatistics termStats = searcher.termStatistics(term, termContext);
+            Similarity.SimWeight[] weights = new Similarity.SimWeight[numSimilarities];
+            TermSlots termSlots = entry.getValue();
+            for (int j = 0; j < termSlots.size; j++) {
+                int s = termSlots.similarities[j];
+                if (weights[s] == null) {
+                    weights[s] = similarities.get(s).computeWeight(1.0f, collectionStats, termStats);
+                }
+            }
+            termList.add(entry.getKey());
+            termContexts.add(termContext);
+            simWeights.add(weights);
+        }
+
+        this.n = n;
+        hits = new ArrayList<>(numSlots);
+        for (int slot = 0; slot < numSlots; slot++) {
+            // Worst hit at the head: lowest score, then highest doc (earlier docs win ties, as in TopScoreDocCollector)
+            hits.add(new PriorityQueue<>((h1, h2) -> h1.score != h2.score
+                    ? Float.compare(h1.score, h2.score)
+                    : Integer.compare(h2.doc, h1.doc)));
+        }
+        totalHits = new long[numSlots];
+        scores = new double[numSlots];
+        touched = new int[numSlots];
+        isTouched = new boolean[numSlots];
+        numTouched = 0;
+
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+            Terms fieldTerms = leaf.reader().terms(field);
+            if (fieldTerms == null) {
+                continue;
+            }
+            TermsEnum termsEnum = fieldTerms.iterator();
+            List<Cursor> cursors = new ArrayList<>();
+            for (int i = 0; i < termList.size(); i++) {
+                TermState state = termContexts.get(i).get(leaf.ord);
+                if (state == null) {
+                    continue;
+                }
+                termsEnum.seekExact(termList.get(i), state);
+                Similarity.SimWeight[] weights = simWeights.get(i);
+                Similarity.SimScorer[] scorers = new Similarity.SimScorer[numSimilarities];
+                for (int s = 0; s < numSimilarities; s++) {
+                    if (weights[s] != null) {
+                        scorers[s] = similarities.get(s).simScorer(weights[s], leaf);
+                    }
+                }
+                Cursor cursor = new Cursor(termsEnum.postings(null, PostingsEnum.FREQS), scorers,
+                        terms.get(termList.get(i)));
+                if (cursor.doc != DocIdSetIterator.NO_MORE_DOCS) {
+                    cursors.add(cursor);
+                }
+            }
+            if (candidates == null) {
+                searchAll(leaf, cursors);
+            } else {
+                searchCandidates(leaf, cursors);
+            }
+        }
+
+        TopDocs[] topDocs = new TopDocs[numSlots];
+        for (int slot = 0; slot < numSlots; slot++) {
+            ScoreDoc[] scoreDocs = hits.get(slot).toArray(new ScoreDoc[0]);
+            Arrays.sort(scoreDocs, (h1, h2) -> h1.score != h2.score
+                    ? Float.compare(h2.score, h1.score)
+                    : Integer.compare(h1.doc, h2.doc));
+            float maxScore = scoreDocs.length == 0 ? Float.NaN : scoreDocs[0].score;
+            topDocs[slot] = new TopDocs(totalHits[slot], scoreDocs, maxScore);
+        }
+        return topDocs;
+    }
+
+    /**
+     * Score every document of a segment which has at least one of the terms.
+     * @param leaf LeafReaderContext Segment
+     * @param cursorList List Postings of the terms in the segment.
+     * @throws IOException Exception
+     */
+
+    private void searchAll(@NotNull LeafReaderContext leaf, @NotNull List<Cursor> cursorList) throws IOException {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingInt(c -> c.doc));
+        cursors.addAll(cursorList);
+        Bits liveDocs = leaf.reader().getLiveDocs();
+
+        while (!cursors.isEmpty()) {
+            int doc = cursors.peek().doc;
+            boolean live = liveDocs == null || liveDocs.get(doc);
+            // Score every term of the document
+            while (!cursors.isEmpty() && cursors.peek().doc == doc) {
+                Cursor cursor = cursors.poll();
+                if (live) {
+                    score(cursor, doc);
+                }
+                cursor.doc = cursor.postings.nextDoc();
+                if (cursor.doc != DocIdSetIterator.NO_MORE_DOCS) {
+                    cursors.add(cursor);
+                }
+            }
+            collect(leaf.docBase + doc);
+        }
+    }
+
+    /**
+     * Score the candidate documents of a segment.
+     * @param leaf LeafReaderContext Segment
+     * @param cursors List Postings of the terms in the segment.
+     * @throws IOException Exception
+     */
+
+    private void searchCandidates(@NotNull LeafReaderContext leaf, @NotNull List<Cursor> cursors) throws IOException {
+        if (cursors.isEmpty()) {
+            return;
+        }
+        Bits liveDocs = leaf.reader().getLiveDocs();
+        int maxDoc = leaf.docBase + leaf.reader().maxDoc();
+
+        for (int d = candidates.nextSetBit(leaf.docBase); d >= 0 && d < maxDoc; d = candidates.nextSetBit(d + 1)) {
+            int doc = d - leaf.docBase;
+            if (liveDocs != null && !liveDocs.get(doc)) {
+                continue;
+            }
+            for (Cursor cursor : cursors) {
+                if (cursor.doc < doc) {
+                    cursor.doc = cursor.postings.advance(doc);
+                }
+                if (cursor.doc == doc) {
+                    score(cursor, doc);
+                }
+            }
+            collect(d);
+        }
+    }
+
+    /**
+     * Add the score of a term in a document to every slot which has the term.
+     * @param cursor Cursor Postings of the term, positioned on the document.
+     * @param doc Integer Document (in the segment).
+     * @throws IOException Exception
+     */
+
+    private void score(@NotNull Cursor cursor, int doc) throws IOException {
+        int freq = cursor.postings.freq();
+        TermSlots termSlots = cursor.termSlots;
+        for (int j = 0; j < termSlots.size; j++) {
+            int s = termSlots.similarities[j];
+            if (cursor.scoredDocs[s] != doc) {
+                cursor.scores[s] = cursor.scorers[s].score(doc, freq);
+                cursor.scoredDocs[s] = doc;
+            }
+            float score = cursor.scores[s];
+            int slot = termSlots.slots[j];
+            if (!isTouched[slot]) {
+                isTouched[slot] = true;
+                touched[numTouched++] = slot;
+            }
+            scores[slot] += (double) termSlots.weights[j] * score;
+        }
+    }
+
+    /**
+     * Collect a document in every slot it matched.
+     * @param doc Integer Document (in the index).
+     */
+
+    private void collect(int doc) {
+        for (int j = 0; j < numTouched; j++) {
+            int slot = touched[j];
+            collect(hits.get(slot), n, doc, (float) scores[slot]);
+            totalHits[slot]++;
+            scores[slot] = 0.0d;
+            isTouched[slot] = false;
+        }
+        numTouched = 0;
+    }
+
+    private static void collect(@NotNull PriorityQueue<ScoreDoc> hits, int n, int doc, float score) {
+        if (hits.size() < n) {
+            hits.add(new ScoreDoc(doc, score));
+        } else if (n > 0 && score > hits.peek().score) {
+            hits.poll();
+            hits.add(new ScoreDoc(doc, score));
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package salience;
 
-import api.SWATApi;
 import help.PseudoDocument;
+import help.QueryContext;
 import help.Utilities;
 import lucene.Index;
 import org.apache.lucene.document.Document;
@@ -15,7 +15,7 @@ import java.util.*;
  * Method: Score(p | e, q) = Score(p | q) * Score(e | p)
  * where   Score(p | q)    = normalized retrieval score of passage 'p' for the query 'q'
  *                          (obtained from the candidate passage ranking.
- *         Score(e | p)    = normalized salience score of entity 'e' for passage 'p' (obtained from SWAT).
+ *         Score(e | p)    = normalized salience score of entity 'e' for passage 'p' (obtained from SWAT, see SalienceProvider).
  * @author Shubham Chatterjee
  * @version 09/02/2019
  */
@@ -30,6 +30,7 @@ public class Experiment1 {
     private ArrayList<String> runStrings;
     private HashMap<String, ArrayList<String>> entityQrels;
     private HashMap<String, Map<String, Double>> salientEntityMap = new HashMap<>();
+    private final SalienceProvider salienceProvider = SalienceProvider.fromSystemProperties();
 
     /**
      * Constructor.
@@ -116,6 +117,9 @@ public class Experiment1 {
             // Get the list of paragraphs retrieved for the query
             ArrayList<String> paraList = new ArrayList<>(paraRankings.get(queryId).keySet());
 
+            // Fetch the passages once for all pseudo-documents of the query
+            QueryContext context = new QueryContext(paraList, searcher);
+
             // Get the set of entities retrieved for the query
             Set<String> retEntitySet = new HashSet<>(entityRankings.get(queryId).keySet());
 
@@ -136,7 +140,7 @@ public class Experiment1 {
                 HashMap<String, Double> paraMap = new HashMap<>();
 
                 // For every passage mentioning the entity, get the score of the entity given the passage, i.e., P(e|p).
-                getEntityToParaMap(entityId, paraList, pseudoDocuments, paraMap);
+                getEntityToParaMap(entityId, context, pseudoDocuments, paraMap);
 
                 // When we reach here, it means that we have a HashMap of paraIDs with their score for an entity
                 // So now put that hashMap in the HashMap for the entity
@@ -155,17 +159,17 @@ public class Experiment1 {
      * Helper method.
      * Creates a pseudo-document for the given entity. For passsage in the pseudo-document, scores the passage.
      * @param entityID String entityID
-     * @param paraList List List of passages retrieved for the query.
+     * @param context QueryContext Passages retrieved for the query.
      * @param pseudoDocuments List List of pseudo-documents for the entity.
      * @param paraMap Map Map of (paraID, sore) where score = Salience(e|p).
      */
 
     private void getEntityToParaMap(String entityID,
-                                    ArrayList<String> paraList,
+                                    QueryContext context,
                                     ArrayList<PseudoDocument> pseudoDocuments,
                                     HashMap<String, Double> paraMap) {
         // Create a pseudo-document for the entity
-        PseudoDocument d = Utilities.createPseudoDocument(entityID, paraList, searcher);
+        PseudoDocument d = context.getPseudoDocument(entityID);
         Map<String, Double> saliencyMap;
 
         if (d != null) {
@@ -180,16 +184,15 @@ public class Experiment1 {
 
                 //Get the id of the document
                 String paraID = document.get("id");
-                String paraText = document.get("text");
 
                 // Get the salient entities in the document
                 // First check if we already have the result for the paraID
                 if (salientEntityMap.containsKey(paraID)) {
-                    // If yes, then get it from the in-memory HashMap, no need to query the SWAT API.
+                    // If yes, then get it from the in-memory HashMap, no need to query the salience provider.
                     saliencyMap = salientEntityMap.get(paraID);
                 } else {
-                    // Otherwise, query the SWAT API and save the salient entity for the paragraph
-                    saliencyMap = SWATApi.getSalientEntities(paraText);
+                    // Otherwise, query the salience provider and save the salient entity for the paragraph
+                    saliencyMap = salienceProvider.getSalientEntities(document);
                     salientEntityMap.put(paraID, saliencyMap);
                 }
 
@@ -1,6 +1,5 @@
 package salience;
 
-import api.SWATApi;
 import help.Utilities;
 import lucene.Index;
 import org.apache.lucene.document.Document;
@@ -18,7 +17,7 @@ import java.util.*;
  * using entity salience scores obtained using SWAT.
  * Method: Score(p | q, e)  = Score(e | q)  * Salience(p | e)
  * where   Score(e | q)     = normalized retrieval score of entity for query (obtained from the entity ranking)
- *         Salience (p | e) = normalized salience score of entity 'e' for passage 'p' (obtained from SWAT).
+ *         Salience (p | e) = normalized salience score of entity 'e' for passage 'p' (obtained from SWAT, see SalienceProvider).
  * @author Shubham Chatterjee
  * @version 02/25/2019
  */
@@ -29,6 +28,7 @@ public class Experiment2 {
     private Map<String, Map<String, Map<String, Double>>> supportPsgRunFileMap;
     private HashMap<String,LinkedHashMap<String, Double>> entityRankings;
     private HashMap<String, Map<String, Double>> salientEntityMap;
+    private final SalienceProvider salienceProvider = SalienceProvider.fromSystemProperties();
     private Map<String, Map<String, Double>> swatMap;
     private Set<String> runStrings;
 
@@ -76,11 +76,7 @@ public class Experiment2 {
         System.out.println("[Done].");
 
         System.out.print("Reading the SWAT annotations...");
-        try {
-            this.swatMap = Utilities.readMap(swatFile);
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+        this.swatMap = SalienceProvider.readStore(swatFile, salienceProvider);
         System.out.println("[Done].");
 
         experiment(outFilePath);
@@ -220,7 +216,6 @@ public class Experiment2 {
                                String processedEntityID) {
         // For every paragraph (support passage) retrieved for the query
         Map<String, Double> saliencyMap = new HashMap<>();
-        String paraText = null;
         Document document = null;
         for (String paraID : paraSet) {
 
@@ -237,10 +232,7 @@ public class Experiment2 {
                     e.printStackTrace();
                 }
                 assert document != null;
-                paraText = document.get("text");
-                saliencyMap = SWATApi.getSalientEntities(paraText);
-                //System.out.println("Could not find SWAT annotation for paraID: " + paraID);
-                //System.out.println("Queried the SWAT API.");
+                saliencyMap = salienceProvider.getSalientEntities(document);
                 salientEntityMap.put(paraID, saliencyMap);
             }
             if (saliencyMap == null) {
@@ -298,7 +290,7 @@ public class Experiment2 {
 
     private void makeRunStrings(@NotNull Map<String, Map<String, Double>> scoreMap) {
         String runFileString;
-        List<String> seenParas = new ArrayList<>();
+        Set<String> seenParas = new HashSet<>();
         for (String query : scoreMap.keySet()) {
             int rank = 1;
             HashMap<String, Double> sortedScoreMap = Utilities.sortByValueDescending(scoreMap.get(query));
@@ -1,6 +1,5 @@
 package salience;
 
-import api.SWATApi;
 import help.Utilities;
 import lucene.Index;
 import org.apache.lucene.document.Document;
@@ -20,7 +19,7 @@ import java.util.*;
  * Method: Score(p | e, q) = Score(p | q) * Score(e | p)
  * where   Score(p | q)    = normalized retrieval score of passage 'p' for the query 'q'
  *                          (obtained from the candidate passage ranking.
- *         Score(e | p)    = normalized salience score of entity 'e' for passage 'p' (obtained from SWAT).
+ *         Score(e | p)    = normalized salience score of entity 'e' for passage 'p' (obtained from SWAT, see SalienceProvider).
  * @author Shubham Chatterjee
  * @version 09/18/2019
  */
@@ -31,6 +30,7 @@ public class Experiment3 {
     private HashMap<String, LinkedHashMap<String, Double>> paraRankings;
     private HashMap<String,LinkedHashMap<String, Double>> entityRankings;
     private HashMap<String, Map<String, Double>> salientEntityMap;
+    private final SalienceProvider salienceProvider = SalienceProvider.fromSystemProperties();
     private Map<String, Map<String, Double>> swatMap;
     private Set<String> runStrings;
 
@@ -87,11 +87,7 @@ public class Experiment3 {
         System.out.println("[Done].");
 
         System.out.print("Reading the SWAT annotations...");
-        try {
-            this.swatMap = Utilities.readMap(swatFile);
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+        this.swatMap = SalienceProvider.readStore(swatFile, salienceProvider);
         System.out.println("[Done].");
 
         experiment(outFilePath);
@@ -177,7 +173,6 @@ public class Experiment3 {
 
 
         Map<String, Double> saliencyMap;
-        String paraText;
         Document document = null;
         for (String paraID : paraSet) {
 
@@ -189,7 +184,7 @@ public class Experiment3 {
                 saliencyMap = salientEntityMap.get(paraID);
             } else {
                 // If the swat annotations are not found in the in-memory cache too,
-                // then we need to query the SWAT API :-(
+                // then we need to query the salience provider :-(
                 // To do this, we need the text of the paragraph for which we need to query the Lucene index
                 try {
                     document = Index.Search.searchIndex("id", paraID, searcher);
@@ -197,9 +192,8 @@ public class Experiment3 {
                     e.printStackTrace();
                 }
                 assert document != null;
-                paraText = document.get("text"); // Get the paragraph text
-                saliencyMap = SWATApi.getSalientEntities(paraText); // Query the SWAT API
-                salientEntityMap.put(paraID, saliencyMap); // Store the annotations received from SWAT in cache.
+                saliencyMap = salienceProvider.getSalientEntities(document); // Query the salience provider
+                salientEntityMap.put(paraID, saliencyMap); // Store the annotations received in cache.
             }
             if (saliencyMap == null) {
                 // If no annotations for the paragraph were found anywhere then skip this passage :-(
@@ -1,11 +1,11 @@
 package salience;
 
-import api.SWATApi;
 import lucene.Index;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.IndexSearcher;
 import help.PseudoDocument;
+import help.QueryContext;
 import help.Utilities;
 import org.jetbrains.annotations.NotNull;
 
@@ -31,6 +31,7 @@ public class Experiment5 {
 
     // HashMap where Key = paraID and Value = Map of (entity, salience_score)
     private Map<String, Map<String, Double>> salientEntityMap;
+    private final SalienceProvider salienceProvider = SalienceProvider.fromSystemProperties();
 
     private Map<String, Set<String>> entWithSalPsgMap = new HashMap<>();
     private Map<String, Set<String>> entWithNoSalPsgMap = new HashMap<>();
@@ -57,11 +58,7 @@ public class Experiment5 {
         System.out.println("[Done]");
 
         System.out.print("Reading the SWAT annotations...");
-        try {
-            this.salientEntityMap = Utilities.readMap(swatFile);
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+        this.salientEntityMap = SalienceProvider.readStore(swatFile, salienceProvider);
         System.out.println("[Done].");
 
         analyze(outDir);
@@ -106,14 +103,16 @@ public class Experiment5 {
         // Get the list of paragraphs retrieved for the query
         ArrayList<String> paraList = passageRankings.get(queryID);
 
-        String paraText;
+        // Fetch the passages once for all pseudo-documents of the query
+        QueryContext context = new QueryContext(paraList, searcher);
+
         Map<String, Double> saliencyMap;
 
         // For every entity in this list of retrieved entities do
         for (String entityId : processedEntityList) {
 
             // Create a pseudo-document for the entity
-            PseudoDocument d = Utilities.createPseudoDocument(entityId, paraList, searcher);
+            PseudoDocument d = context.getPseudoDocument(entityId);
 
             if (d != null) {
                 // If the PseudoDocument is not null (that is, contains at least one document) then
@@ -143,7 +142,7 @@ public class Experiment5 {
                         }
                     } else {
                         // Otherwise no SWAT annotation was found for the passage in the swat file
-                        // Now we have to query the SWAT API :-(
+                        // Now we have to query the salience provider :-(
                         // First we need the text of the passage for which we need to query the Lucene index
                         try {
                             document = Index.Search.searchIndex("id", paraID, searcher);
@@ -151,10 +150,9 @@ public class Experiment5 {
                             e.printStackTrace();
                         }
                         assert document != null;
-                        paraText = document.get("text");
-                        saliencyMap = SWATApi.getSalientEntities(paraText); // Now query SWAT
+                        saliencyMap = salienceProvider.getSalientEntities(document); // Now query the provider
                         if ( ! (saliencyMap == null) ) {
-                            // If SWAT returned something then store it in the in-memory map and check if it contains
+                            // If the provider returned something then store it in the in-memory map and check if it contains
                             // the entity
                             salientEntityMap.put(paraID, saliencyMap);
                             if (saliencyMap.containsKey(entityId)) {
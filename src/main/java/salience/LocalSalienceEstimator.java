@@ -0,0 +1,259 @@
+package salience;
+
+import api.WATApi;
+import help.Utilities;
+import lucene.Index;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Local estimate of entity salience, as an alternative to SWAT.
+ * The entities of a paragraph are taken from the "entity" field of the index. Every entity gets the features:
+ * (1) frequency:      Number of times the entity occurs in the "entity" field, divided by the largest such number.
+ * (2) position:       1 - (offset of the first mention / length of the text); 0 if no mention is found.
+ * (3) first_sentence: 1 if the first mention is in the first sentence, 0 otherwise.
+ * (4) rho:            Highest confidence of the entity linker for a mention of the entity.
+ * (5) centrality:     Average Milne-Witten relatedness of the entity with the other linked entities of the paragraph.
+ * Mentions are found with the entity linker if -Dwat.linker.dict is given (see api.LocalEntityLinker), otherwise by
+ * searching the title of the entity in the text (then rho = 0). Centrality is only computed with a local relatedness
+ * graph (-Dwat.relatedness.graph), so the estimator never calls a remote service.
+ *
+ * The features are combined with a logistic model: score = 1 / (1 + exp(-(bias + sum of weight * feature))).
+ * An entity is salient if its score is at least the threshold. The model file has one "name value" pair per line,
+ * for the names: bias, frequency, position, first_sentence, rho, centrality, threshold. Lines starting with # are
+ * comments. Missing names keep their default value.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class LocalSalienceEstimator implements SalienceProvider {
+    private final static String[] FEATURES = {"frequency", "position", "first_sentence", "rho", "centrality"};
+    private final static int FREQUENCY = 0, POSITION = 1, FIRST_SENTENCE = 2, RHO = 3, CENTRALITY = 4;
+
+    private double bias = -2.0d;
+    private final double[] weights = {2.0d, 1.5d, 1.0d, 1.5d, 1.5d};
+    private double threshold = 0.5d;
+
+    /**
+     * Constructor. Uses the default model.
+     */
+
+    public LocalSalienceEstimator() {
+    }
+
+    /**
+     * Load a model from a file.
+     * @param modelFile String Path to the model file.
+     * @return LocalSalienceEstimator
+     */
+
+    @NotNull
+    public static LocalSalienceEstimator fromFile(String modelFile) {
+        LocalSalienceEstimator estimator = new LocalSalienceEstimator();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(modelFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 2) {
+                    System.err.println("ERROR: Bad line in salience model: " + line);
+                    continue;
+                }
+                estimator.set(parts[0], Double.parseDouble(parts[1]));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read salience model: " + modelFile, e);
+        }
+        return estimator;
+    }
+
+    private void set(@NotNull String name, double value) {
+        if ("bias".equals(name)) {
+            bias = value;
+        } else if ("threshold".equals(name)) {
+            threshold = value;
+        } else {
+            int i = Arrays.asList(FEATURES).indexOf(name);
+            if (i < 0) {
+                System.err.println("ERROR: Unknown feature in salience model: " + name);
+            } else {
+                weights[i] = value;
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public Map<String, Double> getSalientEntities(@NotNull Document document) {
+        Map<String, Double> salientEntities = new HashMap<>();
+        for (Map.Entry<String, double[]> entry : getFeatures(document).entrySet()) {
+            double score = score(entry.getValue());
+            if (score >= threshold) {
+                salientEntities.put(entry.getKey(), score);
+            }
+        }
+        return salientEntities.isEmpty() ? null : salientEntities;
+    }
+
+    /**
+     * Score an entity.
+     * @param features Array Features of the entity.
+     * @return Double Score in [0,1].
+     */
+
+    public double score(@NotNull double[] features) {
+        double z = bias;
+        for (int i = 0; i < features.length; i++) {
+            z += weights[i] * features[i];
+        }
+        return 1.0d / (1.0d + Math.exp(-z));
+    }
+
+    /**
+     * Compute the features of the entities of a paragraph.
+     * @param document Document Lucene document of the paragraph (fields "text" and "entity").
+     * @return Map where Key = EntityID and Value = features.
+     */
+
+    @NotNull
+    public Map<String, double[]> getFeatures(@NotNull Document document) {
+        String text = document.get("text");
+        String entityField = document.get("entity");
+        Map<String, double[]> features = new LinkedHashMap<>();
+        if (text == null || text.isEmpty() || entityField == null) {
+            return features;
+        }
+
+        // Frequency
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int maxCount = 0;
+        for (String entity : Utilities.clean(entityField.split(" "))) {
+            int c = counts.merge(entity, 1, Integer::sum);
+            maxCount = Math.max(maxCount, c);
+        }
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            double[] f = new double[FEATURES.length];
+            f[FREQUENCY] = (double) entry.getValue() / maxCount;
+            features.put(entry.getKey(), f);
+        }
+
+        int firstSentenceEnd = firstSentenceEnd(text);
+        Map<String, Integer> firstOffset = new HashMap<>();
+        Map<String, Integer> wikiIds = new HashMap<>();
+
+        if (System.getProperty("wat.linker.dict") != null) {
+            for (WATApi.Annotation a : WATApi.EntityLinker.getAnnotations(text, 0.0d)) {
+                String entity = a.getWikiTitle().toLowerCase();
+                double[] f = features.get(entity);
+                if (f == null) {
+                    continue; // Only the entities of the "entity" field are scored
+                }
+                f[RHO] = Math.max(f[RHO], a.getRho());
+                firstOffset.merge(entity, a.getStart(), Math::min);
+                wikiIds.put(entity, a.getWikiId());
+            }
+        } else {
+            String lowerText = text.toLowerCase();
+            for (String entity : features.keySet()) {
+                int i = lowerText.indexOf(surface(entity));
+                if (i >= 0) {
+                    firstOffset.put(entity, i);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry : firstOffset.entrySet()) {
+            double[] f = features.get(entry.getKey());
+            f[POSITION] = 1.0d - (double) entry.getValue() / text.length();
+            f[FIRST_SENTENCE] = entry.getValue() < firstSentenceEnd ? 1.0d : 0.0d;
+        }
+
+        if (wikiIds.size() > 1 && System.getProperty("wat.relatedness.graph") != null) {
+            centrality(features, wikiIds);
+        }
+        return features;
+    }
+
+    /**
+     * Average relatedness of every linked entity with the other linked entities.
+     */
+
+    private static void centrality(@NotNull Map<String, double[]> features, @NotNull Map<String, Integer> wikiIds) {
+        List<String> entities = new ArrayList<>(wikiIds.keySet());
+        int[] ids = new int[entities.size()];
+        Map<Integer, Double> sums = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = wikiIds.get(entities.get(i));
+        }
+        for (WATApi.EntityRelatedness.Pair pair : WATApi.EntityRelatedness.getRelatedness("mw", ids)) {
+            sums.merge(pair.getSource().getId(), pair.getRelatedness(), Double::sum);
+            sums.merge(pair.getDestination().getId(), pair.getRelatedness(), Double::sum);
+        }
+        for (String entity : entities) {
+            features.get(entity)[CENTRALITY] = sums.getOrDefault(wikiIds.get(entity), 0.0d) / (entities.size() - 1);
+        }
+    }
+
+    /**
+     * The text of an entity id as it would appear in a paragraph: "paris_(france)" becomes "paris".
+     */
+
+    @NotNull
+    private static String surface(@NotNull String entity) {
+        String s = entity.replace('_', ' ');
+        int i = s.indexOf(" (");
+        return i > 0 ? s.substring(0, i) : s;
+    }
+
+    @Contract(pure = true)
+    private static int firstSentenceEnd(@NotNull String text) {
+        for (int i = 0; i + 1 < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c == '.' || c == '!' || c == '?') && Character.isWhitespace(text.charAt(i + 1))) {
+                return i + 1;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * Main method.
+     * Prints the features and scores of the entities of a paragraph.
+     * Usage: LocalSalienceEstimator indexDir paraID [modelFile]
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) {
+        IndexSearcher searcher = new Index.Setup(args[0]).getSearcher();
+        LocalSalienceEstimator estimator = args.length > 2 ? fromFile(args[2]) : new LocalSalienceEstimator();
+        try {
+            Document document = Index.Search.searchIndex("id", args[1], searcher);
+            if (document == null) {
+                System.err.println("ERROR: Paragraph " + args[1] + " not found in index.");
+                return;
+            }
+            System.out.println(document.get("text"));
+            for (Map.Entry<String, double[]> entry : estimator.getFeatures(document).entrySet()) {
+                System.out.println(entry.getKey() + "\t" + Arrays.toString(entry.getValue()) + "\t"
+                        + estimator.score(entry.getValue()));
+            }
+        } catch (IOException | ParseException e) {
+            e.printStackTrace();
+        }
+    }
+}
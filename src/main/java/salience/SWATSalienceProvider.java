@@ -0,0 +1,23 @@
+package salience;
+
+import api.SWATApi;
+import org.apache.lucene.document.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Salience scores from the SWAT service, see {@link SWATApi#getSalientEntities(String)}.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class SWATSalienceProvider implements SalienceProvider {
+
+    @Nullable
+    @Override
+    public Map<String, Double> getSalientEntities(@NotNull Document document) {
+        return SWATApi.getSalientEntities(document.get("text"));
+    }
+}
@@ -0,0 +1,297 @@
+package salience;
+
+import api.SWATApi;
+import help.Utilities;
+import lucene.Index;
+import me.tongfei.progressbar.ProgressBar;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.IndexSearcher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline job to precompute the SWAT salience annotations of all paragraphs in a candidate passage run.
+ * The salience experiments can then read the annotations from the store instead of querying SWAT while scoring.
+ *
+ * The store is the serialized Map (Key = paraID, Value = Map of (entity, salience score), null if SWAT found no
+ * salient entities) read with Utilities.readMap() by the salience experiments.
+ * Method:
+ * (1) Find the distinct paragraphs in the run which are neither in the store nor in the journal.
+ * (2) Fetch the text of these paragraphs from the Lucene index, one batch at a time.
+ * (3) Annotate each batch with a bounded pool of threads and append every result to the journal as soon as it arrives.
+ * (4) Merge the journal into the store.
+ * The journal (STORE.journal) is a TSV file with lines: paraID [TAB entity TAB score]* TAB .
+ * The final "." marks a complete record; a line without it (cut off by a crash) is dropped.
+ * If the job is stopped (or SWAT becomes unavailable), running it again resumes from where it stopped.
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public class SalienceAnnotator {
+    // Last field of every complete journal record
+    private final static String END_OF_RECORD = ".";
+
+    private final IndexSearcher searcher;
+    private final String storeFile, journalFile;
+    private final int numThreads, batchSize;
+    private final Map<String, Map<String, Double>> store = new HashMap<>();
+    private final Set<String> journaled = new HashSet<>();
+    private final AtomicInteger failed = new AtomicInteger(0);
+    private BufferedWriter journal;
+
+    /**
+     * Constructor.
+     * @param indexDir String Path to the paragraph index.
+     * @param storeFile String Path to the salience store (serialized Map).
+     * @param numThreads Integer Maximum number of concurrent requests to SWAT.
+     * @param batchSize Integer Number of paragraphs fetched from the index at a time.
+     */
+
+    public SalienceAnnotator(String indexDir, String storeFile, int numThreads, int batchSize) {
+        this.storeFile = storeFile;
+        this.journalFile = storeFile + ".journal";
+        this.numThreads = numThreads;
+        this.batchSize = batchSize;
+
+        System.out.print("Setting up index for use...");
+        searcher = new Index.Setup(indexDir).getSearcher();
+        System.out.println("[Done].");
+
+        if (new File(storeFile).exists()) {
+            System.out.print("Reading salience store...");
+            try {
+                store.putAll(Utilities.readMap(storeFile));
+            } catch (IOException | ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+            System.out.println("[Done].");
+        }
+
+        if (new File(journalFile).exists()) {
+            System.out.print("Reading journal...");
+            readJournal(journalFile, null, journaled);
+            System.out.println("[Done].");
+        }
+        System.out.println("Paragraphs already annotated: " + (store.size() + journaled.size()));
+    }
+
+    /**
+     * Annotate all paragraphs in the run file which have not been annotated yet.
+     * @param runFile String Path to the passage run file.
+     */
+
+    public void annotate(String runFile) {
+        System.out.print("Reading run file...");
+        Set<String> todo = new LinkedHashSet<>();
+        for (ArrayList<String> paraList : Utilities.getRankings(runFile).values()) {
+            todo.addAll(paraList);
+        }
+        System.out.println("[Done].");
+        int total = todo.size();
+        todo.removeAll(store.keySet());
+        todo.removeAll(journaled);
+        System.out.println("Paragraphs in run: " + total + ", to annotate: " + todo.size());
+
+        if (todo.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            boolean cutOff = endsWithoutNewline(journalFile);
+            journal = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+            if (cutOff) {
+                // Keep a record cut off by a crash on a line of its own, so that it is dropped on reading
+                journal.write('\n');
+            }
+            ProgressBar pb = new ProgressBar("Progress", todo.size());
+            List<String> batch = new ArrayList<>(batchSize);
+            for (String paraID : todo) {
+                batch.add(paraID);
+                if (batch.size() == batchSize) {
+                    annotateBatch(batch, executor, pb);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                annotateBatch(batch, executor, pb);
+            }
+            pb.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (failed.get() > 0) {
+            System.err.println("Could not annotate " + failed.get() + " paragraphs. Run the job again to retry them.");
+        }
+    }
+
+    /**
+     * Fetch the text of a batch of paragraphs and annotate them in parallel.
+     * Returns when all paragraphs in the batch have been annotated (or have failed).
+     */
+
+    private void annotateBatch(@NotNull List<String> batch,
+                               @NotNull ExecutorService executor,
+                               @NotNull ProgressBar pb) throws IOException, InterruptedException {
+        Map<String, Document> documents = Index.Search.searchIndex("id", batch, searcher);
+        List<Callable<Void>> tasks = new ArrayList<>(batch.size());
+
+        for (String paraID : batch) {
+            Document document = documents.get(paraID);
+            if (document == null) {
+                System.err.println("ERROR: Paragraph " + paraID + " not found in index.");
+                pb.step();
+                continue;
+            }
+            String paraText = document.get("text");
+            tasks.add(() -> {
+                try {
+                    Map<String, Double> saliencyMap = SWATApi.getSalientEntities(paraText);
+                    writeJournal(paraID, saliencyMap);
+                } catch (IOException | RuntimeException e) {
+                    // SWAT unavailable (ServiceUnavailableException) or the journal could not be
+                    // written: the paragraph is not in the journal, so it is annotated again on the next run
+                    System.err.println("ERROR: " + paraID + ": " + e.getMessage());
+                    failed.incrementAndGet();
+                } finally {
+                    pb.step();
+                }
+                return null;
+            });
+        }
+        executor.invokeAll(tasks);
+        synchronized (this) {
+            journal.flush();
+        }
+    }
+
+    private synchronized void writeJournal(String paraID, @Nullable Map<String, Double> saliencyMap) throws IOException {
+        StringBuilder line = new StringBuilder(paraID);
+        if (saliencyMap != null) {
+            for (Map.Entry<String, Double> entry : saliencyMap.entrySet()) {
+                line.append('\t').append(entry.getKey()).append('\t').append(entry.getValue());
+            }
+        }
+        journal.write(line.append('\t').append(END_OF_RECORD).append('\n').toString());
+    }
+
+    private static boolean endsWithoutNewline(String file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() == 0) {
+                return false;
+            }
+            raf.seek(raf.length() - 1);
+            return raf.read() != '\n';
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read the journal.
+     * A line which does not end with the end-of-record field (e.g., cut off by a crash while writing) is ignored,
+     * that paragraph will be annotated again.
+     * @param journalFile String Path to the journal.
+     * @param annotations Map Map to read the annotations into (may be null).
+     * @param paraIDs Set Set to read the paragraph ids into (may be null).
+     */
+
+    private static void readJournal(String journalFile,
+                                    @Nullable Map<String, Map<String, Double>> annotations,
+                                    @Nullable Set<String> paraIDs) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] fields = line.split("\t");
+                int n = fields.length - 1;
+                if (fields[0].isEmpty() || n < 1 || !fields[n].equals(END_OF_RECORD) || n % 2 == 0) {
+                    continue;
+                }
+                Map<String, Double> saliencyMap = null;
+                try {
+                    if (n > 1) {
+                        saliencyMap = new HashMap<>();
+                        for (int i = 1; i < n; i += 2) {
+                            saliencyMap.put(fields[i], Double.parseDouble(fields[i + 1]));
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (annotations != null) {
+                    annotations.put(fields[0], saliencyMap);
+                }
+                if (paraIDs != null) {
+                    paraIDs.add(fields[0]);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Merge the journal into the store and delete the journal.
+     * The store is written to a temporary file first, so it is never left half-written.
+     */
+
+    public void compact() {
+        if (!new File(journalFile).exists()) {
+            return;
+        }
+        System.out.print("Merging journal into store...");
+        Map<String, Map<String, Double>> merged = new HashMap<>(store);
+        readJournal(journalFile, merged, null);
+        File tmp = new File(storeFile + ".tmp");
+        try {
+            Utilities.writeMap(merged, tmp.getPath());
+            Files.move(tmp.toPath(), new File(storeFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(new File(journalFile).toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        System.out.println("[Done].");
+        System.out.println("Paragraphs in store: " + merged.size());
+        System.out.println("Store written at: " + storeFile);
+    }
+
+    /**
+     * Main method.
+     * Usage: SalienceAnnotator indexDir runFile storeFile [numThreads] [batchSize]
+     * @param args Command line arguments.
+     */
+
+    public static void main(@NotNull String[] args) {
+        String indexDir = args[0];
+        String runFile = args[1];
+        String storeFile = args[2];
+        int numThreads = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        SalienceAnnotator annotator = new SalienceAnnotator(indexDir, storeFile, numThreads, batchSize);
+        annotator.annotate(runFile);
+        annotator.compact();
+    }
+}
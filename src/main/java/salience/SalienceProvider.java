@@ -0,0 +1,76 @@
+package salience;
+
+import org.apache.lucene.document.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import help.Utilities;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Source of entity salience scores for a paragraph.
+ * The salience experiments get their scores through this interface, so that the (remote) SWAT service may be replaced
+ * by the local estimator. Choose the implementation with -Dsalience.provider:
+ * (1) swat (default): {@link SWATSalienceProvider}
+ * (2) local: {@link LocalSalienceEstimator}, with the model given by -Dsalience.model (optional).
+ * @author Shubham Chatterjee
+ * @version 10/18/2026
+ */
+
+public interface SalienceProvider {
+
+    /**
+     * Get the salient entities in a paragraph with their scores.
+     * @param document Document Lucene document of the paragraph (fields "id", "text" and "entity").
+     * @return Map where Key = EntityID (lower-cased Wikipedia title, as given by Utilities.process()) and
+     * Value = Salience Score if any salient entities are found, null otherwise.
+     */
+
+    @Nullable
+    Map<String, Double> getSalientEntities(@NotNull Document document);
+
+    /**
+     * Read the precomputed SWAT annotations (see {@link SalienceAnnotator}) to use with a provider.
+     * The annotations are SWAT scores, so they are only used with the SWAT provider; with any other provider an empty
+     * map is returned and every paragraph is scored by the provider, so that a run never mixes two salience models.
+     * @param swatFile String Path to the serialized Map of SWAT annotations.
+     * @param provider SalienceProvider Provider used for the paragraphs not in the map.
+     * @return Map Key = paraID, Value = Map of (entity, salience score) or null.
+     */
+
+    @NotNull
+    static Map<String, Map<String, Double>> readStore(String swatFile, @NotNull SalienceProvider provider) {
+        if (!(provider instanceof SWATSalienceProvider)) {
+            System.out.print("(not used with " + provider.getClass().getSimpleName() + ")...");
+            return new HashMap<>();
+        }
+        try {
+            return Utilities.readMap(swatFile);
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Get the provider chosen with the system properties.
+     * @return SalienceProvider
+     */
+
+    @NotNull
+    static SalienceProvider fromSystemProperties() {
+        String provider = System.getProperty("salience.provider", "swat");
+        switch (provider) {
+            case "swat":
+                return new SWATSalienceProvider();
+            case "local":
+                String model = System.getProperty("salience.model");
+                return model == null ? new LocalSalienceEstimator() : LocalSalienceEstimator.fromFile(model);
+            default:
+                throw new IllegalArgumentException("Unknown salience provider: " + provider);
+        }
+    }
+}